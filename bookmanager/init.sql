@@ -1,7 +1,7 @@
 create table admin (
     id int auto_increment comment '管理员ID' primary key,
     username varchar(50) not null comment '用户名',
-    password varchar(255) not null comment '密码',
+    password varchar(255) not null comment '密码（PBKDF2 哈希）',
     role varchar(20) default '管理员' null comment '权限角色',
     constraint username unique (username)
 ) comment '管理员表' collate = utf8mb4_uca1400_ai_ci;
@@ -21,9 +21,29 @@ create table book (
     is_deleted tinyint(1) default 0 null comment '是否已删除：0-未删除，1-已删除',
     description text null comment '详情',
     cover_url varchar(255) null comment '封面页',
-    constraint code unique (code)
+    row_version bigint default 0 not null comment '行版本：最后一次写入时的数据库时间（微秒），增量同步用',
+    constraint code unique (code),
+    index idx_book_deleted (is_deleted),
+    index idx_book_row_version (row_version)
 ) comment '图书表' collate = utf8mb4_uca1400_ai_ci;
 
+create table book_archive (
+    id int not null comment '原图书ID' primary key,
+    code varchar(50) not null comment '图书编码',
+    title varchar(200) not null comment '书名',
+    author varchar(100) null comment '作者',
+    publisher varchar(100) null comment '出版社',
+    isbn varchar(20) null comment 'ISBN号',
+    category_id int not null comment '分类Id',
+    publish_date date null comment '出版日期',
+    price decimal(10, 2) default 0.00 null comment '价格',
+    entry_date date not null comment '入库日期',
+    borrow_times int default 0 null comment '被借阅次数',
+    description text null comment '详情',
+    cover_url varchar(255) null comment '封面页',
+    archived_at datetime default current_timestamp() not null comment '归档时间'
+) comment '已删除图书归档表' collate = utf8mb4_uca1400_ai_ci;
+
 create table book_items (
     id int auto_increment primary key,
     book_id int not null,
@@ -33,13 +53,30 @@ create table book_items (
         'available',
         'borrowed',
         'unavailable',
-        'deleted'
+        'deleted',
+        'reserved'
     ) default 'available' null,
     price_at_entry decimal(10, 2) null comment '入库时单价',
     entry_date date not null,
-    notes varchar(255) null
+    notes varchar(255) null,
+    row_version bigint default 0 not null comment '行版本：最后一次写入时的数据库时间（微秒），增量同步用',
+    index idx_book_items_book (book_id, status),
+    index idx_book_items_status (status),
+    index idx_book_items_row_version (row_version)
 ) comment '图书实体表';
 
+create table book_items_archive (
+    id int not null primary key comment '原副本ID',
+    book_id int not null,
+    barcode varchar(50) not null comment '条码',
+    location varchar(100) null comment '馆藏位置',
+    price_at_entry decimal(10, 2) null comment '入库时单价',
+    entry_date date not null,
+    notes varchar(255) null,
+    archived_at datetime default current_timestamp() not null comment '归档时间',
+    index idx_book_items_archive_book (book_id)
+) comment '已删除图书实体归档表';
+
 create table borrow_record (
     id int auto_increment comment '借阅记录ID' primary key,
     book_id int not null comment '图书ID',
@@ -49,9 +86,78 @@ create table borrow_record (
     return_date date null comment '实际还书日期（NULL表示未还）',
     overdue_fine decimal(8, 2) default 0.00 null comment '逾期罚款金额',
     status enum ('借出', '已还', '逾期', '丢失', '损坏') default '借出' null comment '借阅状态',
-    item_id int not null comment '关联的具体书'
+    item_id int not null comment '关联的具体书',
+    -- 已有数据迁移时先以 default 1 添加该列，再改为 default 0，避免重复计入 borrow_times
+    counted tinyint(1) default 0 not null comment '是否已计入 book.borrow_times',
+    index idx_borrow_uncounted (counted),
+    index idx_borrow_reader (reader_id, borrow_date),
+    index idx_borrow_book (book_id),
+    index idx_borrow_item (item_id),
+    index idx_borrow_archivable (status, return_date)
 ) comment '借阅记录表' collate = utf8mb4_uca1400_ai_ci;
 
+create table borrow_record_archive (
+    id int not null comment '原借阅记录ID',
+    book_id int not null comment '图书ID',
+    reader_id int not null comment '读者ID',
+    borrow_date date not null comment '借出日期',
+    due_date date not null comment '应还日期',
+    return_date date null comment '实际还书日期',
+    overdue_fine decimal(8, 2) default 0.00 null comment '逾期罚款金额',
+    status enum ('借出', '已还', '逾期', '丢失', '损坏') default '已还' null comment '借阅状态',
+    item_id int not null comment '关联的具体书',
+    archived_at datetime default current_timestamp() not null comment '归档时间',
+    primary key (id, borrow_date),
+    index idx_archive_reader (reader_id, borrow_date)
+) comment '借阅记录归档表（已还且超过保留期的记录，按借出年份分区）' collate = utf8mb4_uca1400_ai_ci
+partition by range (year(borrow_date)) (
+    partition p2023 values less than (2024),
+    partition p2024 values less than (2025),
+    partition p2025 values less than (2026),
+    partition p2026 values less than (2027),
+    partition p2027 values less than (2028),
+    partition pmax values less than maxvalue
+);
+
+create table idempotency_key (
+    idem_key char(64) not null comment '用户+接口+Idempotency-Key 的 SHA-256' primary key,
+    fingerprint char(64) not null comment '请求体 SHA-256',
+    response mediumtext null comment '首次执行成功的返回数据',
+    created_at datetime default current_timestamp() not null comment '创建时间',
+    expires_at datetime not null comment '过期时间',
+    index idx_idempotency_expires (expires_at)
+) comment '幂等键表' collate = utf8mb4_uca1400_ai_ci;
+
+create table reservation (
+    id int auto_increment comment '预约ID' primary key,
+    book_id int not null comment '图书ID',
+    reader_id int not null comment '读者ID',
+    item_id int null comment '分配到的副本ID',
+    status enum ('等待', '待取', '已取', '已过期', '已取消') default '等待' not null comment '预约状态',
+    created_at datetime default current_timestamp() not null comment '预约时间',
+    hold_until datetime null comment '取书截止时间',
+    index idx_reservation_queue (book_id, status, id),
+    index idx_reservation_item (item_id, status),
+    index idx_reservation_hold (status, hold_until)
+) comment '预约表' collate = utf8mb4_uca1400_ai_ci;
+
+create table change_log (
+    id bigint auto_increment comment '变更序号' primary key,
+    resource varchar(20) not null comment '资源类型',
+    entity_id bigint null comment '实体ID',
+    node_id varchar(64) not null comment '写入节点',
+    created_at datetime(3) default current_timestamp(3) not null comment '写入时间',
+    index idx_change_log_created (created_at)
+) comment '变更日志表，用于多实例之间的缓存失效' collate = utf8mb4_uca1400_ai_ci;
+
+create table sync_tombstone (
+    resource varchar(20) not null comment '资源类型',
+    entity_id bigint not null comment '被物理删除的实体ID',
+    row_version bigint not null comment '删除时的行版本',
+    primary key (resource, entity_id),
+    index idx_sync_tombstone_version (row_version)
+) comment '增量同步墓碑表：记录物理删除的行，软删除的行本身即墓碑' collate = utf8mb4_uca1400_ai_ci;
+
 create table borrow_rules (
     id int auto_increment primary key,
     reader_type enum ('学生', '教师') not null,
@@ -67,8 +173,10 @@ create table categories (
     code varchar(10) not null comment '类别代码，如：WX、JSJ等',
     created_at timestamp default current_timestamp() null,
     updated_at timestamp default current_timestamp() null on update current_timestamp(),
+    row_version bigint default 0 not null comment '行版本：最后一次写入时的数据库时间（微秒），增量同步用',
     constraint code unique (code),
-    constraint name unique (name)
+    constraint name unique (name),
+    index idx_categories_row_version (row_version)
 );
 
 create table reader (
@@ -81,7 +189,13 @@ create table reader (
     borrow_limit int default 3 null comment '借书限额（学生默认3本，教师可设更高）',
     borrowed_count int default 0 null comment '当前已借数量',
     username varchar(20) not null comment '用户名',
-    password varchar(20) not null comment '密码'
+    password varchar(255) not null comment '密码（PBKDF2 哈希）',
+    name_initials varchar(50) null comment '姓名拼音首字母（检索用，由应用写入）',
+    active tinyint(1) default 1 not null comment '是否有效：0-已停用（毕业、离校），不能登录和借书',
+    constraint reader_username unique (username),
+    index idx_reader_name (name),
+    index idx_reader_class_dept (class_dept),
+    index idx_reader_initials (name_initials)
 ) comment '读者表' collate = utf8mb4_uca1400_ai_ci;
 
 -- 插入默认数据
@@ -0,0 +1,85 @@
+#!/usr/bin/env bash
+# 启动耗时对比：默认构建 vs 快速启动构建（CDS 归档 + faststart 配置）
+# 测量从启动 JVM 到第一次 /login 成功的时间，以及此时进程的 RSS。
+#
+# 用法（需要可用的数据库和一个能登录的账号）：
+#   BENCH_USERNAME=admin BENCH_PASSWORD=123456 RUNS=5 scripts/startup-bench.sh
+# 可选环境变量：PORT（默认 18080）、SKIP_BUILD=1 跳过构建、JAVA（默认 java）
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-5}
+PORT=${PORT:-18080}
+JAVA=${JAVA:-java}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+: "${BENCH_USERNAME:?需要设置 BENCH_USERNAME}"
+: "${BENCH_PASSWORD:?需要设置 BENCH_PASSWORD}"
+
+JAR_NAME=bookmanager-0.0.1-SNAPSHOT.jar
+BENCH_DIR=target/startup-bench
+LOGIN_BODY=$(printf '{"username":"%s","password":"%s"}' "$BENCH_USERNAME" "$BENCH_PASSWORD")
+
+if [[ "${SKIP_BUILD:-0}" != "1" ]]; then
+    ./mvnw -B -q -DskipTests -Pfast-startup package
+fi
+mkdir -p "$BENCH_DIR"
+cp "target/$JAR_NAME" "$BENCH_DIR/default.jar"
+
+now_millis() {
+    date +%s%3N
+}
+
+rss_kb() {
+    awk '/^VmRSS:/ {print $2}' "/proc/$1/status"
+}
+
+# 启动一次，输出 "毫秒 RSS(KB)"
+measure() {
+    local workdir=$1
+    shift
+    local start pid elapsed rss
+    start=$(now_millis)
+    (cd "$workdir" && exec "$JAVA" "$@" --server.port="$PORT") > "$BENCH_DIR/last-run.log" 2>&1 &
+    pid=$!
+    while true; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "应用启动失败，见 $BENCH_DIR/last-run.log" >&2
+            exit 1
+        fi
+        if curl -fs -m 2 -H 'Content-Type: application/json' -d "$LOGIN_BODY" \
+                "http://localhost:$PORT/login" 2>/dev/null | grep -q '"code":200'; then
+            break
+        fi
+        if (( $(now_millis) - start > TIMEOUT_SECONDS * 1000 )); then
+            echo "等待 /login 超时" >&2
+            kill "$pid"
+            exit 1
+        fi
+        sleep 0.05
+    done
+    elapsed=$(( $(now_millis) - start ))
+    rss=$(rss_kb "$pid")
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    echo "$elapsed $rss"
+}
+
+run_variant() {
+    local name=$1
+    shift
+    local total_ms=0 total_rss=0 i result ms rss
+    for ((i = 1; i <= RUNS; i++)); do
+        result=$(measure "$@")
+        read -r ms rss <<< "$result"
+        printf '  %-14s 第 %d 次: %6d ms, RSS %7d KB\n' "$name" "$i" "$ms" "$rss"
+        total_ms=$((total_ms + ms))
+        total_rss=$((total_rss + rss))
+    done
+    printf '%-14s 平均: %6d ms 到首次登录成功, RSS %7d KB\n' "$name" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+echo "每种构建启动 $RUNS 次"
+run_variant default "$BENCH_DIR" -jar default.jar
+run_variant fast-startup target/fast-startup \
+    -XX:SharedArchiveFile=application.jsa -Dspring.profiles.active=faststart -jar "$JAR_NAME"
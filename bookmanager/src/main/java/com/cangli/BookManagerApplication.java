@@ -4,9 +4,11 @@ package com.cangli;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.cangli.mapper")
+@EnableScheduling
 public class BookManagerApplication {
     public static void main(String[] args) {
         SpringApplication.run(BookManagerApplication.class, args);
@@ -0,0 +1,249 @@
+package com.cangli.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 借阅快照文件的写入：逐行追加，每列先写到各自的临时文件，finish 时拼成一个文件。
+ * 内存占用只有字典和分块的最小/最大借出日期，与行数无关。
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * int magic, int version, int rows, long createdAt, int blockRows
+ * 3 个字典（分类、班级、读者类型）：int n, n 个 (short 长度, UTF-8)
+ * int blocks, blocks 个 (int 最小借出日, int 最大借出日)
+ * int columns, columns 个 (short 长度, 列名, byte 宽度, long 偏移)
+ * 各列数据，8 字节对齐
+ * </pre>
+ * 日期为 epoch day，分类、班级、读者类型为字典编码
+ */
+public class CirculationFileWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x43434D42; // "BMCC"
+    // 2：去掉了查询用不到的 book_id、reader_id 列
+    static final int VERSION = 2;
+    static final int BLOCK_ROWS = 65536;
+
+    // 列名和宽度（字节），顺序即文件中的顺序
+    static final String[] COLUMNS = {"borrow_day", "due_day", "return_day", "category", "dept", "reader_type"};
+    static final int[] WIDTHS = {4, 4, 4, 2, 2, 1};
+
+    private final Path dir;
+    private final Path[] columnFiles = new Path[COLUMNS.length];
+    private final OutputStream[] columnStreams = new OutputStream[COLUMNS.length];
+    private final ByteBuffer scratch = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final Dictionary categories = new Dictionary(0xFFFF);
+    private final Dictionary depts = new Dictionary(0xFFFF);
+    private final Dictionary readerTypes = new Dictionary(0xFF);
+
+    private final List<int[]> blocks = new ArrayList<>();
+    private int rows;
+    private int blockMin = Integer.MAX_VALUE;
+    private int blockMax = Integer.MIN_VALUE;
+
+    public CirculationFileWriter(Path dir) throws IOException {
+        this.dir = dir;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columnFiles[i] = Files.createTempFile(dir, COLUMNS[i], ".tmp");
+            columnStreams[i] = new BufferedOutputStream(Files.newOutputStream(columnFiles[i]), 1 << 16);
+        }
+    }
+
+    /**
+     * 追加一行。returnDay 为 -1 表示未还
+     */
+    public void append(int borrowDay, int dueDay, int returnDay,
+                       String category, String dept, String readerType) throws IOException {
+        writeInt(0, borrowDay);
+        writeInt(1, dueDay);
+        writeInt(2, returnDay);
+        writeShort(3, categories.code(category));
+        writeShort(4, depts.code(dept));
+        columnStreams[5].write(readerTypes.code(readerType));
+
+        blockMin = Math.min(blockMin, borrowDay);
+        blockMax = Math.max(blockMax, borrowDay);
+        rows++;
+        if (rows % BLOCK_ROWS == 0) {
+            closeBlock();
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * 写出最终文件（先写临时文件，再原子替换 target）
+     */
+    public void finish(Path target) throws IOException {
+        if (rows % BLOCK_ROWS != 0) {
+            closeBlock();
+        }
+        for (OutputStream stream : columnStreams) {
+            stream.close();
+        }
+
+        // 偏移量是定长字段，先用 0 占位算出头部长度
+        long[] offsets = new long[COLUMNS.length];
+        long dataStart = align(header(offsets).length);
+        long position = dataStart;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            offsets[i] = position;
+            position = align(position + (long) rows * WIDTHS[i]);
+        }
+        byte[] header = header(offsets);
+
+        Path tmp = Files.createTempFile(dir, "circulation", ".tmp");
+        try {
+            write(tmp, header, offsets, position);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void write(Path tmp, byte[] header, long[] offsets, long end) throws IOException {
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(header));
+            for (int i = 0; i < COLUMNS.length; i++) {
+                out.position(offsets[i]);
+                try (FileChannel in = FileChannel.open(columnFiles[i], StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long done = 0; done < size; ) {
+                        done += in.transferTo(done, size - done, out);
+                    }
+                }
+            }
+            // 最后一列补齐对齐字节
+            if (out.size() < end) {
+                out.write(ByteBuffer.allocate((int) (end - out.size())), out.size());
+            }
+            out.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (columnStreams[i] != null) {
+                columnStreams[i].close();
+            }
+            Files.deleteIfExists(columnFiles[i]);
+        }
+    }
+
+    private byte[] header(long[] offsets) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianOutput out = new LittleEndianOutput(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(rows);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(BLOCK_ROWS);
+        for (Dictionary dictionary : List.of(categories, depts, readerTypes)) {
+            out.writeInt(dictionary.values.size());
+            for (String value : dictionary.values.keySet()) {
+                out.writeString(value);
+            }
+        }
+        out.writeInt(blocks.size());
+        for (int[] block : blocks) {
+            out.writeInt(block[0]);
+            out.writeInt(block[1]);
+        }
+        out.writeInt(COLUMNS.length);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            out.writeString(COLUMNS[i]);
+            out.writeByte(WIDTHS[i]);
+            out.writeLong(offsets[i]);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void closeBlock() {
+        blocks.add(new int[]{blockMin, blockMax});
+        blockMin = Integer.MAX_VALUE;
+        blockMax = Integer.MIN_VALUE;
+    }
+
+    private void writeInt(int column, int value) throws IOException {
+        scratch.clear();
+        scratch.putInt(value);
+        columnStreams[column].write(scratch.array(), 0, 4);
+    }
+
+    private void writeShort(int column, int value) throws IOException {
+        scratch.clear();
+        scratch.putShort((short) value);
+        columnStreams[column].write(scratch.array(), 0, 2);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // 字符串 -> 编码，按首次出现的顺序编号
+    private static final class Dictionary {
+        private final Map<String, Integer> values = new LinkedHashMap<>();
+        private final int max;
+
+        private Dictionary(int max) {
+            this.max = max;
+        }
+
+        private int code(String value) {
+            Integer code = values.get(value);
+            if (code == null) {
+                if (values.size() > max) {
+                    throw new IllegalStateException("字典取值超过 " + (max + 1) + " 个");
+                }
+                code = values.size();
+                values.put(value, code);
+            }
+            return code;
+        }
+    }
+
+    private static final class LittleEndianOutput {
+        private final DataOutputStream out;
+
+        private LittleEndianOutput(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        private void writeByte(int value) throws IOException {
+            out.writeByte(value);
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.writeInt(Integer.reverseBytes(value));
+        }
+
+        private void writeLong(long value) throws IOException {
+            out.writeLong(Long.reverseBytes(value));
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(Short.reverseBytes((short) bytes.length));
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.cangli.analytics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 只读映射的借阅快照（格式见 CirculationFileWriter）。
+ * 查询按块并行扫描：先用每块的最小/最大借出日跳过时间范围之外的块，
+ * 块内逐行读列值，按分组下标累加到数组。各列的 ByteBuffer 只用绝对位置读取，多线程共享安全
+ */
+public class CirculationSnapshot {
+
+    public enum GroupBy {
+        CATEGORY,
+        DEPT,
+        READER_TYPE,
+        WEEKDAY,
+        MONTH;
+
+        // 接受 category、dept、readerType、weekday、month
+        public static GroupBy parse(String value) {
+            for (GroupBy groupBy : values()) {
+                if (groupBy.name().replace("_", "").equalsIgnoreCase(value.replace("_", ""))) {
+                    return groupBy;
+                }
+            }
+            throw new IllegalArgumentException("不支持的分组: " + value);
+        }
+    }
+
+    private static final String[] WEEKDAYS = {"周一", "周二", "周三", "周四", "周五", "周六", "周日"};
+
+    private final int rows;
+    private final long createdAt;
+    private final int createdDay;
+    private final int blockRows;
+    private final List<String> categories;
+    private final List<String> depts;
+    private final List<String> readerTypes;
+    private final int[] blockMin;
+    private final int[] blockMax;
+    private final long fileBytes;
+
+    private final ByteBuffer borrowDay;
+    private final ByteBuffer dueDay;
+    private final ByteBuffer returnDay;
+    private final ByteBuffer category;
+    private final ByteBuffer dept;
+    private final ByteBuffer readerType;
+
+    private CirculationSnapshot(ByteBuffer buffer) {
+        fileBytes = buffer.capacity();
+        if (buffer.getInt() != CirculationFileWriter.MAGIC) {
+            throw new IllegalStateException("不是借阅快照文件");
+        }
+        int version = buffer.getInt();
+        if (version != CirculationFileWriter.VERSION) {
+            throw new IllegalStateException("借阅快照版本不支持: " + version);
+        }
+        rows = buffer.getInt();
+        createdAt = buffer.getLong();
+        createdDay = (int) LocalDate.ofInstant(Instant.ofEpochMilli(createdAt), ZoneId.systemDefault()).toEpochDay();
+        blockRows = buffer.getInt();
+        categories = readDictionary(buffer);
+        depts = readDictionary(buffer);
+        readerTypes = readDictionary(buffer);
+        int blocks = buffer.getInt();
+        blockMin = new int[blocks];
+        blockMax = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockMin[i] = buffer.getInt();
+            blockMax[i] = buffer.getInt();
+        }
+        Map<String, ByteBuffer> columns = new HashMap<>();
+        int columnCount = buffer.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(buffer);
+            int width = buffer.get();
+            long offset = buffer.getLong();
+            columns.put(name, buffer.slice((int) offset, rows * width).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        borrowDay = column(columns, "borrow_day");
+        dueDay = column(columns, "due_day");
+        returnDay = column(columns, "return_day");
+        category = column(columns, "category");
+        dept = column(columns, "dept");
+        readerType = column(columns, "reader_type");
+    }
+
+    public static CirculationSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("借阅快照超过 2GB");
+            }
+            // 映射在通道关闭后仍然有效，由 GC 回收
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new CirculationSnapshot(buffer);
+        }
+    }
+
+    /**
+     * 按借出日期 [fromDay, toDay) 过滤（epoch day，null 为不限），可再按分类、班级、读者类型过滤，
+     * 返回每组的借阅次数、逾期次数（晚还或快照时仍未还且已过应还日）和已还记录的平均借阅天数
+     */
+    public List<Map<String, Object>> aggregate(GroupBy groupBy, Integer fromDay, Integer toDay,
+                                               String categoryName, String deptName, String readerTypeName) {
+        int from = fromDay == null ? Integer.MIN_VALUE : fromDay;
+        int to = toDay == null ? Integer.MAX_VALUE : toDay;
+        // 过滤值不在字典里说明没有匹配的行
+        int categoryCode = filterCode(categories, categoryName);
+        int deptCode = filterCode(depts, deptName);
+        int readerTypeCode = filterCode(readerTypes, readerTypeName);
+        if (categoryCode == -2 || deptCode == -2 || readerTypeCode == -2 || from >= to) {
+            return List.of();
+        }
+
+        int[] candidates = IntStream.range(0, blockMin.length)
+                .filter(b -> blockMax[b] >= from && blockMin[b] < to)
+                .toArray();
+        int minMonth = Integer.MAX_VALUE;
+        int maxMonth = Integer.MIN_VALUE;
+        if (groupBy == GroupBy.MONTH) {
+            for (int b : candidates) {
+                minMonth = Math.min(minMonth, month(Math.max(blockMin[b], from)));
+                maxMonth = Math.max(maxMonth, month(Math.min(blockMax[b], to - 1)));
+            }
+        }
+        int baseMonth = minMonth;
+        int groups = switch (groupBy) {
+            case CATEGORY -> categories.size();
+            case DEPT -> depts.size();
+            case READER_TYPE -> readerTypes.size();
+            case WEEKDAY -> WEEKDAYS.length;
+            case MONTH -> maxMonth < minMonth ? 0 : maxMonth - minMonth + 1;
+        };
+
+        Partial total = IntStream.of(candidates).parallel()
+                .mapToObj(b -> scanBlock(b, groupBy, groups, baseMonth, from, to, categoryCode, deptCode, readerTypeCode))
+                .reduce(new Partial(groups), Partial::merge);
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            if (total.borrows[g] == 0) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("key", label(groupBy, g, baseMonth));
+            row.put("borrows", total.borrows[g]);
+            row.put("overdue", total.overdue[g]);
+            row.put("avgLoanDays", total.returned[g] == 0 ? null
+                    : Math.round(total.loanDays[g] * 10.0 / total.returned[g]) / 10.0);
+            result.add(row);
+        }
+        if (groupBy != GroupBy.WEEKDAY && groupBy != GroupBy.MONTH) {
+            result.sort(Comparator.comparing((Map<String, Object> row) -> (Long) row.get("borrows")).reversed());
+        }
+        return result;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    private Partial scanBlock(int block, GroupBy groupBy, int groups, int baseMonth, int from, int to,
+                              int categoryCode, int deptCode, int readerTypeCode) {
+        Partial partial = new Partial(groups);
+        int start = block * blockRows;
+        int end = Math.min(rows, start + blockRows);
+        // 同一块内借出日多半相同或相邻，缓存上一次的月份换算
+        int lastDay = Integer.MIN_VALUE;
+        int lastMonth = 0;
+        for (int i = start; i < end; i++) {
+            int day = borrowDay.getInt(i << 2);
+            if (day < from || day >= to) {
+                continue;
+            }
+            if (categoryCode >= 0 && (category.getShort(i << 1) & 0xFFFF) != categoryCode) {
+                continue;
+            }
+            if (deptCode >= 0 && (dept.getShort(i << 1) & 0xFFFF) != deptCode) {
+                continue;
+            }
+            if (readerTypeCode >= 0 && (readerType.get(i) & 0xFF) != readerTypeCode) {
+                continue;
+            }
+            int group;
+            switch (groupBy) {
+                case CATEGORY -> group = category.getShort(i << 1) & 0xFFFF;
+                case DEPT -> group = dept.getShort(i << 1) & 0xFFFF;
+                case READER_TYPE -> group = readerType.get(i) & 0xFF;
+                // 1970-01-01 是周四
+                case WEEKDAY -> group = Math.floorMod(day + 3, 7);
+                default -> {
+                    if (day != lastDay) {
+                        lastDay = day;
+                        lastMonth = month(day);
+                    }
+                    group = lastMonth - baseMonth;
+                }
+            }
+            int due = dueDay.getInt(i << 2);
+            int returned = returnDay.getInt(i << 2);
+            partial.borrows[group]++;
+            if (returned >= 0) {
+                partial.returned[group]++;
+                partial.loanDays[group] += returned - day;
+                if (returned > due) {
+                    partial.overdue[group]++;
+                }
+            } else if (due < createdDay) {
+                partial.overdue[group]++;
+            }
+        }
+        return partial;
+    }
+
+    private String label(GroupBy groupBy, int group, int baseMonth) {
+        return switch (groupBy) {
+            case CATEGORY -> categories.get(group);
+            case DEPT -> depts.get(group);
+            case READER_TYPE -> readerTypes.get(group);
+            case WEEKDAY -> WEEKDAYS[group];
+            case MONTH -> {
+                int month = baseMonth + group;
+                yield String.format("%04d-%02d", Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1);
+            }
+        };
+    }
+
+    // 年 * 12 + 月份下标
+    private static int month(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    // -1 不过滤，-2 没有匹配
+    private static int filterCode(List<String> dictionary, String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        int code = dictionary.indexOf(value.trim());
+        return code < 0 ? -2 : code;
+    }
+
+    private static ByteBuffer column(Map<String, ByteBuffer> columns, String name) {
+        ByteBuffer column = columns.get(name);
+        if (column == null) {
+            throw new IllegalStateException("借阅快照缺少列: " + name);
+        }
+        return column;
+    }
+
+    private static List<String> readDictionary(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(buffer));
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Partial {
+        private final long[] borrows;
+        private final long[] overdue;
+        private final long[] returned;
+        private final long[] loanDays;
+
+        private Partial(int groups) {
+            borrows = new long[groups];
+            overdue = new long[groups];
+            returned = new long[groups];
+            loanDays = new long[groups];
+        }
+
+        private Partial merge(Partial other) {
+            Partial merged = new Partial(borrows.length);
+            for (int g = 0; g < borrows.length; g++) {
+                merged.borrows[g] = borrows[g] + other.borrows[g];
+                merged.overdue[g] = overdue[g] + other.overdue[g];
+                merged.returned[g] = returned[g] + other.returned[g];
+                merged.loanDays[g] = loanDays[g] + other.loanDays[g];
+            }
+            return merged;
+        }
+    }
+}
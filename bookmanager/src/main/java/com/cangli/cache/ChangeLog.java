@@ -0,0 +1,67 @@
+package com.cangli.cache;
+
+import com.cangli.mapper.ChangeLogMapper;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 变更日志：写操作在同一事务内追加一条 change_log 记录，
+ * 其他节点轮询到后清空本地的 MyBatis 二级缓存并递增资源版本（见 ChangeLogTailer）
+ */
+@Component
+public class ChangeLog {
+
+    // 资源 -> 缓存该资源的 mapper 命名空间
+    private static final Map<ResourceVersions.Resource, String> NAMESPACES = new EnumMap<>(ResourceVersions.Resource.class);
+
+    static {
+        NAMESPACES.put(ResourceVersions.Resource.BOOK, "com.cangli.mapper.BookMapper");
+        NAMESPACES.put(ResourceVersions.Resource.CATEGORY, "com.cangli.mapper.CategoryMapper");
+        NAMESPACES.put(ResourceVersions.Resource.BOOK_ITEM, "com.cangli.mapper.BookItemMapper");
+        NAMESPACES.put(ResourceVersions.Resource.READER, "com.cangli.mapper.ReaderMapper");
+        NAMESPACES.put(ResourceVersions.Resource.BORROW_RECORD, "com.cangli.mapper.BorrowRecordMapper");
+    }
+
+    // 每个应用上下文一个节点ID，同一 JVM 中启动两个上下文也能区分
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private ChangeLogMapper changeLogMapper;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 记录一次变更。须在业务写操作的事务内调用，回滚时变更记录一起回滚
+     */
+    public void record(ResourceVersions.Resource resource, Number entityId) {
+        changeLogMapper.insert(resource.name(), entityId == null ? null : entityId.longValue(), nodeId);
+        // 本节点的缓存已由 mapper 的写语句清空，这里只需递增版本号
+        resourceVersions.bump(resource);
+    }
+
+    /**
+     * 应用其他节点的变更：清空本地缓存（级联到依赖的命名空间）并递增版本号
+     */
+    public void applyRemote(ResourceVersions.Resource resource) {
+        String namespace = NAMESPACES.get(resource);
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        if (namespace != null && configuration.getCacheNames().contains(namespace)) {
+            configuration.getCache(namespace).clear();
+        }
+        resourceVersions.bump(resource);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,207 @@
+package com.cangli.cache;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MyBatis 二级缓存：按序列化后的字节数限制容量，LRU 淘汰。
+ * 缓存值以字节形式保存，每次命中都反序列化出新对象，调用方修改结果不会污染缓存。
+ * 清空某个命名空间时同时清空依赖它的命名空间（通过 dependents 属性声明），
+ * 例如 book_items 的写操作会清空关联查询了 bi.barcode 的借阅记录缓存
+ */
+public class NamespaceCache implements Cache {
+
+    // 命名空间 -> 缓存实例（同一 JVM 中可能有多个 MyBatis 配置）
+    private static final ConcurrentHashMap<String, Set<NamespaceCache>> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // 以下属性由 mapper XML 中 <cache> 的 <property> 设置
+    private long maxBytes = 4 * 1024 * 1024;
+    private List<String> dependents = Collections.emptyList();
+
+    public NamespaceCache(String id) {
+        this.id = id;
+        REGISTRY.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public void setDependents(String dependents) {
+        List<String> namespaces = new ArrayList<>();
+        for (String namespace : dependents.split(",")) {
+            if (!namespace.isBlank()) {
+                namespaces.add(namespace.trim());
+            }
+        }
+        this.dependents = namespaces;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        byte[] bytes = serialize(value);
+        // 单个结果超过容量的 1/8 不缓存，避免大列表把其他条目全部挤出
+        if (bytes.length > maxBytes / 8) {
+            return;
+        }
+        lock.lock();
+        try {
+            byte[] previous = entries.put(key, bytes);
+            if (previous != null) {
+                currentBytes -= previous.length;
+            }
+            currentBytes += bytes.length;
+            Iterator<byte[]> it = entries.values().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                currentBytes -= it.next().length;
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        byte[] bytes;
+        lock.lock();
+        try {
+            bytes = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return deserialize(bytes);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        lock.lock();
+        try {
+            byte[] removed = entries.remove(key);
+            if (removed != null) {
+                currentBytes -= removed.length;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        clearLocal();
+        for (String namespace : dependents) {
+            clearNamespace(namespace);
+        }
+    }
+
+    private void clearLocal() {
+        lock.lock();
+        try {
+            entries.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空指定命名空间的缓存（不再级联）
+     */
+    public static void clearNamespace(String namespace) {
+        Set<NamespaceCache> caches = REGISTRY.get(namespace);
+        if (caches != null) {
+            caches.forEach(NamespaceCache::clearLocal);
+        }
+    }
+
+    /**
+     * 各命名空间的命中率统计
+     */
+    public static List<Map<String, Object>> stats() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        REGISTRY.forEach((namespace, caches) -> {
+            long hitCount = 0;
+            long missCount = 0;
+            long evictionCount = 0;
+            long size = 0;
+            long bytes = 0;
+            for (NamespaceCache cache : caches) {
+                hitCount += cache.hits.sum();
+                missCount += cache.misses.sum();
+                evictionCount += cache.evictions.sum();
+                cache.lock.lock();
+                try {
+                    size += cache.entries.size();
+                    bytes += cache.currentBytes;
+                } finally {
+                    cache.lock.unlock();
+                }
+            }
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("namespace", namespace);
+            stat.put("hits", hitCount);
+            stat.put("misses", missCount);
+            stat.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+            stat.put("evictions", evictionCount);
+            stat.put("entries", size);
+            stat.put("bytes", bytes);
+            result.add(stat);
+        });
+        return result;
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new CacheException("缓存序列化失败: " + value, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("缓存反序列化失败", e);
+        }
+    }
+}
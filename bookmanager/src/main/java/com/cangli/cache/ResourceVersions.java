@@ -0,0 +1,130 @@
+package com.cangli.cache;
+
+import com.cangli.utils.TransactionUtil;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 资源版本号：每次写操作提交后递增，用于生成列表接口的 ETag，
+ * 客户端带 If-None-Match 轮询时无需查库即可返回 304
+ */
+@Component
+public class ResourceVersions {
+
+    // 与消息转换器的注册顺序一致：JSON 在前，CBOR、Smile 在后
+    private static final List<MediaType> ENCODINGS = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, new MediaType("application", "x-jackson-smile"));
+    private static final String[] ENCODING_NAMES = {"json", "cbor", "smile"};
+
+    public enum Resource {
+        BOOK,
+        CATEGORY,
+        BOOK_ITEM,
+        READER,
+        // 借阅记录：借书、还书、续借和归档，其他节点据此清空借阅记录的缓存、重新统计在借数
+        BORROW_RECORD,
+        // 预约等待队列，只用于多实例之间同步内存中的队列，实体ID为图书ID
+        RESERVATION
+    }
+
+    // 启动时间戳，保证重启后计数器归零也不会与旧 ETag 冲突
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLongArray versions = new AtomicLongArray(Resource.values().length);
+
+    /**
+     * 递增资源版本。处于事务中时推迟到提交之后，避免并发读到旧数据却拿到新版本号
+     */
+    public void bump(Resource resource) {
+        TransactionUtil.afterCommit(() -> versions.incrementAndGet(resource.ordinal()));
+    }
+
+    public long version(Resource resource) {
+        return versions.get(resource.ordinal());
+    }
+
+    /**
+     * 由若干资源的当前版本组成的强 ETag，需在查询数据之前获取。
+     * 同一版本的数据按不同编码、不同字段集输出时是不同的表示，由 variant 区分
+     */
+    public String etag(String variant, Resource... resources) {
+        StringBuilder sb = new StringBuilder(32).append('"').append(epoch);
+        for (Resource resource : resources) {
+            sb.append('-').append(version(resource));
+        }
+        if (variant != null) {
+            sb.append(';').append(variant);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 列表接口的条件请求：按资源版本、?fields= 和 Accept 协商出的编码生成 ETag，
+     * 匹配时返回 true（响应已设为 304）。304 也带上 Vary: Accept，和 200 响应保持一致
+     */
+    public boolean checkNotModified(WebRequest request, String fields, Resource... resources) {
+        if (request instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null
+                && !servletRequest.getResponse().getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+            servletRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        String variant = encoding(request.getHeader(HttpHeaders.ACCEPT)) + fieldsVariant(fields);
+        return request.checkNotModified(etag(variant, resources));
+    }
+
+    /**
+     * 按 Accept 推断响应编码：请求的类型按具体程度和 q 值排序，取第一个能产生的编码，默认 JSON
+     */
+    static String encoding(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return ENCODING_NAMES[0];
+        }
+        List<MediaType> requested;
+        try {
+            requested = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return ENCODING_NAMES[0];
+        }
+        MimeTypeUtils.sortBySpecificity(requested);
+        for (MediaType type : requested) {
+            for (int i = 0; i < ENCODINGS.size(); i++) {
+                if (type.getQualityValue() > 0 && type.isCompatibleWith(ENCODINGS.get(i))) {
+                    return ENCODING_NAMES[i];
+                }
+            }
+        }
+        return ENCODING_NAMES[0];
+    }
+
+    /**
+     * 字段集规范化为排序去重后的清单（输出的属性顺序与 fields 的顺序无关），
+     * 含白名单以外字符的参数本身就会被拒绝，这里用哈希代替，保证 ETag 是合法的字符
+     */
+    static String fieldsVariant(String fields) {
+        if (fields == null) {
+            return "";
+        }
+        TreeSet<String> names = new TreeSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                names.add(field.trim());
+            }
+        }
+        String joined = String.join(".", names);
+        for (int i = 0; i < joined.length(); i++) {
+            char c = joined.charAt(i);
+            if (!(c == '.' || c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                return ";f~" + Integer.toHexString(joined.hashCode());
+            }
+        }
+        return ";f=" + joined;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cangli.config;
+
+import com.cangli.datasource.Workload;
+import com.cangli.datasource.WorkloadRoutingDataSource;
+import com.cangli.monitor.PoolMetrics;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接池隔离：一般请求、借还书事务、大列表查询各用一个 Hikari 池，
+ * 报表查询再慢也只会占满自己的小池子。公共配置取自 spring.datasource.hikari
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig baseHikariConfig() {
+        return new HikariConfig();
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource defaultPool(DataSourceProperties properties, HikariConfig baseHikariConfig, PoolMetrics poolMetrics) {
+        HikariConfig config = poolConfig(properties, baseHikariConfig, poolMetrics, "default");
+        return pool(config);
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource checkoutPool(DataSourceProperties properties, HikariConfig baseHikariConfig, PoolMetrics poolMetrics,
+                                         @Value("${bookmanager.datasource.checkout.maximum-pool-size:6}") int maximumPoolSize,
+                                         @Value("${bookmanager.datasource.checkout.minimum-idle:2}") int minimumIdle) {
+        HikariConfig config = poolConfig(properties, baseHikariConfig, poolMetrics, "checkout");
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        return pool(config);
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource reportingPool(DataSourceProperties properties, HikariConfig baseHikariConfig, PoolMetrics poolMetrics,
+                                          @Value("${bookmanager.datasource.reporting.maximum-pool-size:3}") int maximumPoolSize,
+                                          @Value("${bookmanager.datasource.reporting.connection-timeout:10000}") long connectionTimeout,
+                                          @Value("${bookmanager.datasource.reporting.connection-init-sql:}") String connectionInitSql) {
+        HikariConfig config = poolConfig(properties, baseHikariConfig, poolMetrics, "reporting");
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(0);
+        // 报表可以多等一会儿连接，不和前台请求共用超时
+        config.setConnectionTimeout(connectionTimeout);
+        if (!connectionInitSql.isBlank()) {
+            config.setConnectionInitSql(connectionInitSql);
+        }
+        return pool(config);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("defaultPool") HikariDataSource defaultPool,
+                                 @Qualifier("checkoutPool") HikariDataSource checkoutPool,
+                                 @Qualifier("reportingPool") HikariDataSource reportingPool,
+                                 @Value("${bookmanager.datasource.checkout-transactions:}") List<String> checkoutTransactions) {
+        WorkloadRoutingDataSource routing = new WorkloadRoutingDataSource(checkoutTransactions);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Workload.DEFAULT, defaultPool);
+        targets.put(Workload.CHECKOUT, checkoutPool);
+        targets.put(Workload.REPORTING, reportingPool);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(defaultPool);
+        routing.afterPropertiesSet();
+        // 推迟到第一条语句时才取真实连接，路由时才能看到事务名
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // 不用 HikariDataSource(HikariConfig) 构造，那样会立即建池；这里和自动配置一样延迟到第一次取连接
+    private static HikariDataSource pool(HikariConfig config) {
+        HikariDataSource dataSource = new HikariDataSource();
+        config.copyStateTo(dataSource);
+        return dataSource;
+    }
+
+    private static HikariConfig poolConfig(DataSourceProperties properties, HikariConfig base, PoolMetrics poolMetrics, String name) {
+        HikariConfig config = new HikariConfig();
+        base.copyStateTo(config);
+        config.setJdbcUrl(properties.determineUrl());
+        config.setUsername(properties.determineUsername());
+        config.setPassword(properties.determinePassword());
+        config.setDriverClassName(properties.determineDriverClassName());
+        config.setPoolName("bookmanager-" + name);
+        config.setMetricsTrackerFactory(poolMetrics);
+        return config;
+    }
+}
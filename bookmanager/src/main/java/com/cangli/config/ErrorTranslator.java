@@ -0,0 +1,173 @@
+package com.cangli.config;
+
+import com.cangli.pojo.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异常翻译：把异常映射为稳定的错误码和用户友好的消息，并对重复的错误日志限流
+ */
+@Component
+public class ErrorTranslator {
+
+    private static final Logger log = LoggerFactory.getLogger(ErrorTranslator.class);
+
+    private static final int MAX_MESSAGE_LENGTH = 100;
+    private static final String REPLACEMENT = "系统错误";
+
+    // 同一种错误在一个窗口内只打印一次完整日志
+    private static final long LOG_WINDOW_MILLIS = 10_000;
+    // 限流表的最大条目数，防止异常消息各不相同时无限增长
+    private static final int MAX_TRACKED_ERRORS = 1024;
+
+    /**
+     * 每种异常类型对应的稳定错误码
+     */
+    public enum ErrorCode {
+        VALIDATION(40001, "输入信息有误"),
+        ILLEGAL_ARGUMENT(40002, "请求参数无效"),
+        NULL_POINTER(50001, "系统内部错误，请稍后重试"),
+        DATA_ACCESS(50301, "数据库操作失败，请稍后重试"),
+        UNKNOWN(50000, "系统发生未知错误");
+
+        private final int code;
+        private final String defaultMessage;
+
+        ErrorCode(int code, String defaultMessage) {
+            this.code = code;
+            this.defaultMessage = defaultMessage;
+        }
+
+        public int getCode() { return code; }
+        public String getDefaultMessage() { return defaultMessage; }
+    }
+
+    private final ConcurrentHashMap<String, LogWindow> logWindows = new ConcurrentHashMap<>();
+
+    public ErrorCode classify(Throwable ex) {
+        if (ex instanceof IllegalArgumentException) {
+            return ErrorCode.ILLEGAL_ARGUMENT;
+        }
+        if (ex instanceof NullPointerException) {
+            return ErrorCode.NULL_POINTER;
+        }
+        if (ex instanceof DataAccessException) {
+            return ErrorCode.DATA_ACCESS;
+        }
+        return ErrorCode.UNKNOWN;
+    }
+
+    public Result translate(Exception ex) {
+        ErrorCode errorCode = classify(ex);
+        logLimited(errorCode, ex);
+        switch (errorCode) {
+            case ILLEGAL_ARGUMENT:
+                return Result.error(errorCode.getCode(), errorCode.getDefaultMessage() + "：" + ex.getMessage());
+            case NULL_POINTER:
+            case DATA_ACCESS:
+                return Result.error(errorCode.getCode(), errorCode.getDefaultMessage());
+            default:
+                return Result.error(errorCode.getCode(), sanitize(ex.getMessage()) + "，请联系管理员");
+        }
+    }
+
+    /**
+     * 截断异常消息并移除技术细节（如类名），使其用户友好
+     */
+    public static String sanitize(String message) {
+        if (message == null || message.isEmpty()) {
+            return ErrorCode.UNKNOWN.getDefaultMessage();
+        }
+        // 截断消息到100个字符，避免暴露敏感信息
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH) + "...";
+        }
+        return stripTechnicalDetail(message);
+    }
+
+    /**
+     * 单次扫描：从 java. / org. / com. 出现的位置起到行尾替换为"系统错误"，
+     * 与原先三次 replaceAll("xxx\\..*") 的结果一致，但不编译正则，没有命中时不分配新对象
+     */
+    static String stripTechnicalDetail(String message) {
+        int n = message.length();
+        StringBuilder out = null;
+        int copied = 0;
+        int i = 0;
+        while (i < n) {
+            if (!startsWithPackage(message, i)) {
+                i++;
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(n);
+            }
+            out.append(message, copied, i).append(REPLACEMENT);
+            while (i < n && !isLineTerminator(message.charAt(i))) {
+                i++;
+            }
+            copied = i;
+        }
+        if (out == null) {
+            return message;
+        }
+        return out.append(message, copied, n).toString();
+    }
+
+    private static boolean startsWithPackage(String s, int i) {
+        char c = s.charAt(i);
+        if (c == 'j') {
+            return s.startsWith("java.", i);
+        }
+        if (c == 'o') {
+            return s.startsWith("org.", i);
+        }
+        if (c == 'c') {
+            return s.startsWith("com.", i);
+        }
+        return false;
+    }
+
+    // 与正则中 '.' 不匹配的行终止符保持一致
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * 同一异常类型+消息在窗口期内只记录一次堆栈，窗口结束时汇报被抑制的次数
+     */
+    private void logLimited(ErrorCode errorCode, Exception ex) {
+        if (errorCode == ErrorCode.ILLEGAL_ARGUMENT) {
+            // 参数错误属于正常业务流程，不记录
+            return;
+        }
+        String key = ex.getClass().getName() + ':' + ex.getMessage();
+        if (logWindows.size() >= MAX_TRACKED_ERRORS && !logWindows.containsKey(key)) {
+            logWindows.clear();
+        }
+        LogWindow window = logWindows.computeIfAbsent(key, k -> new LogWindow());
+        long now = System.currentTimeMillis();
+        long start = window.start.get();
+        if (now - start >= LOG_WINDOW_MILLIS && window.start.compareAndSet(start, now)) {
+            long suppressed = window.suppressed.getAndSet(0);
+            if (suppressed > 0) {
+                log.error("[{}] 未处理的异常（过去 {} 秒内另有 {} 次相同错误被抑制）",
+                        errorCode.getCode(), LOG_WINDOW_MILLIS / 1000, suppressed, ex);
+            } else {
+                log.error("[{}] 未处理的异常", errorCode.getCode(), ex);
+            }
+        } else {
+            window.suppressed.incrementAndGet();
+        }
+    }
+
+    private static final class LogWindow {
+        private final AtomicLong start = new AtomicLong(Long.MIN_VALUE / 2);
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+}
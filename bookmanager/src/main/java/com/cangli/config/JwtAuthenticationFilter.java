@@ -1,10 +1,7 @@
 package com.cangli.config;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
-import com.cangli.pojo.Admin;
-import com.cangli.pojo.Reader;
-import com.cangli.service.AdminService;
-import com.cangli.service.ReaderService;
+import com.cangli.service.AuthService;
 import com.cangli.utils.JwtUtil;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -20,10 +17,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
-    private ReaderService readerService;
-
-    @Autowired
-    private AdminService adminService;
+    private AuthService authService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -37,8 +31,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        String token = request.getHeader("Authorization");
-        if (token == null || !token.startsWith("Bearer ")) {
+        // 负载均衡的就绪检查
+        if ("/ready".equals(requestURI) && "GET".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // 封面图片由 <img> 直接加载，无法携带 token
+        if (requestURI.startsWith("/covers/") && "GET".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // 事件流接口也可以用 ?access_token= 传 token，见 JwtUtil.requestToken
+        String token = JwtUtil.requestToken(request);
+        if (token == null) {
             response.setStatus(401);
             response.setContentType("application/json;charset=UTF-8");
             response.getWriter().write("{\"code\":401,\"msg\":\"未登录或token无效\"}");
@@ -46,42 +53,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         try {
-            // 去掉Bearer前缀
-            token = token.substring(7);
             DecodedJWT jwt = JwtUtil.parseToken(token);
             String username = jwt.getClaim("username").asString();
-            String password = jwt.getClaim("password").asString();
             String role = jwt.getClaim("role").asString();
+            String cred = jwt.getClaim("cred").asString();
 
-            Object currentUser = null;
-
-            if ("admin".equals(role)) {
-                // 验证管理员
-                Admin admin = adminService.findByUsernameAndPassword(username, password);
-                if (admin == null) {
-                    response.setStatus(401);
-                    response.setContentType("application/json;charset=UTF-8");
-                    response.getWriter().write("{\"code\":401,\"msg\":\"管理员不存在\"}");
-                    return;
-                }
-                currentUser = admin;
-            } else if ("reader".equals(role)) {
-                // 验证读者
-                Reader reader = readerService.findReaderByUserNameAndPassword(username, password);
-                if (reader == null) {
-                    response.setStatus(401);
-                    response.setContentType("application/json;charset=UTF-8");
-                    response.getWriter().write("{\"code\":401,\"msg\":\"读者不存在\"}");
-                    return;
-                }
-                currentUser = reader;
-            } else {
+            // 启动预热的服务身份只能发 GET 请求
+            boolean warmupRead = AuthService.WARMUP_ROLE.equals(role) && "GET".equals(request.getMethod());
+            if (!"admin".equals(role) && !"reader".equals(role) && !warmupRead) {
                 response.setStatus(401);
                 response.setContentType("application/json;charset=UTF-8");
                 response.getWriter().write("{\"code\":401,\"msg\":\"无效角色\"}");
                 return;
             }
 
+            // 凭据戳与当前密码不符说明改过密码，旧 token 作废
+            Object currentUser = authService.resolve(username, role, cred);
+            if (currentUser == null) {
+                response.setStatus(401);
+                response.setContentType("application/json;charset=UTF-8");
+                response.getWriter().write("admin".equals(role)
+                        ? "{\"code\":401,\"msg\":\"管理员不存在\"}"
+                        : "reader".equals(role)
+                        ? "{\"code\":401,\"msg\":\"读者不存在\"}"
+                        : "{\"code\":401,\"msg\":\"token无效或已过期\"}");
+                return;
+            }
+
             // 将用户信息存储到request中，供后续使用
             request.setAttribute("currentUser", currentUser);
             request.setAttribute("currentRole", role);
@@ -0,0 +1,181 @@
+package com.cangli.config;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.cangli.utils.JwtUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限流：在 JWT 认证之前按"用户 + 接口类别"做令牌桶限流，超限直接返回 429，不触碰数据库。
+ * 用户从 token 中取（只验签，不查库），没有有效 token 时按客户端 IP 计
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 接口类别，每类单独配置容量和补充速率
+     */
+    enum RouteClass {
+        LOGIN,      // 登录、注册
+        CHECKOUT,   // 借书、还书、续借
+        WRITE,      // 其他写操作
+        READ        // 查询
+    }
+
+    private static final String PREFIX = "bookmanager.rate-limit.";
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${bookmanager.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // 桶闲置（已补满）超过该时间后被清理
+    @Value("${bookmanager.rate-limit.idle-seconds:300}")
+    private long idleSeconds;
+
+    // 桶的数量上限，超出后新来的 key 共用一个溢出桶
+    @Value("${bookmanager.rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+
+    private final Map<RouteClass, Limit> limits = new EnumMap<>(RouteClass.class);
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    protected void initFilterBean() {
+        limits.put(RouteClass.LOGIN, limit(RouteClass.LOGIN, 10, 0.5));
+        limits.put(RouteClass.CHECKOUT, limit(RouteClass.CHECKOUT, 30, 5));
+        limits.put(RouteClass.WRITE, limit(RouteClass.WRITE, 30, 5));
+        limits.put(RouteClass.READ, limit(RouteClass.READ, 60, 20));
+    }
+
+    private Limit limit(RouteClass routeClass, int defaultCapacity, double defaultPerSecond) {
+        String name = routeClass.name().toLowerCase();
+        int capacity = environment.getProperty(PREFIX + name + ".capacity", Integer.class, defaultCapacity);
+        double perSecond = environment.getProperty(PREFIX + name + ".refill-per-second", Double.class, defaultPerSecond);
+        return new Limit(capacity, perSecond);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!enabled || "OPTIONS".equals(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        RouteClass routeClass = classify(request);
+        String key = principal(request) + '|' + routeClass;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            String bucketKey = buckets.size() < maxBuckets ? key : "overflow|" + routeClass;
+            bucket = buckets.computeIfAbsent(bucketKey, k -> new Bucket(limits.get(routeClass)));
+        }
+        long waitNanos = bucket.tryAcquire(System.nanoTime());
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setStatus(429);
+            response.setHeader("Retry-After", Long.toString(retryAfter));
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"code\":429,\"msg\":\"请求过于频繁，请稍后重试\"}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    static RouteClass classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        String uri = request.getRequestURI();
+        if ("/login".equals(uri) || "/reader".equals(uri) && "POST".equals(method)) {
+            return RouteClass.LOGIN;
+        }
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return RouteClass.READ;
+        }
+        if (uri.startsWith("/borrow")) {
+            return RouteClass.CHECKOUT;
+        }
+        return RouteClass.WRITE;
+    }
+
+    private static String principal(HttpServletRequest request) {
+        String token = JwtUtil.requestToken(request);
+        if (token != null) {
+            try {
+                // 只做 HMAC 验签，伪造不了别人的身份去耗尽别人的桶
+                DecodedJWT jwt = JwtUtil.parseToken(token);
+                return jwt.getClaim("role").asString() + ':' + jwt.getClaim("username").asString();
+            } catch (Exception e) {
+                // token 无效按 IP 限流，交给后面的认证过滤器返回 401
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * 清理闲置的桶
+     */
+    @Scheduled(fixedDelayString = "${bookmanager.rate-limit.sweep-millis:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        buckets.values().removeIf(bucket -> bucket.idleSince(now) > idleNanos);
+    }
+
+    private record Limit(int capacity, double perSecond) {
+    }
+
+    /**
+     * 令牌桶的 GCRA 实现：只保存"理论到达时间"一个值，CAS 更新，无锁。
+     * 每个请求把它推后一个发放间隔，超出容量允许的突发量时拒绝
+     */
+    static final class Bucket {
+        // 每个令牌的发放间隔
+        private final long intervalNanos;
+        // 允许的突发量（容量 - 1 个间隔）
+        private final long burstNanos;
+        private final AtomicLong theoreticalArrival;
+
+        Bucket(Limit limit) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.perSecond()));
+            this.burstNanos = intervalNanos * (Math.max(1, limit.capacity()) - 1);
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * 获取一个令牌，成功返回 0，否则返回需要等待的纳秒数
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long base = Math.max(tat, now);
+                long wait = base - burstNanos - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        // 桶已补满的时长，未补满时为负数
+        long idleSince(long now) {
+            return now - theoreticalArrival.get();
+        }
+    }
+}
@@ -1,10 +1,114 @@
 package com.cangli.controller;
 
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import com.cangli.cache.NamespaceCache;
+import com.cangli.monitor.CodecBenchmark;
+import com.cangli.monitor.ErrorBenchmark;
+import com.cangli.monitor.PoolMetrics;
+import com.cangli.monitor.SqlStatsBenchmark;
+import com.cangli.monitor.SqlStatsInterceptor;
+import com.cangli.pojo.Result;
+import com.cangli.service.PasswordService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
 
 @RequestMapping("/admin")
 @RestController
 public class AdminController {
+    @Autowired
+    private SqlStatsInterceptor sqlStatsInterceptor;
 
+    @Autowired
+    private SqlStatsBenchmark sqlStatsBenchmark;
+
+    @Autowired
+    private PoolMetrics poolMetrics;
+
+    @Autowired
+    private CodecBenchmark codecBenchmark;
+
+    @Autowired
+    private ErrorBenchmark errorBenchmark;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    // SQL 语句耗时排行，orderBy: total / avg / max / calls / rows / errors
+    @GetMapping("/sql-stats")
+    Result getSqlStats(@RequestParam(defaultValue = "10") int top,
+                       @RequestParam(defaultValue = "total") String orderBy,
+                       @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(sqlStatsInterceptor.top(top, orderBy));
+    }
+
+    // SQL 统计插件在正常路径上每条语句增加的耗时
+    @GetMapping("/sql-stats-bench")
+    Result getSqlStatsBench(@RequestParam(defaultValue = "1000000") int iterations,
+                            @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(sqlStatsBenchmark.run(Math.max(1000, Math.min(iterations, 10_000_000))));
+    }
+
+    // MyBatis 二级缓存各命名空间命中率
+    @GetMapping("/cache-stats")
+    Result getCacheStats(@RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(NamespaceCache.stats());
+    }
+
+    // 各连接池的取连接等待时间、超时次数和当前连接数
+    @GetMapping("/pool-stats")
+    Result getPoolStats(@RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(poolMetrics.snapshot());
+    }
+
+    // 用当前数据对比 JSON / CBOR / Smile 的响应体积和编解码耗时
+    @GetMapping("/codec-bench")
+    Result getCodecBench(@RequestParam(defaultValue = "200") int iterations,
+                         @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(codecBenchmark.run(Math.max(1, Math.min(iterations, 10000))));
+    }
+
+    // 每个异常的翻译耗时和内存分配，对比原先的正则脱敏
+    @GetMapping("/error-bench")
+    Result getErrorBench(@RequestParam(defaultValue = "100000") int iterations,
+                         @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(errorBenchmark.run(Math.max(1000, Math.min(iterations, 10_000_000))));
+    }
+
+    // 单次密码哈希耗时，iterations 不传时测当前配置
+    @GetMapping("/password-bench")
+    Result getPasswordBench(@RequestParam(required = false) Integer iterations,
+                            @RequestParam(defaultValue = "5") int rounds,
+                            @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        int cost = iterations == null ? passwordService.getIterations() : Math.max(1000, Math.min(iterations, 2_000_000));
+        return Result.ok(passwordService.benchmark(cost, Math.max(1, Math.min(rounds, 20))));
+    }
+
+    @DeleteMapping("/sql-stats")
+    Result resetSqlStats(@RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        sqlStatsInterceptor.reset();
+        return Result.ok();
+    }
 }
@@ -0,0 +1,50 @@
+package com.cangli.controller;
+
+import com.cangli.analytics.CirculationSnapshot;
+import com.cangli.pojo.Result;
+import com.cangli.service.CirculationAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RequestMapping("/analytics")
+@RestController
+public class AnalyticsController {
+    @Autowired
+    private CirculationAnalyticsService circulationAnalyticsService;
+
+    // 借阅统计：groupBy 为 category / dept / readerType / weekday / month，借出日期 [from, to)，
+    // 数据截止到本节点上次导出，各节点的快照时间可能不同（见返回的 node、snapshotAt）
+    @GetMapping("/circulation")
+    Result getCirculation(@RequestParam(defaultValue = "category") String groupBy,
+                          @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+                          @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to,
+                          @RequestParam(required = false) String category,
+                          @RequestParam(required = false) String dept,
+                          @RequestParam(required = false) String readerType,
+                          @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        if (!circulationAnalyticsService.hasSnapshot()) {
+            return Result.error("借阅快照尚未生成，请稍后再试");
+        }
+        return Result.ok(circulationAnalyticsService.aggregate(CirculationSnapshot.GroupBy.parse(groupBy),
+                from, to, category, dept, readerType));
+    }
+
+    // 立即重新导出借阅快照，不等夜间任务。只刷新处理该请求的节点，其他节点仍用各自的快照
+    @PostMapping("/circulation/export")
+    Result exportCirculation(@RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        int rows = circulationAnalyticsService.export();
+        return Result.ok(Map.of("rows", rows,
+                "node", circulationAnalyticsService.getNodeId(),
+                "snapshotAt", circulationAnalyticsService.getSnapshotAt()));
+    }
+}
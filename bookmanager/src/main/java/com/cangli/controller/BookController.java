@@ -1,10 +1,15 @@
 package com.cangli.controller;
 
+import com.cangli.cache.ResourceVersions;
 import com.cangli.pojo.Book;
 import com.cangli.pojo.Result;
 import com.cangli.service.BookService;
+import com.cangli.service.IdempotencyService;
+import com.cangli.service.RecommendationService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -15,12 +20,36 @@ public class BookController {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    // fields 为逗号分隔的字段名，只返回这些字段，例如 ?fields=title,author,availableCount
     @GetMapping()
-    Result getBookList() {
+    Result getBookList(@RequestParam(required = false) String fields, WebRequest request) {
+        // 图书列表包含分类名和副本，任一变化都会改变 ETag
+        if (resourceVersions.checkNotModified(request, fields, ResourceVersions.Resource.BOOK,
+                ResourceVersions.Resource.BOOK_ITEM, ResourceVersions.Resource.CATEGORY)) {
+            return null;
+        }
+        if (fields != null) {
+            return Result.ok(bookService.findAll(fields));
+        }
         List<Book> books = bookService.findAll();
         return Result.ok(books);
     }
 
+    // 借过这本书的读者还借过
+    @GetMapping("/{id}/also-borrowed")
+    Result getAlsoBorrowed(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        return Result.ok(recommendationService.alsoBorrowedBooks(id, limit));
+    }
+
     @PostMapping()
     Result addBook(@RequestBody Book book) {
         System.out.println(book);
@@ -42,7 +71,9 @@ public class BookController {
     }
 
     @PutMapping("/purchase/{id}")
-    Result purchaseBook(@PathVariable Long id, @RequestBody Map<String, Object> request) {
+    Result purchaseBook(@PathVariable Long id, @RequestBody Map<String, Object> request,
+                        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                        HttpServletRequest httpRequest) {
         Integer quantity = (Integer) request.get("quantity");
         String supplier = (String) request.get("supplier");
 
@@ -50,8 +81,10 @@ public class BookController {
         System.out.println(quantity);
         System.out.println(supplier);
         System.out.println("订阅成功");
-        bookService.purchaseBook(id, quantity, supplier);
-        return Result.ok();
+        return idempotencyService.execute(idempotencyKey, httpRequest, request, () -> {
+            bookService.purchaseBook(id, quantity, supplier);
+            return Result.ok();
+        });
     }
 
     @PutMapping("/discard/{id}")
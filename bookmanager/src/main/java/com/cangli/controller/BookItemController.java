@@ -1,11 +1,18 @@
 package com.cangli.controller;
 
+import com.cangli.cache.ResourceVersions;
+import com.cangli.event.BookItemEventBus;
 import com.cangli.pojo.BookItem;
 import com.cangli.pojo.Result;
 import com.cangli.service.BookItemService;
 import com.cangli.service.BookService;
+import com.cangli.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -20,14 +27,27 @@ public class BookItemController {
     @Autowired
     private BookItemService bookItemService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private BookItemEventBus bookItemEventBus;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping("/purchase")
-    Result purchaseBook(@RequestBody Map<String, Object> request) {
+    Result purchaseBook(@RequestBody Map<String, Object> request,
+                        @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                        HttpServletRequest httpRequest) {
         Long bookId = Long.valueOf(request.get("bookId").toString());
         Integer quantity = (Integer) request.get("quantity");
         String supplier = (String) request.get("supplier");
 
-        bookService.purchaseBook(bookId, quantity, supplier);
-        return Result.ok();
+        return idempotencyService.execute(idempotencyKey, httpRequest, request, () -> {
+            bookService.purchaseBook(bookId, quantity, supplier);
+            return Result.ok();
+        });
     }
 
     @PutMapping("/discard")
@@ -48,11 +68,25 @@ public class BookItemController {
 
     // CRUD operations for individual BookItems
     @GetMapping
-    Result getAllBookItems() {
+    Result getAllBookItems(@RequestParam(required = false) String fields, WebRequest request) {
+        if (resourceVersions.checkNotModified(request, fields, ResourceVersions.Resource.BOOK_ITEM)) {
+            return null;
+        }
+        if (fields != null) {
+            return Result.ok(bookItemService.findAll(fields));
+        }
         List<BookItem> bookItems = bookItemService.findAll();
         return Result.ok(bookItems);
     }
 
+    // 副本状态变化推送（SSE），可按图书ID过滤，替代轮询 GET /bookitems。
+    // 浏览器的 EventSource 不能带 Authorization 头，用 ?access_token=<token> 传入，例如
+    // new EventSource('/bookitems/stream?bookId=3&access_token=' + token)；token 会出现在访问日志的 URL 中
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamStatus(@RequestParam(required = false) Long bookId) {
+        return bookItemEventBus.subscribe(bookId);
+    }
+
     @GetMapping("/{id}")
     Result getBookItemById(@PathVariable Integer id) {
         BookItem bookItem = bookItemService.findById(id);
@@ -3,10 +3,14 @@ package com.cangli.controller;
 import com.cangli.pojo.BorrowRecord;
 import com.cangli.pojo.Result;
 import com.cangli.service.BorrowRecordService;
+import com.cangli.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -16,14 +20,35 @@ public class BorrowRecordController {
     @Autowired
     private BorrowRecordService borrowRecordService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @GetMapping()
-    Result getBorrowList() {
+    Result getBorrowList(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return Result.ok(borrowRecordService.findAll(fields));
+        }
         List<BorrowRecord> borrowRecords = borrowRecordService.findAll();
         return Result.ok(borrowRecords);
     }
 
+    // 借阅历史，from/to 格式 yyyy-MM-dd；不传 from 或 from 早于归档截止日期时会合并归档记录
+    @GetMapping("/history")
+    Result getBorrowHistory(@RequestParam(required = false) Long readerId,
+                            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+                            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to) {
+        return Result.ok(borrowRecordService.findHistory(readerId, from, to));
+    }
+
+    // 客户端超时重试时带上相同的 Idempotency-Key，不会重复借出
     @PostMapping()
-    Result borrowBook(@RequestBody Map<String, Object> request) {
+    Result borrowBook(@RequestBody Map<String, Object> request,
+                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                      HttpServletRequest httpRequest) {
+        return idempotencyService.execute(idempotencyKey, httpRequest, request, () -> doBorrowBook(request));
+    }
+
+    private Result doBorrowBook(Map<String, Object> request) {
         Long bookId = Long.valueOf(request.get("bookId").toString());
         Long readerId = Long.valueOf(request.get("readerId").toString());
         Object itemIdObj = request.get("itemId");
@@ -1,10 +1,12 @@
 package com.cangli.controller;
 
+import com.cangli.cache.ResourceVersions;
 import com.cangli.pojo.Category;
 import com.cangli.pojo.Result;
 import com.cangli.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -14,8 +16,14 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     @GetMapping()
-    Result getCategories() {
+    Result getCategories(WebRequest request) {
+        if (resourceVersions.checkNotModified(request, null, ResourceVersions.Resource.CATEGORY)) {
+            return null;
+        }
         List<Category> categories = categoryService.findAll();
         return Result.ok(categories);
     }
@@ -0,0 +1,72 @@
+package com.cangli.controller;
+
+import com.cangli.mapper.BookMapper;
+import com.cangli.pojo.Book;
+import com.cangli.service.CoverService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@RequestMapping("/covers")
+@RestController
+public class CoverController {
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private CoverService coverService;
+
+    @GetMapping("/{bookId}")
+    void getCover(@PathVariable Long bookId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Book book = bookMapper.findById(bookId);
+        if (book == null || book.getCoverUrl() == null || book.getCoverUrl().isBlank()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + coverService.key(book.getCoverUrl()) + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "public, max-age=604800");
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        Path file = coverService.thumbnail(book.getCoverUrl());
+        if (file == null) {
+            // 源图无法下载或解码时退回原地址
+            response.setHeader("Cache-Control", "no-cache");
+            response.sendRedirect(book.getCoverUrl());
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setContentType("image/jpeg");
+            response.setContentLengthLong(size);
+            if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+                // 由 Tomcat 使用 sendfile 直接从文件发送到套接字
+                request.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+                request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+                request.setAttribute("org.apache.tomcat.sendfile.end", size);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.cangli.controller;
+
+import com.cangli.job.StartupWarmup;
+import com.cangli.pojo.Result;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class HealthController {
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private StartupWarmup startupWarmup;
+
+    // 负载均衡就绪检查：预热完成、Spring 发布 ACCEPTING_TRAFFIC 之后才返回 200，之前返回 503
+    @GetMapping("/ready")
+    Result ready(HttpServletResponse response) {
+        boolean ready = applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        status.put("warmupMillis", startupWarmup.getTotalMillis());
+        status.put("warmupSteps", startupWarmup.getReport());
+        if (!ready) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return Result.error(503, "服务预热中");
+        }
+        return Result.ok(status);
+    }
+}
@@ -1,11 +1,8 @@
 package com.cangli.controller;
 
-import com.cangli.pojo.Admin;
-import com.cangli.pojo.Reader;
 import com.cangli.pojo.Result;
 import com.cangli.pojo.User;
-import com.cangli.service.AdminService;
-import com.cangli.service.ReaderService;
+import com.cangli.service.AuthService;
 import com.cangli.utils.JwtUtil;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,32 +13,17 @@ import org.springframework.web.bind.annotation.*;
 @RestController
 public class LoginController {
     @Autowired
-    ReaderService readerService;
-    @Autowired
-    AdminService adminService;
+    AuthService authService;
 
     @PostMapping()
     Result index(@RequestBody User user, HttpServletResponse res) {
-        String username = user.getUsername();
-        String password = user.getPassword();
-
-        // 先尝试管理员登录
-        Admin admin = adminService.findByUsernameAndPassword(username, password);
-        if (admin != null) {
-            String role = "admin";
-            String token = JwtUtil.getToken(username, password, role);
-            return Result.ok(new LoginResponse(token, admin, role));
+        // 一次查询同时匹配管理员和读者
+        AuthService.Login login = authService.authenticate(user.getUsername(), user.getPassword());
+        if (login == null) {
+            return Result.error("用户名或密码错误");
         }
-
-        // 再尝试读者登录
-        Reader reader = readerService.findReaderByUserNameAndPassword(username, password);
-        if (reader != null && reader.getUsername() != null && !reader.getUsername().isEmpty()) {
-            String role = "reader";
-            String token = JwtUtil.getToken(username, password, role);
-            return Result.ok(new LoginResponse(token, reader, role));
-        }
-
-        return Result.error("用户名或密码错误");
+        String token = JwtUtil.getToken(user.getUsername(), login.role(), login.stamp());
+        return Result.ok(new LoginResponse(token, login.user(), login.role()));
     }
 
     static class LoginResponse {
@@ -3,10 +3,15 @@ package com.cangli.controller;
 import com.cangli.pojo.Reader;
 import com.cangli.pojo.Result;
 import com.cangli.service.ReaderService;
+import com.cangli.service.RosterImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
 
 @RequestMapping("/reader")
 @RestController
@@ -14,18 +19,62 @@ public class ReaderController {
     @Autowired
     private ReaderService readerService;
 
+    @Autowired
+    private RosterImportService rosterImportService;
+
     @GetMapping()
-    Result getReaderList() {
+    Result getReaderList(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return Result.ok(readerService.findAll(fields));
+        }
         List<Reader> readers = readerService.findAll();
         return Result.ok(readers);
     }
 
+    // 读者选择器：q 按姓名、用户名、班级或姓名拼音首字母前缀匹配，例如 ?q=zs&page=1&size=20
+    @GetMapping("/search")
+    Result searchReaders(@RequestParam(required = false) String q,
+                         @RequestParam(defaultValue = "1") int page,
+                         @RequestParam(defaultValue = "20") int size) {
+        return Result.ok(readerService.search(q, page, size));
+    }
+
     @PostMapping()
     Result addReader(@RequestBody Reader reader) {
         readerService.addReader(reader);
         return Result.ok(reader);
     }
 
+    // 学期花名册导入：请求体为 CSV，首行表头（用户名、姓名、性别、班级、读者类型、联系方式、借书限额、密码），
+    // 按用户名新增或更新；Excel 导出的 GBK 文件传 ?charset=GBK
+    @PostMapping("/import")
+    Result importRoster(@RequestParam(defaultValue = "UTF-8") String charset,
+                        @RequestAttribute(value = "currentRole", required = false) String role,
+                        HttpServletRequest request) throws IOException {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(rosterImportService.importCsv(request.getInputStream(), Charset.forName(charset)));
+    }
+
+    // 批量停用读者（如毕业生）：{"usernames": [...]} 或 {"classDept": "软件201"}
+    @PostMapping("/deactivate")
+    Result deactivateReaders(@RequestBody Map<String, Object> body,
+                             @RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        Object usernames = body.get("usernames");
+        if (usernames != null && !(usernames instanceof List)) {
+            throw new IllegalArgumentException("usernames 必须是数组");
+        }
+        List<String> names = usernames == null ? null
+                : ((List<?>) usernames).stream().map(String::valueOf).toList();
+        Object classDept = body.get("classDept");
+        int count = rosterImportService.deactivate(names, classDept == null ? null : classDept.toString());
+        return Result.ok(Map.of("deactivated", count));
+    }
+
     @PutMapping("/{id}")
     Result updateReader(@PathVariable Long id, @RequestBody Reader reader) {
         reader.setId(id);
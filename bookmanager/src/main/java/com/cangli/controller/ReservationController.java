@@ -0,0 +1,37 @@
+package com.cangli.controller;
+
+import com.cangli.pojo.Reservation;
+import com.cangli.pojo.Result;
+import com.cangli.service.ReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RequestMapping("/reservation")
+@RestController
+public class ReservationController {
+    @Autowired
+    private ReservationService reservationService;
+
+    @GetMapping()
+    Result getReservations(@RequestParam Long readerId) {
+        List<Reservation> reservations = reservationService.findByReaderId(readerId);
+        return Result.ok(reservations);
+    }
+
+    @PostMapping()
+    Result reserve(@RequestBody Map<String, Object> request) {
+        Long bookId = Long.valueOf(request.get("bookId").toString());
+        Long readerId = Long.valueOf(request.get("readerId").toString());
+        Reservation reservation = reservationService.reserve(bookId, readerId);
+        return Result.ok(reservation);
+    }
+
+    @DeleteMapping("/{id}")
+    Result cancel(@PathVariable Long id) {
+        reservationService.cancel(id);
+        return Result.ok();
+    }
+}
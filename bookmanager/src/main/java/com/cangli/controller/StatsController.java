@@ -0,0 +1,25 @@
+package com.cangli.controller;
+
+import com.cangli.pojo.Result;
+import com.cangli.service.StatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RequestMapping("/stats")
+@RestController
+public class StatsController {
+    @Autowired
+    private StatsService statsService;
+
+    // 管理员首页看板：图书种数、副本按状态、在借与逾期、读者按类型、各分类图书数
+    @GetMapping("/summary")
+    Result getSummary(@RequestAttribute(value = "currentRole", required = false) String role) {
+        if (!"admin".equals(role)) {
+            return Result.error("无权限");
+        }
+        return Result.ok(statsService.summary());
+    }
+}
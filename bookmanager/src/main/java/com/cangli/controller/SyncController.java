@@ -0,0 +1,26 @@
+package com.cangli.controller;
+
+import com.cangli.service.SyncService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RequestMapping("/sync")
+@RestController
+public class SyncController {
+    @Autowired
+    private SyncService syncService;
+
+    // 离线客户端增量同步分类、图书和副本；不传 since 时全量下发
+    @GetMapping()
+    void sync(@RequestParam(required = false) Long since, HttpServletResponse response) throws IOException {
+        response.setContentType(SyncService.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        syncService.stream(since, response.getOutputStream());
+    }
+}
@@ -0,0 +1,49 @@
+package com.cangli.datasource;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MyBatis 插件：事务外执行的大列表查询走报表连接池。
+ * 非事务查询的连接在 Executor 内部才获取，所以在这里设置工作负载即可生效
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class ReportingRouteInterceptor implements Interceptor {
+
+    private final Set<String> reportingStatements;
+
+    public ReportingRouteInterceptor(@Value("${bookmanager.datasource.reporting-statements:}") List<String> reportingStatements) {
+        this.reportingStatements = new HashSet<>(reportingStatements);
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        if (!reportingStatements.contains(ms.getId()) || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+        Workload previous = Workload.enter(Workload.REPORTING);
+        try {
+            return invocation.proceed();
+        } finally {
+            Workload.restore(previous);
+        }
+    }
+}
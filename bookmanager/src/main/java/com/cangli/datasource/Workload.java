@@ -0,0 +1,33 @@
+package com.cangli.datasource;
+
+/**
+ * 工作负载类别，每类使用独立的连接池，互不挤占
+ */
+public enum Workload {
+    DEFAULT,    // 一般请求
+    CHECKOUT,   // 借还书事务，预留连接，不受报表拖累
+    REPORTING;  // 大列表查询，小池子并限制语句执行时间
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    public static Workload current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 设置当前线程的工作负载，返回之前的值，用于在 finally 中恢复
+     */
+    public static Workload enter(Workload workload) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        return previous;
+    }
+
+    public static void restore(Workload previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
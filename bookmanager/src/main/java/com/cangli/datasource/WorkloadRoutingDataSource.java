@@ -0,0 +1,38 @@
+package com.cangli.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 按工作负载路由到不同的连接池。
+ * 外面包一层 LazyConnectionDataSourceProxy，执行第一条语句时才取真实连接，
+ * 这时事务名（@Transactional 方法的全限定名）已经可用，据此把借还书事务分到预留池
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    // 事务名前缀，匹配的事务使用借还书连接池
+    private final List<String> checkoutTransactions;
+
+    public WorkloadRoutingDataSource(List<String> checkoutTransactions) {
+        this.checkoutTransactions = checkoutTransactions;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            String name = TransactionSynchronizationManager.getCurrentTransactionName();
+            if (name != null) {
+                for (String prefix : checkoutTransactions) {
+                    if (name.startsWith(prefix)) {
+                        return Workload.CHECKOUT;
+                    }
+                }
+            }
+            return Workload.DEFAULT;
+        }
+        Workload workload = Workload.current();
+        return workload == null ? Workload.DEFAULT : workload;
+    }
+}
@@ -0,0 +1,389 @@
+package com.cangli.event;
+
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.pojo.BookItem;
+import com.cangli.utils.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内的图书副本状态事件总线：写操作提交后登记变更的副本或图书，
+ * 定时合并一批变更，按图书ID推送给 SSE 订阅者。
+ * 定时线程只把事件放进每个订阅者自己的队列，由发送线程池写出；
+ * 写不动的客户端（队列积压或单次发送超时）被断开，不会拖慢其他订阅者
+ */
+@Component
+public class BookItemEventBus {
+
+    // SSE 连接超时，客户端（EventSource）超时后会自动重连
+    private static final long EMITTER_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    // 每个订阅者最多积压的事件数
+    static final int MAX_QUEUED_EVENTS = 16;
+
+    @Autowired
+    private BookItemMapper bookItemMapper;
+
+    @Value("${bookmanager.events.send-timeout-millis:5000}")
+    private long sendTimeoutMillis;
+
+    // 同时发送的线程数上限：闲置时回收，卡住的慢客户端最多占用这么多线程，直到发送超时被断开
+    @Value("${bookmanager.events.sender-threads:32}")
+    private int senderThreads;
+
+    // bookId -> 只关心该图书的订阅者，集合为空时移除
+    private final ConcurrentHashMap<Long, Set<Subscriber>> bookSubscribers = new ConcurrentHashMap<>();
+    // 关心所有图书的订阅者
+    private final Set<Subscriber> allSubscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    // 待推送的副本ID，同一副本在一个合并窗口内的多次变更只推送一次
+    private final Set<Integer> dirtyItemIds = ConcurrentHashMap.newKeySet();
+    // 新增或批量软删除副本的图书，推送该图书的全部副本
+    private final Set<Long> dirtyBookIds = ConcurrentHashMap.newKeySet();
+    // 已物理删除的副本ID -> 图书ID，查不到行，以 deleted 状态推送
+    private final ConcurrentHashMap<Integer, Long> removedItems = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor sender;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 订阅副本状态变化，bookId 为空时订阅所有图书
+     */
+    public SseEmitter subscribe(Long bookId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter, bookId);
+        if (bookId == null) {
+            allSubscribers.add(subscriber);
+        } else {
+            // 和 unregister 一样在 compute 里改集合，不会加到刚被移除的空集合上
+            bookSubscribers.compute(bookId, (k, set) -> {
+                Set<Subscriber> target = set == null ? ConcurrentHashMap.newKeySet() : set;
+                target.add(subscriber);
+                return target;
+            });
+        }
+        subscriberCount.incrementAndGet();
+
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    int getSubscribedBookCount() {
+        return bookSubscribers.size();
+    }
+
+    /**
+     * 登记副本状态变化。处于事务中时推迟到提交之后，没有订阅者时直接忽略
+     */
+    public void publish(Collection<Integer> itemIds) {
+        if (itemIds == null || itemIds.isEmpty() || subscriberCount.get() == 0) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(itemIds);
+        TransactionUtil.afterCommit(() -> dirtyItemIds.addAll(ids));
+    }
+
+    public void publish(Integer itemId) {
+        publish(Collections.singletonList(itemId));
+    }
+
+    /**
+     * 登记某图书的副本有增减（采购入库、随图书软删除），推送该图书当前的全部副本
+     */
+    public void publishBook(Long bookId) {
+        if (bookId == null || subscriberCount.get() == 0) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> dirtyBookIds.add(bookId));
+    }
+
+    /**
+     * 登记副本被物理删除
+     */
+    public void publishRemoved(Integer itemId, Long bookId) {
+        if (itemId == null || bookId == null || subscriberCount.get() == 0) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> removedItems.put(itemId, bookId));
+    }
+
+    /**
+     * 合并窗口结束：取回变更副本的最新状态，按图书分发到各订阅者的队列
+     */
+    @Scheduled(fixedDelayString = "${bookmanager.events.coalesce-millis:200}")
+    public void flush() {
+        disconnectStalled();
+        if (dirtyItemIds.isEmpty() && dirtyBookIds.isEmpty() && removedItems.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = drain(dirtyItemIds);
+        List<Long> bookIds = drain(dirtyBookIds);
+        Map<Integer, Long> removed = new HashMap<>();
+        for (Iterator<Map.Entry<Integer, Long>> it = removedItems.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Long> entry = it.next();
+            removed.put(entry.getKey(), entry.getValue());
+            it.remove();
+        }
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+
+        // 同一副本只推送一次，按ID排序保证输出稳定
+        Map<Integer, BookItem> changed = new TreeMap<>();
+        try {
+            if (!ids.isEmpty()) {
+                for (BookItem item : bookItemMapper.findByIds(ids)) {
+                    changed.put(item.getId(), item);
+                }
+            }
+            for (Long bookId : bookIds) {
+                for (BookItem item : bookItemMapper.findByBookId(bookId)) {
+                    changed.put(item.getId(), item);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("BookItemEventBus: 读取副本状态失败: " + e.getMessage());
+            return;
+        }
+        removed.forEach((itemId, bookId) -> {
+            if (!changed.containsKey(itemId)) {
+                BookItem item = new BookItem();
+                item.setId(itemId);
+                item.setBookId(bookId.intValue());
+                item.setStatus("deleted");
+                changed.put(itemId, item);
+            }
+        });
+
+        List<BookItem> items = new ArrayList<>(changed.values());
+        Map<Long, List<BookItem>> byBook = new HashMap<>();
+        for (BookItem item : items) {
+            byBook.computeIfAbsent(item.getBookId().longValue(), k -> new ArrayList<>()).add(item);
+        }
+        byBook.forEach((bookId, bookItems) -> {
+            Set<Subscriber> subscribers = bookSubscribers.get(bookId);
+            if (subscribers != null) {
+                send(subscribers, bookItems);
+            }
+        });
+        send(allSubscribers, items);
+    }
+
+    /**
+     * 定时发送注释行作为心跳，及时清理已断开的连接
+     */
+    @Scheduled(fixedRateString = "${bookmanager.events.heartbeat-millis:25000}")
+    public void heartbeat() {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        SseEmitter.SseEventBuilder ping = SseEmitter.event().comment("ping");
+        for (Set<Subscriber> subscribers : bookSubscribers.values()) {
+            enqueue(subscribers, ping);
+        }
+        enqueue(allSubscribers, ping);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Subscriber> subscribers = new ArrayList<>(allSubscribers);
+        bookSubscribers.values().forEach(subscribers::addAll);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.disconnect(null);
+        }
+        sender.shutdown();
+    }
+
+    private void send(Set<Subscriber> subscribers, List<BookItem> items) {
+        if (subscribers.isEmpty() || items.isEmpty()) {
+            return;
+        }
+        enqueue(subscribers, SseEmitter.event().name("status").data(items, MediaType.APPLICATION_JSON));
+    }
+
+    private void enqueue(Set<Subscriber> subscribers, SseEmitter.SseEventBuilder event) {
+        // 事件只构建一次，所有订阅者共用
+        Set<ResponseBodyEmitter.DataWithMediaType> data = event.build();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(data);
+        }
+    }
+
+    // 单次发送超过时限的订阅者：先从订阅集合移除，不再给它排事件；卡住的发送线程结束后再关闭连接
+    private void disconnectStalled() {
+        long now = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        List<Subscriber> stalled = new ArrayList<>();
+        for (Subscriber subscriber : allSubscribers) {
+            if (subscriber.stalled(now, timeoutNanos)) {
+                stalled.add(subscriber);
+            }
+        }
+        for (Set<Subscriber> subscribers : bookSubscribers.values()) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.stalled(now, timeoutNanos)) {
+                    stalled.add(subscriber);
+                }
+            }
+        }
+        for (Subscriber subscriber : stalled) {
+            subscriber.disconnect(new TimeoutException("SSE 发送超时"));
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        boolean removed;
+        if (subscriber.bookId == null) {
+            removed = allSubscribers.remove(subscriber);
+        } else {
+            boolean[] found = new boolean[1];
+            bookSubscribers.computeIfPresent(subscriber.bookId, (k, set) -> {
+                found[0] = set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+            removed = found[0];
+        }
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static <T> List<T> drain(Set<T> set) {
+        List<T> values = new ArrayList<>();
+        for (Iterator<T> it = set.iterator(); it.hasNext(); ) {
+            values.add(it.next());
+            it.remove();
+        }
+        return values;
+    }
+
+    /**
+     * 一个 SSE 连接：事件先进队列，同一时刻最多一个发送线程按顺序写出。
+     * emitter 的 send/complete 共用一把锁，卡住的写会挡住 complete，所以 complete 也只在发送线程上调用
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Long bookId;
+        private final ConcurrentLinkedQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Throwable closeError;
+        // 当前这次发送开始的时间，0 表示没有在发送
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, Long bookId) {
+            this.emitter = emitter;
+            this.bookId = bookId;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> data) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > MAX_QUEUED_EVENTS) {
+                queued.decrementAndGet();
+                disconnect(new IllegalStateException("SSE 客户端积压事件过多"));
+                return;
+            }
+            queue.add(data);
+            schedule();
+        }
+
+        boolean stalled(long now, long timeoutNanos) {
+            long since = sendingSince;
+            return since != 0 && now - since > timeoutNanos;
+        }
+
+        void disconnect(Throwable error) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            closeError = error;
+            unregister(this);
+            queue.clear();
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // 正在关闭
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Set<ResponseBodyEmitter.DataWithMediaType> data;
+                while (!closed.get() && (data = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    sendingSince = System.nanoTime();
+                    try {
+                        emitter.send(data);
+                    } catch (Exception e) {
+                        // 连接已断开
+                        closeError = e;
+                        closed.set(true);
+                        unregister(this);
+                    } finally {
+                        sendingSince = 0;
+                    }
+                }
+                if (closed.get()) {
+                    complete();
+                    return;
+                }
+                draining.set(false);
+                // 释放标记前后又有新事件或被断开，且没有其他线程接手时继续处理
+                if ((queue.isEmpty() && !closed.get()) || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void complete() {
+            try {
+                if (closeError == null) {
+                    emitter.complete();
+                } else {
+                    emitter.completeWithError(closeError);
+                }
+            } catch (Exception e) {
+                // 连接已关闭
+            }
+        }
+    }
+}
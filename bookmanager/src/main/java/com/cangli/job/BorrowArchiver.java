@@ -0,0 +1,31 @@
+package com.cangli.job;
+
+import com.cangli.service.BorrowArchiveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 每天定时归档已还的旧借阅记录，每批一个短事务。
+ * 每个实例都会运行，选批时跳过其他实例已锁定的行，各自归档不同的记录
+ */
+@Component
+public class BorrowArchiver {
+    @Autowired
+    private BorrowArchiveService borrowArchiveService;
+
+    @Scheduled(cron = "${bookmanager.archive.cron:0 0 4 * * *}")
+    public void archive() {
+        int total = 0;
+        try {
+            int archived;
+            do {
+                archived = borrowArchiveService.archiveBatch();
+                total += archived;
+            } while (archived == borrowArchiveService.getBatchSize());
+        } catch (Exception e) {
+            System.out.println("BorrowArchiver: 归档借阅记录失败: " + e.getMessage());
+        }
+        System.out.println("BorrowArchiver: 本次归档 " + total + " 条借阅记录");
+    }
+}
@@ -0,0 +1,29 @@
+package com.cangli.job;
+
+import com.cangli.service.BorrowCounterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时把借阅次数增量刷入 book 表
+ */
+@Component
+public class BorrowCounterFlusher {
+    @Autowired
+    private BorrowCounterService borrowCounterService;
+
+    @Scheduled(initialDelayString = "${bookmanager.borrow-counter.flush-millis:5000}",
+            fixedDelayString = "${bookmanager.borrow-counter.flush-millis:5000}")
+    public void flush() {
+        try {
+            // 积压较多时连续刷新，直到不足一批
+            int flushed;
+            do {
+                flushed = borrowCounterService.flush();
+            } while (flushed == borrowCounterService.getFlushBatchSize());
+        } catch (Exception e) {
+            System.out.println("BorrowCounterFlusher: 刷新借阅次数失败: " + e.getMessage());
+        }
+    }
+}
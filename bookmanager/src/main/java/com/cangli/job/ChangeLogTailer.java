@@ -0,0 +1,112 @@
+package com.cangli.job;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.ChangeLogMapper;
+import com.cangli.pojo.ChangeLogEntry;
+import com.cangli.service.BorrowCounterService;
+import com.cangli.service.ReservationService;
+import com.cangli.service.StatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 轮询 change_log，把其他节点的变更应用到本地缓存。
+ * 自增ID按插入顺序分配但事务提交顺序不定，较小的ID可能晚于较大的ID可见，
+ * 因此游标只推进到写入已超过宽限期的记录为止，宽限期内的记录每次重读，按ID去重
+ */
+@Component
+public class ChangeLogTailer {
+    @Autowired
+    private ChangeLogMapper changeLogMapper;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BorrowCounterService borrowCounterService;
+
+    @Value("${bookmanager.change-log.grace-seconds:10}")
+    private int graceSeconds;
+
+    @Value("${bookmanager.change-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${bookmanager.change-log.retention-hours:24}")
+    private int retentionHours;
+
+    // 已处理完的最大连续ID，-1 表示尚未初始化
+    private long cursor = -1;
+    // 游标之后已经应用过的记录
+    private final Set<Long> applied = new HashSet<>();
+
+    @Scheduled(fixedDelayString = "${bookmanager.change-log.poll-millis:1000}")
+    public void poll() {
+        try {
+            if (cursor < 0) {
+                // 启动时本地缓存为空，从当前位置开始即可
+                cursor = changeLogMapper.maxId();
+                return;
+            }
+            List<ChangeLogEntry> entries = changeLogMapper.findSince(cursor, graceSeconds, batchSize);
+            EnumSet<ResourceVersions.Resource> changed = EnumSet.noneOf(ResourceVersions.Resource.class);
+            // 预约队列按图书失效
+            Set<Long> reservedBooks = new HashSet<>();
+            // 图书变更（含其他节点刷入借阅次数）后核对本节点未刷入的借阅记录，null 表示全部
+            Set<Long> changedBooks = new HashSet<>();
+            boolean settledPrefix = true;
+            for (ChangeLogEntry entry : entries) {
+                if (!changeLog.getNodeId().equals(entry.getNodeId()) && applied.add(entry.getId())) {
+                    ResourceVersions.Resource resource = ResourceVersions.Resource.valueOf(entry.getResource());
+                    changed.add(resource);
+                    if (resource == ResourceVersions.Resource.RESERVATION) {
+                        reservedBooks.add(entry.getEntityId());
+                    } else if (resource == ResourceVersions.Resource.BOOK) {
+                        changedBooks.add(entry.getEntityId());
+                    }
+                }
+                if (settledPrefix && Boolean.TRUE.equals(entry.getSettled())) {
+                    cursor = entry.getId();
+                } else {
+                    settledPrefix = false;
+                }
+            }
+            applied.removeIf(id -> id <= cursor);
+            changed.forEach(changeLog::applyRemote);
+            changed.forEach(statsService::invalidate);
+            reservedBooks.forEach(reservationService::invalidateQueue);
+            if (changedBooks.contains(null)) {
+                borrowCounterService.reconcile(null);
+            } else {
+                changedBooks.forEach(borrowCounterService::reconcile);
+            }
+        } catch (Exception e) {
+            System.out.println("ChangeLogTailer: 读取变更日志失败: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${bookmanager.change-log.prune-cron:0 15 * * * *}")
+    public void prune() {
+        try {
+            int deleted = changeLogMapper.deleteOlderThan(retentionHours);
+            if (deleted > 0) {
+                System.out.println("ChangeLogTailer: 清理变更日志 " + deleted + " 条");
+            }
+        } catch (Exception e) {
+            System.out.println("ChangeLogTailer: 清理变更日志失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cangli.job;
+
+import com.cangli.service.CirculationAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 每晚导出借阅快照，安排在借阅归档之前，避开白天的借还高峰。
+ * 启动时本地没有快照文件才立即导出一次。每个节点都各自导出、只更新本地的快照
+ */
+@Component
+public class CirculationExporter {
+    @Autowired
+    private CirculationAnalyticsService circulationAnalyticsService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!circulationAnalyticsService.hasSnapshot()) {
+            CompletableFuture.runAsync(this::export);
+        }
+    }
+
+    @Scheduled(cron = "${bookmanager.analytics.export-cron:0 0 2 * * *}")
+    public void export() {
+        try {
+            circulationAnalyticsService.export();
+        } catch (Exception e) {
+            System.out.println("CirculationExporter: 导出借阅快照失败: " + e.getMessage());
+        }
+    }
+}
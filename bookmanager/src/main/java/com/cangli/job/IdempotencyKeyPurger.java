@@ -0,0 +1,30 @@
+package com.cangli.job;
+
+import com.cangli.service.IdempotencyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时清理过期的幂等键
+ */
+@Component
+public class IdempotencyKeyPurger {
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Scheduled(initialDelayString = "${bookmanager.idempotency.purge-millis:600000}",
+            fixedDelayString = "${bookmanager.idempotency.purge-millis:600000}")
+    public void purge() {
+        try {
+            int deleted;
+            do {
+                deleted = idempotencyService.purgeExpired(BATCH_SIZE);
+            } while (deleted == BATCH_SIZE);
+        } catch (Exception e) {
+            System.out.println("IdempotencyKeyPurger: 清理幂等键失败: " + e.getMessage());
+        }
+    }
+}
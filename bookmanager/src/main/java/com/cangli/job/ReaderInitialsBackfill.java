@@ -0,0 +1,38 @@
+package com.cangli.job;
+
+import com.cangli.service.ReaderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 补齐读者的姓名拼音首字母：升级前的数据和直接用 SQL 导入的读者没有这一列，
+ * 检索时按首字母就找不到。没有缺失时只是一次索引查询
+ */
+@Component
+public class ReaderInitialsBackfill {
+    @Autowired
+    private ReaderService readerService;
+
+    @Value("${bookmanager.reader-search.backfill-batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${bookmanager.reader-search.backfill-initial-delay-millis:60000}",
+            fixedDelayString = "${bookmanager.reader-search.backfill-millis:600000}")
+    public void backfill() {
+        try {
+            int total = 0;
+            int filled;
+            do {
+                filled = readerService.backfillNameInitials(batchSize);
+                total += filled;
+            } while (filled == batchSize);
+            if (total > 0) {
+                System.out.println("ReaderInitialsBackfill: 补齐拼音首字母 " + total + " 条");
+            }
+        } catch (Exception e) {
+            System.out.println("ReaderInitialsBackfill: 补齐拼音首字母失败: " + e.getMessage());
+        }
+    }
+}
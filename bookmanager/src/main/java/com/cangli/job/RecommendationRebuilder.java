@@ -0,0 +1,33 @@
+package com.cangli.job;
+
+import com.cangli.service.RecommendationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 启动后在后台构建一次共现矩阵，此后每天定时全量重建，期间靠借书时的增量更新
+ */
+@Component
+public class RecommendationRebuilder {
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        CompletableFuture.runAsync(this::rebuild);
+    }
+
+    @Scheduled(cron = "${bookmanager.recommend.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        try {
+            recommendationService.rebuild();
+        } catch (Exception e) {
+            System.out.println("RecommendationRebuilder: 重建推荐数据失败: " + e.getMessage());
+        }
+    }
+}
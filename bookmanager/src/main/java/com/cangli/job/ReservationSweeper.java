@@ -0,0 +1,43 @@
+package com.cangli.job;
+
+import com.cangli.mapper.ReservationMapper;
+import com.cangli.pojo.Reservation;
+import com.cangli.service.ReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 定时清理超过取书期限的预约
+ */
+@Component
+public class ReservationSweeper {
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Scheduled(initialDelayString = "${bookmanager.reservation.sweep-millis:60000}",
+            fixedDelayString = "${bookmanager.reservation.sweep-millis:60000}")
+    public void sweep() {
+        List<Reservation> expired;
+        try {
+            expired = reservationMapper.findExpiredHolds(new Date());
+        } catch (Exception e) {
+            System.out.println("ReservationSweeper: 查询过期预约失败: " + e.getMessage());
+            return;
+        }
+        for (Reservation reservation : expired) {
+            try {
+                // 每条预约单独一个事务
+                reservationService.expireHold(reservation);
+            } catch (Exception e) {
+                System.out.println("ReservationSweeper: 处理预约 " + reservation.getId() + " 失败: " + e.getMessage());
+            }
+        }
+    }
+}
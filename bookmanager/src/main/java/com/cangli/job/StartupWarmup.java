@@ -0,0 +1,285 @@
+package com.cangli.job;
+
+import com.cangli.pojo.Book;
+import com.cangli.pojo.ReaderSummary;
+import com.cangli.service.AuthService;
+import com.cangli.service.BookService;
+import com.cangli.service.BorrowArchiveService;
+import com.cangli.service.CategoryService;
+import com.cangli.service.ReaderService;
+import com.cangli.service.RecommendationService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动预热：在 ApplicationRunner 阶段执行，此时 Web 服务器已经监听端口，
+ * 但 Spring 还没有发布 ACCEPTING_TRAFFIC，/ready 返回 503，负载均衡不会把流量转过来。
+ * 依次填充连接池、加载分类和热门图书、通过本机 HTTP 回放一批只读请求，整体有时间上限。
+ * 回放使用进程内签发的服务身份（AuthService.issueWarmupToken），不需要配置账号密码，
+ * 登录接口也用该身份的一次性密码走一遍真实的密码校验；
+ * 只请求分页、按字段裁剪或有条数上限的接口，不拉全量列表，总请求数控制在该身份自己的限流桶容量以内
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    // 每轮回放的固定接口，另加一位读者的近期借阅历史和热门图书的“借了这本的人还借了”。
+    // 图书列表只取列表页用到的字段
+    private static final List<String> READ_PATHS = List.of("/categories", "/reader/search?page=1&size=20",
+            "/book?fields=id,title,author,availableCount");
+    // 每轮回放的热门图书数
+    private static final int REPLAY_BOOKS = 5;
+
+    @Autowired
+    @Qualifier("defaultPool")
+    private HikariDataSource defaultPool;
+
+    @Autowired
+    @Qualifier("checkoutPool")
+    private HikariDataSource checkoutPool;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private ReaderService readerService;
+
+    @Autowired
+    private BorrowArchiveService borrowArchiveService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${bookmanager.warmup.enabled:true}")
+    private boolean enabled;
+
+    // 预热总时长上限，超时后直接就绪
+    @Value("${bookmanager.warmup.timeout-millis:30000}")
+    private long timeoutMillis;
+
+    // 每个连接池预先建立的连接数
+    @Value("${bookmanager.warmup.connections:5}")
+    private int connections;
+
+    @Value("${bookmanager.warmup.hot-books:50}")
+    private int hotBooks;
+
+    // 回放的轮数，每轮 READ_PATHS、一次借阅历史加 REPLAY_BOOKS 个请求
+    @Value("${bookmanager.warmup.rounds:5}")
+    private int rounds;
+
+    // 热门图书，由 catalog 阶段填充，供回放使用
+    private final List<Long> hotBookIds = new ArrayList<>();
+    // 回放借阅历史的读者（最近注册的一位），没有读者时为 null
+    private Long replayReaderId;
+
+    private volatile Map<String, Long> report = Map.of();
+    private volatile long totalMillis = -1;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            totalMillis = 0;
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, Long> steps = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "startup-warmup"));
+        try {
+            Future<?> task = executor.submit(() -> warmUp(steps, deadline));
+            task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.out.println("StartupWarmup: 预热超过 " + timeoutMillis + " ms，提前结束");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("StartupWarmup: 预热失败: " + e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        synchronized (steps) {
+            // 保持各阶段的执行顺序
+            report = Collections.unmodifiableMap(new LinkedHashMap<>(steps));
+        }
+        System.out.println("StartupWarmup: 预热完成，共 " + totalMillis + " ms，各阶段: " + report);
+    }
+
+    private void warmUp(Map<String, Long> steps, long deadline) {
+        if (!step(steps, "pool", deadline, () -> {
+            fillPool(defaultPool);
+            fillPool(checkoutPool);
+        })) {
+            // 数据库不可用，后面的步骤也不会成功
+            return;
+        }
+        step(steps, "catalog", deadline, () -> {
+            categoryService.findAll();
+            List<Book> books = new ArrayList<>(bookService.findAll());
+            books.sort(Comparator.comparing((Book b) -> b.getBorrowTimes() == null ? 0 : b.getBorrowTimes()).reversed());
+            for (Book book : books.subList(0, Math.min(hotBooks, books.size()))) {
+                recommendationService.alsoBorrowedBooks(book.getId(), 10);
+                hotBookIds.add(book.getId());
+            }
+            List<ReaderSummary> readers = readerService.search(null, 1, 1).getRecords();
+            replayReaderId = readers.isEmpty() ? null : readers.get(0).getId();
+        });
+        step(steps, "requests", deadline, () -> replayRequests(deadline));
+    }
+
+    /**
+     * 执行一个阶段并记录耗时，失败返回 false
+     */
+    private boolean step(Map<String, Long> steps, String name, long deadline, Runnable action) {
+        if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            action.run();
+            return true;
+        } catch (Exception e) {
+            System.out.println("StartupWarmup: 阶段 " + name + " 失败: " + e.getMessage());
+            return false;
+        } finally {
+            synchronized (steps) {
+                steps.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+    }
+
+    // 同时借出若干连接再归还，让连接池一次建好，而不是由前几个请求排队创建
+    private void fillPool(HikariDataSource pool) {
+        int target = Math.max(1, Math.min(connections, pool.getMaximumPoolSize()));
+        List<Connection> borrowed = new ArrayList<>(target);
+        try {
+            for (int i = 0; i < target; i++) {
+                borrowed.add(pool.getConnection());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("连接池 " + pool.getPoolName() + " 预热失败: " + e.getMessage(), e);
+        } finally {
+            for (Connection connection : borrowed) {
+                try {
+                    connection.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    // 经过完整的过滤器链和控制器回放只读请求，预热 JIT、Jackson 和 Tomcat
+    private void replayRequests(long deadline) {
+        String port = environment.getProperty("local.server.port");
+        if (port == null) {
+            return;
+        }
+        String base = "http://127.0.0.1:" + port;
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        List<String> paths = new ArrayList<>(READ_PATHS);
+        if (replayReaderId != null) {
+            // from 晚于归档截止日期，只查热表
+            String from = borrowArchiveService.cutoff().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().plusDays(1).toString();
+            paths.add("/borrow/history?readerId=" + replayReaderId + "&from=" + from);
+        }
+        for (Long bookId : hotBookIds.subList(0, Math.min(REPLAY_BOOKS, hotBookIds.size()))) {
+            paths.add("/book/" + bookId + "/also-borrowed?limit=10");
+        }
+        String token = authService.issueWarmupToken();
+        try {
+            login(client, base, authService.issueWarmupPassword());
+            for (int round = 0; round < rounds; round++) {
+                for (String path : paths) {
+                    if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                            .timeout(Duration.ofSeconds(5))
+                            .header("Authorization", "Bearer " + token)
+                            .GET()
+                            .build();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 429) {
+                            // 限流桶已耗尽，剩下的留给真实流量去预热
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        System.out.println("StartupWarmup: 回放 " + path + " 失败: " + e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            authService.revokeWarmupToken();
+        }
+    }
+
+    // 用预热身份的一次性密码登录，走完密码校验、token 签发和响应序列化，返回的 token 不使用
+    private void login(HttpClient client, String base, String password) {
+        Map<String, String> body = Map.of("username", AuthService.WARMUP_USERNAME, "password", password);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/login"))
+                .timeout(Duration.ofSeconds(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonMapper.writeValueAsString(body)))
+                .build();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("StartupWarmup: 预热登录失败: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Long> getReport() {
+        return report;
+    }
+
+    /**
+     * 预热总耗时，尚未完成时为 -1
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+}
@@ -0,0 +1,41 @@
+package com.cangli.job;
+
+import com.cangli.service.StatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 看板计数校准：被标记为脏的分区几秒内重新统计；定时全量校准一次，
+ * 出现偏差说明有写入路径漏了增量维护，打印出来便于排查
+ */
+@Component
+public class StatsReconciler {
+    @Autowired
+    private StatsService statsService;
+
+    @Scheduled(fixedDelayString = "${bookmanager.stats.dirty-check-millis:5000}")
+    public void reconcileDirty() {
+        try {
+            statsService.reconcileDirty();
+        } catch (Exception e) {
+            System.out.println("StatsReconciler: 重新统计看板计数失败: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${bookmanager.stats.reconcile-millis:600000}",
+            fixedDelayString = "${bookmanager.stats.reconcile-millis:600000}")
+    public void reconcileAll() {
+        try {
+            statsService.invalidateAll();
+            List<StatsService.Section> drifted = statsService.reconcileDirty();
+            if (!drifted.isEmpty()) {
+                System.out.println("StatsReconciler: 看板计数与数据库不一致，已校正: " + drifted);
+            }
+        } catch (Exception e) {
+            System.out.println("StatsReconciler: 校准看板计数失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.cangli.job;
+
+import com.cangli.service.SyncService;
+import com.cangli.service.TombstoneCompactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.function.IntSupplier;
+
+/**
+ * 每天定时压缩已删除的图书和副本。每批一个短事务，批与批之间停顿一下，
+ * 单次运行有批数上限，避免和白天的借还业务抢锁和 IO。
+ * 每个实例都会运行，选批时跳过其他实例已锁定的行，各自压缩不同的数据
+ */
+@Component
+public class TombstoneCompactor {
+    @Autowired
+    private TombstoneCompactionService compactionService;
+
+    @Autowired
+    private SyncService syncService;
+
+    // 两批之间的停顿时间
+    @Value("${bookmanager.compaction.pause-millis:200}")
+    private long pauseMillis;
+
+    // 单次运行最多处理的批数，剩下的留到下次
+    @Value("${bookmanager.compaction.max-batches:50}")
+    private int maxBatches;
+
+    @Scheduled(cron = "${bookmanager.compaction.cron:0 30 4 * * *}")
+    public void compact() {
+        try {
+            // 先压缩副本，图书要等它的副本都移走后才会被选中
+            int items = drain(compactionService::compactItemBatch);
+            int books = drain(compactionService::compactBookBatch);
+            int tombstones = syncService.pruneTombstones();
+            System.out.println("TombstoneCompactor: 本次压缩副本 " + items + " 条, 图书 " + books + " 条, 清理同步墓碑 " + tombstones + " 条");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("TombstoneCompactor: 压缩已删除数据失败: " + e.getMessage());
+        }
+    }
+
+    private int drain(IntSupplier batch) throws InterruptedException {
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            int moved = batch.getAsInt();
+            total += moved;
+            if (moved < compactionService.getBatchSize()) {
+                break;
+            }
+            Thread.sleep(pauseMillis);
+        }
+        return total;
+    }
+}
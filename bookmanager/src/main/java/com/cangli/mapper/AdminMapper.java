@@ -2,7 +2,6 @@ package com.cangli.mapper;
 
 import com.cangli.pojo.Admin;
 import org.apache.ibatis.annotations.Mapper;
-import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
@@ -12,7 +11,9 @@ public interface AdminMapper {
 
     List<Admin> findAll();
 
-    @Select("select * from admin where username=#{username} and password=#{password}")
-    Admin findByUsernameAndPassword(String username, String password);
+    Admin findByUsername(String username);
+
+    // 登录时升级密码哈希，oldPassword 不匹配说明已被并发登录或改密码更新过
+    int updatePassword(Integer id, String oldPassword, String password);
 }
 
@@ -4,6 +4,7 @@ import com.cangli.pojo.BookItem;
 import org.apache.ibatis.annotations.Mapper;
 
 import java.util.List;
+import java.util.Map;
 @Mapper
 public interface BookItemMapper {
 
@@ -11,8 +12,17 @@ public interface BookItemMapper {
 
     List<BookItem> findByBookIdAndStatus(Long bookId, String status);
 
+    // 锁行取原状态（status 为 null 时返回 unknown），行不存在时返回 null
+    String lockStatus(Integer id);
+    List<String> lockStatuses(List<Integer> ids);
+    List<String> lockStatusesByBookId(Long bookId);
+
     void updateStatus(Integer id, String status);
 
+    // 借还用：加锁读取当前行；原状态为 from 时才修改，返回行数
+    BookItem lockById(Integer id);
+    int updateStatusFrom(Integer id, String from, String status);
+
     void batchUpdateStatus(List<Integer> ids, String status);
 
     void addBookItem(BookItem bookItem);
@@ -21,12 +31,21 @@ public interface BookItemMapper {
 
     BookItem findById(Integer id);
 
+    List<BookItem> findByIds(List<Integer> ids);
+
     void softDeleteByBookId(Long bookId);
 
     // CRUD operations for individual BookItems
     List<BookItem> findAll();
+    List<BookItem> findAllFields(List<String> columns);
+    List<Map<String, Object>> countAvailableByBook();
 
     void updateBookItem(BookItem bookItem);
 
     void deleteBookItem(Integer id);
+
+    // 压缩：状态为 deleted 的副本移入 book_items_archive，选批时跳过其他节点已锁定的行
+    List<Integer> findCompactableIds(int limit);
+    int copyToArchive(List<Integer> ids);
+    int deleteArchived(List<Integer> ids);
 }
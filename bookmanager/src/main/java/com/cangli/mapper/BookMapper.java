@@ -2,15 +2,27 @@ package com.cangli.mapper;
 
 import com.cangli.pojo.Book;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface BookMapper {
     List<Book> findAll();
+    List<Book> findAllFields(List<String> columns);
     Book findById(Long id);
+    // 不保证顺序，已删除的图书不返回
+    List<Book> findByIds(List<Long> ids);
     void addBook(Book book);
     void updateBook(Book book);
+    // 单个 Map 参数 MyBatis 不会按参数名包装，必须显式命名
+    void addBorrowTimes(@Param("deltas") Map<Long, Long> deltas);
     void softDeleteBook(Long id);
     int countByCategoryId(Integer categoryId);
+
+    // 压缩：已软删除的图书移入 book_archive，选批时跳过其他节点已锁定的行
+    List<Long> findCompactableIds(int limit);
+    int copyToArchive(List<Long> ids);
+    int deleteArchived(List<Long> ids);
 }
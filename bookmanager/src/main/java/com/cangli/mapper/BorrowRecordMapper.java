@@ -2,15 +2,44 @@ package com.cangli.mapper;
 
 import com.cangli.pojo.BorrowRecord;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
 public interface BorrowRecordMapper {
     List<BorrowRecord> findAll();
+    List<BorrowRecord> findAllFields(List<String> columns);
     BorrowRecord findById(Long id);
-    List<BorrowRecord> findByReaderId(Long readerId);
     BorrowRecord findByItemId(Long itemId);
     void addBorrowRecord(BorrowRecord record);
     void updateBorrowRecord(BorrowRecord record);
+
+    // 归还、续借用：加锁读取当前行（不含图书标题、条码）；借出中才改为已还或延期，返回行数
+    BorrowRecord lockById(Long id);
+    int markReturned(Long id, Date returnDate);
+    int renew(Long id, Date dueDate);
+
+    // 尚未计入 book.borrow_times 的借阅记录（只含 id、bookId），加锁并跳过其他事务已锁定的行
+    List<BorrowRecord> findUncounted(int limit);
+    // 给定ID中仍未计入的
+    List<Long> findUncountedIds(List<Long> ids);
+    int markCounted(List<Long> ids);
+
+    // 按读者ID有序流式读取去重的 (readerId, bookId)，用于构建推荐数据
+    void scanReaderBookPairs(ResultHandler<BorrowRecord> handler);
+
+    // 借阅历史，参数均可为空；includeArchive 为 true 时合并归档表
+    List<BorrowRecord> findHistory(Long readerId, Date from, Date to, boolean includeArchive);
+
+    // 读者的全部借阅历史：归档只是换了张表，不能让老记录凭空消失
+    default List<BorrowRecord> findByReaderId(Long readerId) {
+        return findHistory(readerId, null, null, true);
+    }
+
+    // 归档：加锁选出一批（跳过其他节点正在归档的行），复制到 borrow_record_archive 后从热表删除
+    List<Long> findArchivableIds(Date cutoff, int limit);
+    int copyToArchive(List<Long> ids);
+    int deleteArchived(List<Long> ids);
 }
@@ -0,0 +1,17 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.ChangeLogEntry;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+
+@Mapper
+public interface ChangeLogMapper {
+    void insert(String resource, Long entityId, String nodeId);
+
+    // 读取游标之后的记录，settled 表示写入时间早于宽限期
+    List<ChangeLogEntry> findSince(long since, int graceSeconds, int limit);
+    long maxId();
+
+    int deleteOlderThan(int retentionHours);
+}
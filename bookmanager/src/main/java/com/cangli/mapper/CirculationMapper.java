@@ -0,0 +1,25 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BorrowRecord;
+import com.cangli.pojo.Category;
+import com.cangli.pojo.Reader;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * 借阅快照导出：各表分别顺序扫描，在应用内按 ID 关联，不做联表和排序
+ */
+@Mapper
+public interface CirculationMapper {
+    void scanCategories(ResultHandler<Category> handler);
+
+    // 只有 id 和 category_id，含已压缩到归档表的图书
+    void scanBookCategories(ResultHandler<Book> handler);
+
+    // 只有 id、class_dept 和 reader_type
+    void scanReaders(ResultHandler<Reader> handler);
+
+    // 只有 book_id、reader_id 和三个日期，含归档表
+    void scanBorrows(ResultHandler<BorrowRecord> handler);
+}
@@ -0,0 +1,12 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.Credential;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+
+@Mapper
+public interface CredentialMapper {
+    // 同一用户名最多一条管理员、一条读者
+    List<Credential> findByUsername(String username);
+}
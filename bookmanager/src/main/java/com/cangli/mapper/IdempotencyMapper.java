@@ -0,0 +1,18 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.IdempotencyRecord;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.Date;
+
+@Mapper
+public interface IdempotencyMapper {
+    IdempotencyRecord findByKey(String idemKey);
+
+    // 占用 key，已存在时返回0；另一个事务正持有同一 key 时阻塞到它结束
+    int claim(String idemKey, String fingerprint, Date expiresAt);
+    int complete(String idemKey, String response);
+
+    int deleteExpiredKey(String idemKey);
+    int deleteExpired(int limit);
+}
@@ -1,23 +1,42 @@
 package com.cangli.mapper;
 
 import com.cangli.pojo.Reader;
-import com.cangli.pojo.User;
+import com.cangli.pojo.ReaderSummary;
 import org.apache.ibatis.annotations.Mapper;
-import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
 @Mapper
 public interface ReaderMapper {
     List<Reader> findAll();
+    List<Reader> findAllFields(List<String> columns);
     Reader findById(Long id);
     void addReader(Reader reader);
     void updateReader(Reader reader);
     void deleteReader(Long id);
 
-    @Select("select username,password from reader where username=#{username} and password=#{password}")
-    User findByUserNameAndPassword(String username, String password);
+    // 借还时原子增减当前借阅数，返回行数：减到负数或借书时读者已停用返回 0
+    int adjustBorrowedCount(Long id, int delta);
 
-    @Select("select * from reader where username=#{username} and password=#{password}")
-    Reader findReaderByUserNameAndPassword(String username, String password);
+    // prefix 为 LIKE 模式（已转义并带 %），为 null 时不过滤
+    List<ReaderSummary> search(String prefix, int offset, int size);
+    long countSearch(String prefix);
+
+    List<Reader> findMissingInitials(int limit);
+    void updateNameInitials(Long id, String nameInitials);
+
+    // 花名册导入：按 username 批量插入或更新
+    List<String> findExistingUsernames(List<String> usernames);
+    // 加锁读取已有读者的当前读者类型（只填 username 和 readerType），不存在的用户名同时锁住唯一索引的间隙
+    List<Reader> lockReaderTypes(List<String> usernames);
+    void upsertBatch(List<Reader> readers);
+    // 停用读者，usernames 与 classDept 至少一个非空
+    int deactivate(List<String> usernames, String classDept);
+
+    // 校验 token 时按用户名取当前读者。本命名空间开了二级缓存，语句只能写在 readers.xml：
+    // 注解语句不经过 XML 声明的 <cache>，查询不命中，写入也不清空
+    Reader findByUsername(String username);
+
+    // 登录时升级密码哈希，oldPassword 不匹配说明已被并发登录或改密码更新过
+    int updatePassword(Long id, String oldPassword, String password);
 }
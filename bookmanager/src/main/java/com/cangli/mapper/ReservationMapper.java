@@ -0,0 +1,24 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.Reservation;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface ReservationMapper {
+    Reservation findById(Long id);
+    List<Reservation> findByReaderId(Long readerId);
+    List<Long> findWaitingIdsByBookId(Long bookId);
+    Reservation findHeldByItemId(Integer itemId);
+    List<Reservation> findExpiredHolds(Date now);
+    int countActiveByBookIdAndReaderId(Long bookId, Long readerId);
+    void addReservation(Reservation reservation);
+
+    // 仅当预约仍在等待时分配副本，返回受影响行数
+    int assignItem(Long id, Integer itemId, Date holdUntil);
+
+    // 仅当当前状态为 expectedStatus 时更新，返回受影响行数
+    int updateStatus(Long id, String expectedStatus, String status);
+}
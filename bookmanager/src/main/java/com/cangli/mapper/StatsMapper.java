@@ -0,0 +1,20 @@
+package com.cangli.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 看板计数的校准查询，每行包含 statKey 和 total
+ */
+@Mapper
+public interface StatsMapper {
+    List<Map<String, Object>> countCopiesByStatus();
+
+    List<Map<String, Object>> countLoansByDueDate();
+
+    List<Map<String, Object>> countReadersByType();
+
+    List<Map<String, Object>> countBooksByCategory();
+}
@@ -0,0 +1,27 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BookItem;
+import com.cangli.pojo.Category;
+import com.cangli.pojo.SyncTombstone;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+
+@Mapper
+public interface SyncMapper {
+    // 当前数据库时间（微秒）减去宽限期，早于它写入的行都已提交
+    long watermark(int graceSeconds);
+
+    // 按 (row_version, id) 键集分页读取 row_version 在 (since, until] 之间的行，每页一条短查询。
+    // afterVersion、afterId 为上一页最后一行，第一页传 since 和 -1；live 为 true 时只读未删除的行（全量同步）
+    List<Category> findCategories(long afterVersion, long afterId, long until, int limit);
+    List<Book> findBooks(long afterVersion, long afterId, long until, boolean live, int limit);
+    List<BookItem> findBookItems(long afterVersion, long afterId, long until, boolean live, int limit);
+    // 墓碑的主键是 (resource, entity_id)，第一页 afterResource 传空串
+    List<SyncTombstone> findTombstones(long afterVersion, String afterResource, long afterId, long until, int limit);
+
+    // 物理删除前记录墓碑，须和删除在同一事务内
+    void insertTombstones(String resource, List<? extends Number> ids);
+    int deleteTombstonesBefore(long version);
+}
@@ -0,0 +1,99 @@
+package com.cangli.monitor;
+
+import com.cangli.pojo.Result;
+import com.cangli.service.BookService;
+import com.cangli.service.BorrowRecordService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应编码对比：用当前的 /book 和 /borrow 数据分别编码为 JSON、CBOR、Smile，
+ * 比较体积（含 gzip 后）以及编码、解码耗时。解码用 readTree，和客户端不绑定实体类的解析方式一致
+ */
+@Component
+public class CodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BorrowRecordService borrowRecordService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private CBORMapper cborMapper;
+
+    // 与 Spring 默认注册的 Smile 转换器使用相同的配置
+    private final SmileMapper smileMapper = SmileMapper.builder().build();
+
+    public Map<String, Map<String, Map<String, Object>>> run(int iterations) {
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("/book", Result.ok(bookService.findAll()));
+        payloads.put("/borrow", Result.ok(borrowRecordService.findAll()));
+
+        Map<String, ObjectMapper> codecs = new LinkedHashMap<>();
+        codecs.put("json", jsonMapper);
+        codecs.put("cbor", cborMapper);
+        codecs.put("smile", smileMapper);
+
+        Map<String, Map<String, Map<String, Object>>> report = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+            Map<String, Map<String, Object>> byCodec = new LinkedHashMap<>();
+            for (Map.Entry<String, ObjectMapper> codec : codecs.entrySet()) {
+                byCodec.put(codec.getKey(), measure(codec.getValue(), payload.getValue(), iterations));
+            }
+            report.put(payload.getKey(), byCodec);
+        }
+        return report;
+    }
+
+    private Map<String, Object> measure(ObjectMapper mapper, Object value, int iterations) {
+        byte[] bytes = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            bytes = mapper.writeValueAsBytes(value);
+            mapper.readTree(bytes);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes = mapper.writeValueAsBytes(value);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            mapper.readTree(bytes);
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("bytes", bytes.length);
+        result.put("gzipBytes", gzipSize(bytes));
+        result.put("encodeMicros", encodeNanos / 1000.0 / iterations);
+        result.put("decodeMicros", decodeNanos / 1000.0 / iterations);
+        return result;
+    }
+
+    private static int gzipSize(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.cangli.monitor;
+
+import com.cangli.config.ErrorTranslator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 异常翻译的单次开销：对比原先三次 replaceAll 的脱敏写法和 ErrorTranslator，
+ * 输出每个异常的耗时（纳秒）和分配的字节数
+ */
+@Component
+public class ErrorBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+
+    @Autowired
+    private ErrorTranslator errorTranslator;
+
+    public Map<String, Map<String, Object>> run(int iterations) {
+        // 数据库故障时最常见的几类消息：带类名的、超长的、没有技术细节的
+        Map<String, Exception> samples = new LinkedHashMap<>();
+        samples.put("plain", new IllegalStateException("库存不足，无法借出"));
+        samples.put("className", new IllegalStateException(
+                "Could not open JDBC Connection; nested exception is java.sql.SQLTransientConnectionException: timeout"));
+        samples.put("long", new IllegalStateException("x".repeat(80) + " org.mariadb.jdbc.client.impl.StandardClient " + "y".repeat(200)));
+        samples.put("dataAccess", new DataAccessResourceFailureException("Connection is not available, request timed out after 3000ms"));
+
+        Map<String, Map<String, Object>> report = new LinkedHashMap<>();
+        for (Map.Entry<String, Exception> sample : samples.entrySet()) {
+            Exception ex = sample.getValue();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("legacyRegex", measure(e -> legacySanitize(e.getMessage()), ex, iterations));
+            result.put("sanitize", measure(e -> ErrorTranslator.sanitize(e.getMessage()), ex, iterations));
+            // 含分类、日志限流和构造 Result
+            result.put("translate", measure(errorTranslator::translate, ex, iterations));
+            report.put(sample.getKey(), result);
+        }
+        return report;
+    }
+
+    private static Map<String, Object> measure(Function<Exception, Object> task, Exception ex, int iterations) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink = task.apply(ex);
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = task.apply(ex);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("nanosPerOp", elapsed / (double) iterations);
+        result.put("bytesPerOp", allocatedBefore < 0 ? null : allocated / iterations);
+        result.put("sample", String.valueOf(sink));
+        return result;
+    }
+
+    // 当前线程累计分配的字节数，JVM 不支持时返回 -1
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // 原 GlobalExceptionHandler.handleAll 的写法，仅作对比
+    private static String legacySanitize(String message) {
+        if (message != null && !message.isEmpty()) {
+            if (message.length() > 100) {
+                message = message.substring(0, 100) + "...";
+            }
+            message = message.replaceAll("java\\..*", "系统错误");
+            message = message.replaceAll("org\\..*", "系统错误");
+            message = message.replaceAll("com\\..*", "系统错误");
+        } else {
+            message = "系统发生未知错误";
+        }
+        return message;
+    }
+}
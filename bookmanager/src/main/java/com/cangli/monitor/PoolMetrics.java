@@ -0,0 +1,80 @@
+package com.cangli.monitor;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hikari 连接池指标：每个池的取连接等待时间、占用时间、超时次数和当前连接数，
+ * 用来确认报表查询没有拖慢借还书
+ */
+@Component
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private final ConcurrentHashMap<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return trackers.computeIfAbsent(poolName, name -> new Tracker(poolStats));
+    }
+
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        trackers.forEach((poolName, tracker) -> {
+            long acquires = tracker.acquires.sum();
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("pool", poolName);
+            stat.put("acquires", acquires);
+            stat.put("avgWaitMicros", acquires == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(tracker.waitNanos.sum() / acquires));
+            stat.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(tracker.maxWaitNanos.get()));
+            stat.put("avgUsageMillis", acquires == 0 ? 0 : tracker.usageMillis.sum() / acquires);
+            stat.put("timeouts", tracker.timeouts.sum());
+            stat.put("active", tracker.poolStats.getActiveConnections());
+            stat.put("idle", tracker.poolStats.getIdleConnections());
+            stat.put("total", tracker.poolStats.getTotalConnections());
+            stat.put("pendingThreads", tracker.poolStats.getPendingThreads());
+            result.add(stat);
+        });
+        return result;
+    }
+
+    private static final class Tracker implements IMetricsTracker {
+        private final PoolStats poolStats;
+        private final LongAdder acquires = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final LongAdder usageMillis = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        private Tracker(PoolStats poolStats) {
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquires.increment();
+            waitNanos.add(elapsedAcquiredNanos);
+            maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cangli.monitor;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SqlStatsInterceptor 在正常路径上的单次开销：同一个不访问数据库的 Executor，
+ * 直接执行与经过插件执行的耗时之差。使用独立的插件实例，不影响 /admin/sql-stats
+ */
+@Component
+public class SqlStatsBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int STATEMENT_COUNT = 64;
+
+    public Map<String, Object> run(int iterations) {
+        try {
+            return measure(iterations);
+        } catch (Throwable e) {
+            throw new IllegalStateException("SQL 统计插件基准测试失败", e);
+        }
+    }
+
+    private Map<String, Object> measure(int iterations) throws Throwable {
+        List<Object> rows = List.of(1, 2, 3);
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(),
+                new Class<?>[]{Executor.class}, (proxy, method, args) -> rows);
+        Method query = Executor.class.getMethod("query",
+                MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+
+        // 多个语句ID，接近线上统计表的规模
+        Configuration configuration = new Configuration();
+        Invocation[] invocations = new Invocation[STATEMENT_COUNT];
+        for (int i = 0; i < STATEMENT_COUNT; i++) {
+            MappedStatement ms = new MappedStatement.Builder(configuration, "bench.statement" + i,
+                    new StaticSqlSource(configuration, "SELECT 1"), SqlCommandType.SELECT).build();
+            invocations[i] = new Invocation(executor, query,
+                    new Object[]{ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER});
+        }
+        SqlStatsInterceptor interceptor = new SqlStatsInterceptor(Long.MAX_VALUE / 1_000_000, Long.MAX_VALUE);
+
+        measureDirect(invocations, WARMUP_ITERATIONS);
+        measureIntercepted(interceptor, invocations, WARMUP_ITERATIONS);
+        long direct = measureDirect(invocations, iterations);
+        long intercepted = measureIntercepted(interceptor, invocations, iterations);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", iterations);
+        result.put("directNanosPerOp", direct / (double) iterations);
+        result.put("interceptedNanosPerOp", intercepted / (double) iterations);
+        result.put("overheadNanosPerOp", (intercepted - direct) / (double) iterations);
+        return result;
+    }
+
+    private static long measureDirect(Invocation[] invocations, int iterations) throws Throwable {
+        Object sink = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = invocations[i & (STATEMENT_COUNT - 1)].proceed();
+        }
+        long elapsed = System.nanoTime() - start;
+        return sink == null ? -1 : elapsed;
+    }
+
+    private static long measureIntercepted(SqlStatsInterceptor interceptor, Invocation[] invocations, int iterations)
+            throws Throwable {
+        Object sink = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = interceptor.intercept(invocations[i & (STATEMENT_COUNT - 1)]);
+        }
+        long elapsed = System.nanoTime() - start;
+        return sink == null ? -1 : elapsed;
+    }
+}
@@ -0,0 +1,178 @@
+package com.cangli.monitor;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MyBatis 插件：按映射语句统计耗时、行数和调用次数，超过阈值的语句按采样写入慢查询日志
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class})
+})
+public class SqlStatsInterceptor implements Interceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatsInterceptor.class);
+
+    private static final int MAX_PARAMS_LENGTH = 500;
+
+    @Value("${bookmanager.sql-stats.slow-threshold-millis:200}")
+    private long slowThresholdMillis;
+
+    // 同一语句的慢查询日志最短间隔，避免慢查询风暴时刷屏
+    @Value("${bookmanager.sql-stats.slow-log-interval-millis:1000}")
+    private long slowLogIntervalMillis;
+
+    private final ConcurrentHashMap<String, StatementStats> stats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> lastSlowLog = new ConcurrentHashMap<>();
+
+    public SqlStatsInterceptor() {
+    }
+
+    // 基准测试用的独立实例，不经过 Spring 注入
+    SqlStatsInterceptor(long slowThresholdMillis, long slowLogIntervalMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.slowLogIntervalMillis = slowLogIntervalMillis;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            // 抛异常的语句（超时、死锁、约束冲突）同样计入耗时，另计错误次数
+            long elapsed = System.nanoTime() - start;
+            MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+            StatementStats statementStats = stats.get(ms.getId());
+            if (statementStats == null) {
+                statementStats = stats.computeIfAbsent(ms.getId(), StatementStats::new);
+            }
+            if (failed) {
+                statementStats.recordError(elapsed);
+            } else {
+                statementStats.record(elapsed, rowCount(result));
+            }
+
+            if (elapsed >= slowThresholdMillis * 1_000_000) {
+                logSlow(ms, invocation.getArgs()[1], elapsed);
+            }
+        }
+    }
+
+    private static long rowCount(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return 0;
+    }
+
+    private void logSlow(MappedStatement ms, Object parameter, long elapsed) {
+        AtomicLong last = lastSlowLog.computeIfAbsent(ms.getId(), k -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        long previous = last.get();
+        if (now - previous < slowLogIntervalMillis || !last.compareAndSet(previous, now)) {
+            return;
+        }
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        log.warn("慢查询 {} 耗时 {} ms, 参数: {}, SQL: {}", ms.getId(), elapsed / 1_000_000,
+                boundParameters(ms.getConfiguration(), boundSql),
+                boundSql.getSql().replaceAll("\\s+", " "));
+    }
+
+    /**
+     * 按参数映射取出绑定值，密码类参数脱敏
+     */
+    private static String boundParameters(Configuration configuration, BoundSql boundSql) {
+        Object parameterObject = boundSql.getParameterObject();
+        StringBuilder sb = new StringBuilder("[");
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            Object value;
+            if (property.toLowerCase(Locale.ROOT).contains("password")) {
+                value = "***";
+            } else if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                value = configuration.newMetaObject(parameterObject).getValue(property);
+            }
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(property).append('=').append(value);
+            if (sb.length() > MAX_PARAMS_LENGTH) {
+                sb.setLength(MAX_PARAMS_LENGTH);
+                return sb.append("...]").toString();
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * 按指定指标排序的前 N 条语句统计
+     */
+    public List<StatementStatsSnapshot> top(int n, String orderBy) {
+        Comparator<StatementStatsSnapshot> comparator;
+        switch (orderBy == null ? "total" : orderBy) {
+            case "avg":
+                comparator = Comparator.comparingDouble(StatementStatsSnapshot::getAvgMillis);
+                break;
+            case "max":
+                comparator = Comparator.comparingDouble(StatementStatsSnapshot::getMaxMillis);
+                break;
+            case "calls":
+                comparator = Comparator.comparingLong(StatementStatsSnapshot::getCalls);
+                break;
+            case "rows":
+                comparator = Comparator.comparingLong(StatementStatsSnapshot::getRows);
+                break;
+            case "errors":
+                comparator = Comparator.comparingLong(StatementStatsSnapshot::getErrors);
+                break;
+            default:
+                comparator = Comparator.comparingDouble(StatementStatsSnapshot::getTotalMillis);
+        }
+        List<StatementStatsSnapshot> snapshots = new ArrayList<>(stats.size());
+        for (StatementStats statementStats : stats.values()) {
+            snapshots.add(statementStats.snapshot());
+        }
+        snapshots.sort(comparator.reversed());
+        return snapshots.subList(0, Math.max(0, Math.min(n, snapshots.size())));
+    }
+
+    public void reset() {
+        stats.clear();
+        lastSlowLog.clear();
+    }
+}
@@ -0,0 +1,86 @@
+package com.cangli.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单条映射语句的累计统计，全部为无锁计数器
+ */
+public class StatementStats {
+
+    // 耗时直方图：第 i 桶统计 [2^i, 2^(i+1)) 微秒，最后一桶包含更长的耗时
+    private static final int BUCKETS = 32;
+
+    private final String statementId;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    public StatementStats(String statementId) {
+        this.statementId = statementId;
+    }
+
+    public void record(long nanos, long rowCount) {
+        rows.add(rowCount);
+        recordTime(nanos);
+    }
+
+    // 执行失败的语句：计入调用次数和耗时，没有行数
+    public void recordError(long nanos) {
+        errors.increment();
+        recordTime(nanos);
+    }
+
+    private void recordTime(long nanos) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        histogram.incrementAndGet(bucket);
+    }
+
+    public StatementStatsSnapshot snapshot() {
+        StatementStatsSnapshot snapshot = new StatementStatsSnapshot();
+        long count = calls.sum();
+        long total = totalNanos.sum();
+        snapshot.setStatementId(statementId);
+        snapshot.setCalls(count);
+        snapshot.setRows(rows.sum());
+        snapshot.setErrors(errors.sum());
+        snapshot.setTotalMillis(total / 1_000_000.0);
+        snapshot.setAvgMillis(count == 0 ? 0 : total / 1_000_000.0 / count);
+        snapshot.setMaxMillis(maxNanos.get() / 1_000_000.0);
+
+        long[] counts = new long[BUCKETS];
+        long histogramTotal = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            histogramTotal += counts[i];
+        }
+        snapshot.setP50Millis(percentile(counts, histogramTotal, 0.50));
+        snapshot.setP95Millis(percentile(counts, histogramTotal, 0.95));
+        snapshot.setP99Millis(percentile(counts, histogramTotal, 0.99));
+        return snapshot;
+    }
+
+    // 返回所在桶的上界（毫秒），精度为2倍以内
+    private static double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return (1L << BUCKETS) / 1000.0;
+    }
+}
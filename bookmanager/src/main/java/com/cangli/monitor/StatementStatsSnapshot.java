@@ -0,0 +1,17 @@
+package com.cangli.monitor;
+
+import lombok.Data;
+
+@Data
+public class StatementStatsSnapshot {
+    private String statementId;   // 映射语句ID，如 com.cangli.mapper.BookMapper.findAll
+    private long calls;           // 调用次数
+    private long rows;            // 返回/影响的总行数
+    private long errors;          // 抛出异常的次数（已计入 calls 和耗时）
+    private double totalMillis;   // 总耗时
+    private double avgMillis;     // 平均耗时
+    private double maxMillis;     // 最大耗时
+    private double p50Millis;     // 耗时分位数（按直方图桶上界估算）
+    private double p95Millis;
+    private double p99Millis;
+}
@@ -3,11 +3,12 @@ package com.cangli.pojo;
 
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
 
 @Data
-public class Book {
+public class Book implements Serializable {
     private Long id; // 主键ID
     private String code; // 图书编号（馆内唯一编码）
     private String title; // 书名
@@ -23,6 +24,7 @@ public class Book {
     private Integer isDeleted; // 是否被删除 0未删除/1已删除
     private String description; // 描述
     private String coverUrl; // 封面链接
+    private Long rowVersion; // 行版本（增量同步游标）
 
     private List<BookItem> bookItems;
 }
\ No newline at end of file
@@ -2,10 +2,11 @@ package com.cangli.pojo;
 
 import lombok.Data;
 
+import java.io.Serializable;
 import java.util.Date;
 
 @Data
-public class BookItem {
+public class BookItem implements Serializable {
     private Integer id;
     private Integer bookId;
     private String barcode;
@@ -14,4 +15,5 @@ public class BookItem {
     private Double priceAtEntry;
     private Date entryDate;
     private String notes;
+    private Long rowVersion;
 }
@@ -2,11 +2,12 @@ package com.cangli.pojo;
 
 import lombok.Data;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
-public class BorrowRecord {
+public class BorrowRecord implements Serializable {
     private Long id;                        // 主键
     private Long bookId;                    // 图书ID
     private String bookTitle;               // 图书名
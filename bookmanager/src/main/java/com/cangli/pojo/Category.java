@@ -2,13 +2,15 @@ package com.cangli.pojo;
 
 import lombok.Data;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Data
-public class Category {
+public class Category implements Serializable {
     private Long id;
     private String name;
     private String code;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long rowVersion;
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class ChangeLogEntry {
+    private Long id;                        // 主键，自增，作为各节点的读取游标
+    private String resource;                // 资源类型，对应 ResourceVersions.Resource
+    private Long entityId;                  // 变更的实体ID（批量变更时为null）
+    private String nodeId;                  // 写入该记录的节点
+    private Date createdAt;                 // 写入时间（数据库时钟）
+    private Boolean settled;                // 查询时计算：写入已超过宽限期，之前的事务都已提交
+}
@@ -0,0 +1,29 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+/**
+ * 登录凭据：一次查询同时查管理员表和读者表，loginRole 标明来自哪张表，
+ * 另一张表独有的列为 null
+ */
+@Data
+public class Credential {
+    private String loginRole; // admin / reader
+    private Long id;
+    private String username;
+    private String password;
+
+    // 管理员
+    private String adminRole;
+
+    // 读者
+    private String name;
+    private String gender;
+    private String classDept;
+    private String readerType;
+    private String contact;
+    private Integer borrowLimit;
+    private Integer borrowedCount;
+    private String nameInitials;
+    private Integer active;
+}
@@ -0,0 +1,14 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class IdempotencyRecord {
+    private String idemKey;                 // 主键：用户+接口+Idempotency-Key 的摘要
+    private String fingerprint;             // 请求体摘要，同一个 key 不允许用于不同的请求
+    private String response;                // 首次执行成功后返回的 data（JSON）
+    private Date createdAt;                 // 创建时间
+    private Date expiresAt;                 // 过期时间
+}
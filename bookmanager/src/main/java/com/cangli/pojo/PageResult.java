@@ -0,0 +1,20 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PageResult<T> {
+    private long total;                     // 符合条件的总条数
+    private int page;                       // 当前页码，从 1 开始
+    private int size;                       // 每页条数
+    private List<T> records;                // 当前页数据
+
+    public PageResult(long total, int page, int size, List<T> records) {
+        this.total = total;
+        this.page = page;
+        this.size = size;
+        this.records = records;
+    }
+}
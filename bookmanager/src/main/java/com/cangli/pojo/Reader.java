@@ -3,8 +3,10 @@ package com.cangli.pojo;
 
 import lombok.Data;
 
+import java.io.Serializable;
+
 @Data
-public class Reader {
+public class Reader implements Serializable {
     private Long id;
     private String name;
     private String gender;
@@ -16,4 +18,7 @@ public class Reader {
 
     private String username;
     private String password;
+
+    private String nameInitials; // 姓名拼音首字母，检索用，由服务层根据 name 生成
+    private Integer active = 1; // 是否有效 1有效/0已停用（毕业、离校）
 }
\ No newline at end of file
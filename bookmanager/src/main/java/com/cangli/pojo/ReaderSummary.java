@@ -0,0 +1,20 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 读者检索结果，只含列表展示需要的字段，不含密码和联系方式
+ */
+@Data
+public class ReaderSummary implements Serializable {
+    private Long id;
+    private String name;
+    private String gender;
+    private String classDept;
+    private String readerType;
+    private String username;
+    private Integer borrowLimit;
+    private Integer borrowedCount;
+}
@@ -0,0 +1,16 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class Reservation {
+    private Long id;                        // 主键
+    private Long bookId;                    // 图书ID
+    private Long readerId;                  // 读者ID
+    private Integer itemId;                 // 分配到的副本（等待中为null）
+    private String status = "等待";          // 状态：等待、待取、已取、已过期、已取消
+    private Date createdAt;                 // 预约时间
+    private Date holdUntil;                 // 取书截止时间
+}
@@ -32,4 +32,8 @@ public class Result {
     public static Result error(String msg) {
         return new Result(500, msg, null);
     }
+
+    public static Result error(Integer code, String msg) {
+        return new Result(code, msg, null);
+    }
 }
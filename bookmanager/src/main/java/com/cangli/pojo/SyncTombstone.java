@@ -0,0 +1,10 @@
+package com.cangli.pojo;
+
+import lombok.Data;
+
+@Data
+public class SyncTombstone {
+    private String resource;                // 资源类型，对应 ResourceVersions.Resource
+    private Long entityId;                  // 被物理删除的实体ID
+    private Long rowVersion;                // 删除时的行版本
+}
@@ -22,9 +22,4 @@ public class AdminService implements AdminServiceTrait {
     public List<Admin> findAll() {
         return adminMapper.findAll();
     }
-
-    @Override
-    public Admin findByUsernameAndPassword(String username, String password) {
-        return adminMapper.findByUsernameAndPassword(username, password);
-    }
 }
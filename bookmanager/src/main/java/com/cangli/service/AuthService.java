@@ -0,0 +1,207 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.AdminMapper;
+import com.cangli.mapper.CredentialMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.Admin;
+import com.cangli.pojo.Credential;
+import com.cangli.pojo.Reader;
+import com.cangli.utils.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 登录与 token 校验。登录只查一次库（管理员表和读者表 UNION ALL，各走 username 唯一索引），
+ * 再在内存里比对密码哈希；token 中只放凭据戳，不再放密码
+ */
+@Service
+public class AuthService {
+
+    // 启动预热的服务身份：不对应任何账号，只能发只读请求（见 JwtAuthenticationFilter）
+    public static final String WARMUP_ROLE = "warmup";
+    public static final String WARMUP_USERNAME = "startup-warmup";
+
+    @Autowired
+    private CredentialMapper credentialMapper;
+
+    @Autowired
+    private AdminMapper adminMapper;
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 预热身份的凭据戳，进程内随机生成，不落库；预热结束后置空，已签发的 token 随之作废
+    private volatile String warmupStamp;
+
+    // 预热身份一次性登录密码的哈希，与凭据戳一起作废
+    private volatile String warmupHash;
+
+    /**
+     * 校验用户名密码，成功返回登录结果，失败返回 null。
+     * 同一用户名同时是管理员和读者时，密码与哪个匹配就以哪个身份登录，都匹配时管理员优先
+     */
+    public Login authenticate(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        List<Credential> credentials = credentialMapper.findByUsername(username);
+        Credential matched = null;
+        for (Credential credential : credentials) {
+            if (passwordService.matches(password, credential.getPassword())
+                    && (matched == null || "admin".equals(credential.getLoginRole()))) {
+                matched = credential;
+            }
+        }
+        if (matched == null) {
+            // 没有同名账号时才认预热身份
+            return credentials.isEmpty() ? authenticateWarmup(username, password) : null;
+        }
+        String stored = matched.getPassword();
+        if (passwordService.needsRehash(stored)) {
+            stored = rehash(matched, password);
+        }
+        String role = matched.getLoginRole();
+        Object user = "admin".equals(role) ? toAdmin(matched) : toReader(matched);
+        return new Login(role, user, passwordService.stamp(stored));
+    }
+
+    /**
+     * 为启动预热签发服务身份的 token，用完调用 revokeWarmupToken
+     */
+    public String issueWarmupToken() {
+        String stamp = UUID.randomUUID().toString();
+        warmupStamp = stamp;
+        return JwtUtil.getToken(WARMUP_USERNAME, WARMUP_ROLE, stamp);
+    }
+
+    /**
+     * 为启动预热签发一次性登录密码，须在 issueWarmupToken 之后调用。
+     * 用它以 WARMUP_USERNAME 登录会走完整的密码校验和 token 签发，得到的仍是只能发 GET 请求的服务身份
+     */
+    public String issueWarmupPassword() {
+        String password = UUID.randomUUID().toString();
+        warmupHash = passwordService.hash(password);
+        return password;
+    }
+
+    public void revokeWarmupToken() {
+        warmupStamp = null;
+        warmupHash = null;
+    }
+
+    private Login authenticateWarmup(String username, String password) {
+        String hash = warmupHash;
+        String stamp = warmupStamp;
+        if (!WARMUP_USERNAME.equals(username) || hash == null || stamp == null || !passwordService.matches(password, hash)) {
+            return null;
+        }
+        return new Login(WARMUP_ROLE, username, stamp);
+    }
+
+    /**
+     * 校验 token 中的身份，凭据戳与当前密码不符（改过密码）或读者已停用时返回 null
+     */
+    public Object resolve(String username, String role, String stamp) {
+        if (username == null || stamp == null) {
+            return null;
+        }
+        if ("admin".equals(role)) {
+            Admin admin = adminMapper.findByUsername(username);
+            if (admin == null || !stamp.equals(passwordService.stamp(admin.getPassword()))) {
+                return null;
+            }
+            admin.setPassword(null);
+            return admin;
+        }
+        if (WARMUP_ROLE.equals(role)) {
+            String current = warmupStamp;
+            return current != null && current.equals(stamp) && WARMUP_USERNAME.equals(username) ? username : null;
+        }
+        if ("reader".equals(role)) {
+            Reader reader = readerMapper.findByUsername(username);
+            if (reader == null || !stamp.equals(passwordService.stamp(reader.getPassword()))) {
+                return null;
+            }
+            // findByUsername 走 readers 命名空间的二级缓存（NamespaceCache 存序列化后的字节）。
+            // 这里由过滤器在事务外调用，SqlSessionTemplate 在返回前已提交会话、把结果序列化进缓存，
+            // 命中时也是反序列化出的新对象，清掉密码不会写回缓存。在事务内调用则不成立：
+            // 结果要到事务提交才序列化，同一会话的一级缓存也会返回同一个对象
+            reader.setPassword(null);
+            return reader;
+        }
+        return null;
+    }
+
+    // 明文或旧成本的哈希在登录成功后按当前配置重新计算，返回库里最终的密码
+    private String rehash(Credential credential, String password) {
+        String old = credential.getPassword();
+        String hashed = passwordService.hash(password);
+        if ("admin".equals(credential.getLoginRole())) {
+            if (adminMapper.updatePassword(credential.getId().intValue(), old, hashed) > 0) {
+                return hashed;
+            }
+            Admin admin = adminMapper.findByUsername(credential.getUsername());
+            return admin == null ? hashed : admin.getPassword();
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setName("login-rehash");
+        Integer updated = transactionTemplate.execute(status -> {
+            int count = readerMapper.updatePassword(credential.getId(), old, hashed);
+            if (count > 0) {
+                changeLog.record(ResourceVersions.Resource.READER, credential.getId());
+            }
+            return count;
+        });
+        if (updated != null && updated > 0) {
+            return hashed;
+        }
+        // 并发登录已经先升级过，以库里的为准，否则签出的 token 校验不过
+        Reader reader = readerMapper.findByUsername(credential.getUsername());
+        return reader == null ? hashed : reader.getPassword();
+    }
+
+    private static Admin toAdmin(Credential credential) {
+        Admin admin = new Admin();
+        admin.setId(credential.getId().intValue());
+        admin.setUsername(credential.getUsername());
+        admin.setRole(credential.getAdminRole());
+        return admin;
+    }
+
+    private static Reader toReader(Credential credential) {
+        Reader reader = new Reader();
+        reader.setId(credential.getId());
+        reader.setUsername(credential.getUsername());
+        reader.setName(credential.getName());
+        reader.setGender(credential.getGender());
+        reader.setClassDept(credential.getClassDept());
+        reader.setReaderType(credential.getReaderType());
+        reader.setContact(credential.getContact());
+        reader.setBorrowLimit(credential.getBorrowLimit());
+        reader.setBorrowedCount(credential.getBorrowedCount());
+        reader.setNameInitials(credential.getNameInitials());
+        reader.setActive(credential.getActive());
+        reader.setPassword(null);
+        return reader;
+    }
+
+    public record Login(String role, Object user, String stamp) {
+    }
+}
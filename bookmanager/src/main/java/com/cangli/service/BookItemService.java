@@ -1,22 +1,61 @@
 package com.cangli.service;
 
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.event.BookItemEventBus;
 import com.cangli.mapper.BookItemMapper;
 import com.cangli.pojo.BookItem;
 import com.cangli.service.impl.BookItemServiceTrait;
+import com.cangli.utils.FieldSelection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class BookItemService implements BookItemServiceTrait {
 
+    // ?fields= 可选字段 -> 列
+    private static final Map<String, String> FIELD_COLUMNS = Map.of(
+            "id", "id",
+            "bookId", "book_id",
+            "barcode", "barcode",
+            "location", "location",
+            "status", "status",
+            "priceAtEntry", "price_at_entry",
+            "entryDate", "entry_date",
+            "notes", "notes");
+
     @Autowired
     private BookItemMapper bookItemMapper;
 
+    @Autowired
+    private ChangeLog changeLog;
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private BookItemEventBus bookItemEventBus;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private StatsService statsService;
+
     @Override
+    @Transactional
     public void addBookItem(BookItem bookItem) {
         bookItemMapper.addBookItem(bookItem);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, bookItem.getId());
+        statsService.copies(bookItem.getStatus(), 1);
+        bookItemEventBus.publishBook(bookItem.getBookId() == null ? null : bookItem.getBookId().longValue());
     }
 
     @Override
@@ -30,19 +69,58 @@ public class BookItemService implements BookItemServiceTrait {
     }
 
     @Override
+    @Transactional
     public void updateStatus(Integer id, String status) {
+        String from = bookItemMapper.lockStatus(id);
         bookItemMapper.updateStatus(id, status);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, id);
+        statsService.copyMoved(from, status);
+        bookItemEventBus.publish(id);
+    }
+
+    /**
+     * 加锁读取副本的当前行，不走二级缓存。借还据此判断副本能否借出
+     */
+    @Override
+    public BookItem lockById(Integer id) {
+        return bookItemMapper.lockById(id);
+    }
+
+    /**
+     * 副本当前状态为 from 时改为 status，返回是否修改
+     */
+    @Override
+    @Transactional
+    public boolean changeStatus(Integer id, String from, String status) {
+        if (bookItemMapper.updateStatusFrom(id, from, status) != 1) {
+            return false;
+        }
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, id);
+        statsService.copyMoved(from, status);
+        bookItemEventBus.publish(id);
+        return true;
     }
 
     @Override
+    @Transactional
     public void batchUpdateStatus(List<Integer> ids, String status) {
+        List<String> from = bookItemMapper.lockStatuses(ids);
         bookItemMapper.batchUpdateStatus(ids, status);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, null);
+        from.forEach(old -> statsService.copyMoved(old, status));
+        bookItemEventBus.publish(ids);
     }
 
     @Override
+    @Transactional
     public void batchInsert(List<BookItem> bookItems) {
         if (bookItems != null && !bookItems.isEmpty()) {
             bookItemMapper.batchInsert(bookItems);
+            changeLog.record(ResourceVersions.Resource.BOOK_ITEM, null);
+            bookItems.forEach(item -> statsService.copies(item.getStatus(), 1));
+            // 批量插入拿不到各行的自增ID，按图书推送
+            bookItems.stream().map(BookItem::getBookId).filter(Objects::nonNull).distinct()
+                    .forEach(bookId -> bookItemEventBus.publishBook(bookId.longValue()));
         }
     }
 
@@ -52,8 +130,13 @@ public class BookItemService implements BookItemServiceTrait {
     }
 
     @Override
+    @Transactional
     public void softDeleteByBookId(Long bookId) {
+        List<String> from = bookItemMapper.lockStatusesByBookId(bookId);
         bookItemMapper.softDeleteByBookId(bookId);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, null);
+        from.forEach(old -> statsService.copyMoved(old, "deleted"));
+        bookItemEventBus.publishBook(bookId);
     }
 
     @Override
@@ -62,13 +145,43 @@ public class BookItemService implements BookItemServiceTrait {
     }
 
     @Override
+    public List<JsonNode> findAll(String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FIELD_COLUMNS, Set.of());
+        return selection.project(bookItemMapper.findAllFields(selection.getColumns()), jsonMapper);
+    }
+
+    /**
+     * 各图书的可借副本数，每行包含 bookId 和 available
+     */
+    public List<Map<String, Object>> countAvailableByBook() {
+        return bookItemMapper.countAvailableByBook();
+    }
+
+    @Override
+    @Transactional
     public void updateBookItem(BookItem bookItem) {
+        String from = bookItemMapper.lockStatus(bookItem.getId());
         bookItemMapper.updateBookItem(bookItem);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, bookItem.getId());
+        statsService.copyMoved(from, bookItem.getStatus() == null ? "unknown" : bookItem.getStatus());
+        bookItemEventBus.publish(bookItem.getId());
     }
 
     @Override
+    @Transactional
     public void deleteBookItem(Integer id) {
+        String from = bookItemMapper.lockStatus(id);
+        // 删除后查不到行，先取图书ID用于推送
+        BookItem existing = from == null ? null : bookItemMapper.findById(id);
+        syncService.tombstone(ResourceVersions.Resource.BOOK_ITEM, List.of(id));
         bookItemMapper.deleteBookItem(id);
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, id);
+        if (from != null) {
+            statsService.copies(from, -1);
+        }
+        if (existing != null && existing.getBookId() != null) {
+            bookItemEventBus.publishRemoved(id, existing.getBookId().longValue());
+        }
     }
 
 }
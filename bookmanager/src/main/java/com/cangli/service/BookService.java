@@ -1,5 +1,7 @@
 package com.cangli.service;
 
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
 import com.cangli.mapper.BookItemMapper;
 import com.cangli.mapper.BookMapper;
 import com.cangli.pojo.Book;
@@ -7,17 +9,44 @@ import com.cangli.pojo.BookItem;
 import com.cangli.pojo.BorrowRecord;
 import com.cangli.pojo.Category;
 import com.cangli.service.impl.BookServiceTrait;
+import com.cangli.utils.FieldSelection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class BookService implements BookServiceTrait {
 
+    // ?fields= 可选字段 -> 列表达式
+    private static final Map<String, String> FIELD_COLUMNS = Map.ofEntries(
+            Map.entry("id", "book.id"),
+            Map.entry("code", "book.code"),
+            Map.entry("title", "book.title"),
+            Map.entry("author", "book.author"),
+            Map.entry("publisher", "book.publisher"),
+            Map.entry("isbn", "book.isbn"),
+            Map.entry("categoryId", "book.category_id"),
+            Map.entry("category", "categories.name AS category"),
+            Map.entry("publishDate", "book.publish_date"),
+            Map.entry("price", "book.price"),
+            Map.entry("entryDate", "book.entry_date"),
+            Map.entry("borrowTimes", "book.borrow_times"),
+            Map.entry("description", "book.description"),
+            Map.entry("coverUrl", "book.cover_url"));
+    // 不对应列的字段：副本列表、可借副本数
+    private static final Set<String> DERIVED_FIELDS = Set.of("bookItems", "availableCount");
+
     @Autowired
     private BookMapper bookMapper;
 
@@ -29,17 +58,66 @@ public class BookService implements BookServiceTrait {
     @Autowired
     private BorrowRecordService borrowRecordService;
 
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private BorrowCounterService borrowCounterService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
     public List<Book> findAll() {
 
         List<Book> books = bookMapper.findAll();
         for (Book book : books) {
             List<BookItem> findItems = bookItemService.findByBookId(book.getId());
             book.setBookItems(findItems);
+            // 合并尚未刷入数据库的借阅次数
+            long pending = borrowCounterService.pending(book.getId());
+            if (pending > 0) {
+                book.setBorrowTimes((book.getBorrowTimes() == null ? 0 : book.getBorrowTimes()) + (int) pending);
+            }
         }
         return books;
 
     }
 
+    /**
+     * 只查询并返回 fields 中的字段；列表页通常只需要 id,title,author,availableCount
+     */
+    @Override
+    public List<JsonNode> findAll(String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FIELD_COLUMNS, DERIVED_FIELDS);
+        List<Book> books = bookMapper.findAllFields(selection.getColumns());
+        for (Book book : books) {
+            if (selection.has("bookItems")) {
+                book.setBookItems(bookItemService.findByBookId(book.getId()));
+            }
+            if (selection.has("borrowTimes")) {
+                long pending = borrowCounterService.pending(book.getId());
+                if (pending > 0) {
+                    book.setBorrowTimes((book.getBorrowTimes() == null ? 0 : book.getBorrowTimes()) + (int) pending);
+                }
+            }
+        }
+        List<JsonNode> nodes = selection.project(books, jsonMapper);
+        if (selection.has("availableCount")) {
+            // 一条聚合查询代替逐本加载副本
+            Map<Long, Integer> available = new HashMap<>();
+            for (Map<String, Object> row : bookItemService.countAvailableByBook()) {
+                available.put(((Number) row.get("bookId")).longValue(), ((Number) row.get("available")).intValue());
+            }
+            for (int i = 0; i < books.size(); i++) {
+                ((ObjectNode) nodes.get(i)).put("availableCount", available.getOrDefault(books.get(i).getId(), 0));
+            }
+        }
+        return nodes;
+    }
+
     @Override
     @Transactional
     public void addBook(Book book) {
@@ -64,22 +142,37 @@ public class BookService implements BookServiceTrait {
 
         // 4. 插入数据库（不插入BookItems，因为添加图书时没有库存）
         bookMapper.addBook(book);
+        changeLog.record(ResourceVersions.Resource.BOOK, book.getId());
+        statsService.books(book.getCategoryId(), 1);
     }
 
     @Transactional
     public void updateBook(Book book) {
+        Book existing = bookMapper.findById(book.getId());
         bookMapper.updateBook(book);
+        changeLog.record(ResourceVersions.Resource.BOOK, book.getId());
+        // 换了分类
+        if (existing != null && !isDeleted(existing) && !Objects.equals(existing.getCategoryId(), book.getCategoryId())) {
+            statsService.books(existing.getCategoryId(), -1);
+            statsService.books(book.getCategoryId(), 1);
+        }
     }
 
     @Transactional
     public void deleteBook(Long id) {
         // 检查是否有活跃的借阅记录
 
+        Book existing = bookMapper.findById(id);
+
         // 软删除所有相关的BookItems（将其状态设置为'deleted'）
         bookItemService.softDeleteByBookId(id);
 
         // 软删除图书
         bookMapper.softDeleteBook(id);
+        changeLog.record(ResourceVersions.Resource.BOOK, id);
+        if (existing != null && !isDeleted(existing)) {
+            statsService.books(existing.getCategoryId(), -1);
+        }
     }
 
     @Transactional
@@ -148,6 +241,10 @@ public class BookService implements BookServiceTrait {
         bookItemService.updateStatus(itemId, status);
     }
 
+    private static boolean isDeleted(Book book) {
+        return book.getIsDeleted() != null && book.getIsDeleted() == 1;
+    }
+
     /**
      * 生成图书条形码
      */
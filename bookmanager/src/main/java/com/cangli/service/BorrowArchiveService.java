@@ -0,0 +1,62 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BorrowRecordMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 借阅记录冷热分离：已还且超过保留期的记录分批移入按年分区的归档表，
+ * 热表只保留进行中和近期的借阅
+ */
+@Service
+public class BorrowArchiveService {
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    // 归还后在热表中保留的天数
+    @Value("${bookmanager.archive.after-days:365}")
+    private int afterDays;
+
+    @Value("${bookmanager.archive.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 早于该日期借出的记录可能已在归档表中
+     */
+    public Date cutoff() {
+        return new Date(System.currentTimeMillis() - afterDays * 86_400_000L);
+    }
+
+    /**
+     * 归档一批记录，返回归档条数
+     */
+    @Transactional
+    public int archiveBatch() {
+        List<Long> ids = borrowRecordMapper.findArchivableIds(cutoff(), batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = borrowRecordMapper.copyToArchive(ids);
+        int deleted = borrowRecordMapper.deleteArchived(ids);
+        if (copied != deleted) {
+            // 期间有记录被修改，回滚等待下次
+            throw new IllegalStateException("归档条数不一致: 复制 " + copied + " 条, 删除 " + deleted + " 条");
+        }
+        changeLog.record(ResourceVersions.Resource.BORROW_RECORD, null);
+        return deleted;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
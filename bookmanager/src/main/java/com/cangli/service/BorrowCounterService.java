@@ -0,0 +1,143 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.BorrowRecordMapper;
+import com.cangli.pojo.BorrowRecord;
+import com.cangli.utils.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 借阅次数的延迟写：借书时不再更新 book 行，只在内存中记下借阅记录ID，
+ * 由定时任务按 borrow_record.counted 把尚未计入的借阅记录批量累加到 book.borrow_times。
+ * 内存记录只用于读时合并，进程崩溃后未计入的记录仍为 counted=0，下次刷新时自然补上。
+ * <p>
+ * 每个节点都会刷新所有节点的记录，所以内存里按记录ID而不是次数记账：本节点刷新时移除刷入的ID，
+ * 其他节点刷新后（变更日志中的 BOOK 记录）按库里的 counted 核对，只留下仍未计入的
+ */
+@Service
+public class BorrowCounterService {
+
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    // bookId -> 本节点已借出但尚未计入 borrow_times 的借阅记录ID
+    private final ConcurrentHashMap<Long, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 借书时调用。在提交之前登记（提交后记录才可能被刷新，不会先刷入后登记），回滚时撤销
+     */
+    public void increment(Long bookId, Long recordId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(bookId, recordId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                add(bookId, recordId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    remove(bookId, List.of(recordId));
+                }
+            }
+        });
+    }
+
+    public long pending(Long bookId) {
+        Set<Long> ids = pending.get(bookId);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * 刷入一批尚未计入的借阅记录，返回处理条数
+     */
+    @Transactional
+    public int flush() {
+        List<BorrowRecord> uncounted = borrowRecordMapper.findUncounted(FLUSH_BATCH_SIZE);
+        if (uncounted.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> deltas = new HashMap<>();
+        Map<Long, List<Long>> idsByBook = new HashMap<>();
+        List<Long> ids = new ArrayList<>(uncounted.size());
+        for (BorrowRecord record : uncounted) {
+            deltas.merge(record.getBookId(), 1L, Long::sum);
+            idsByBook.computeIfAbsent(record.getBookId(), k -> new ArrayList<>()).add(record.getId());
+            ids.add(record.getId());
+        }
+        // 行已加锁，条件更新不应落空，防御性检查
+        if (borrowRecordMapper.markCounted(ids) != ids.size()) {
+            throw new IllegalStateException("借阅记录已被其他实例计入，本次刷新放弃");
+        }
+        bookMapper.addBorrowTimes(deltas);
+        // 按图书记录，其他节点据此核对各自内存里的记录
+        deltas.keySet().forEach(bookId -> changeLog.record(ResourceVersions.Resource.BOOK, bookId));
+
+        TransactionUtil.afterCommit(() -> idsByBook.forEach(this::remove));
+        return ids.size();
+    }
+
+    /**
+     * 其他节点改了图书（可能刷入了本节点的借阅记录）：按库里的 counted 核对该书的内存记录。
+     * bookId 为 null 时核对全部。由 ChangeLogTailer 调用
+     */
+    public void reconcile(Long bookId) {
+        Set<Long> books = bookId == null ? new HashSet<>(pending.keySet()) : Set.of(bookId);
+        for (Long book : books) {
+            Set<Long> ids = pending.get(book);
+            if (ids == null || ids.isEmpty()) {
+                continue;
+            }
+            List<Long> snapshot = new ArrayList<>(ids);
+            // 尚未提交的记录查不到，会被暂时移除，刷入后以数据库为准
+            Set<Long> uncounted = new HashSet<>(borrowRecordMapper.findUncountedIds(snapshot));
+            snapshot.removeAll(uncounted);
+            remove(book, snapshot);
+        }
+    }
+
+    public int getFlushBatchSize() {
+        return FLUSH_BATCH_SIZE;
+    }
+
+    // 增删都在 compute 里做，不会加到刚被移除的集合上
+    private void add(Long bookId, Long recordId) {
+        pending.compute(bookId, (k, ids) -> {
+            Set<Long> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            result.add(recordId);
+            return result;
+        });
+    }
+
+    private void remove(Long bookId, List<Long> recordIds) {
+        pending.computeIfPresent(bookId, (k, ids) -> {
+            recordIds.forEach(ids::remove);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package com.cangli.service;
 
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
 import com.cangli.mapper.BookMapper;
 import com.cangli.mapper.BorrowRecordMapper;
 import com.cangli.mapper.ReaderMapper;
@@ -9,16 +11,37 @@ import com.cangli.pojo.BookItem;
 import com.cangli.pojo.BorrowRecord;
 import com.cangli.pojo.Reader;
 import com.cangli.service.impl.BorrowRecordTrait;
+import com.cangli.utils.FieldSelection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class BorrowRecordService implements BorrowRecordTrait {
+
+    // ?fields= 可选字段 -> 列表达式
+    private static final Map<String, String> FIELD_COLUMNS = Map.ofEntries(
+            Map.entry("id", "br.id"),
+            Map.entry("bookId", "br.book_id"),
+            Map.entry("bookTitle", "b.title AS book_title"),
+            Map.entry("bookCoverUrl", "b.cover_url AS book_cover_url"),
+            Map.entry("readerId", "br.reader_id"),
+            Map.entry("borrowDate", "br.borrow_date"),
+            Map.entry("dueDate", "br.due_date"),
+            Map.entry("returnDate", "br.return_date"),
+            Map.entry("overdueFine", "br.overdue_fine"),
+            Map.entry("status", "br.status"),
+            Map.entry("itemId", "br.item_id"),
+            Map.entry("itemBarcode", "bi.barcode AS item_barcode"));
+
     @Autowired
     private BorrowRecordMapper borrowRecordMapper;
 
@@ -31,6 +54,30 @@ public class BorrowRecordService implements BorrowRecordTrait {
     @Autowired
     private BookItemService bookItemService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BorrowCounterService borrowCounterService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private BorrowArchiveService borrowArchiveService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private StatsService statsService;
+
     @Override
     public List<BorrowRecord> findAll() {
         List<BorrowRecord> records = borrowRecordMapper.findAll();
@@ -38,6 +85,20 @@ public class BorrowRecordService implements BorrowRecordTrait {
         return records;
     }
 
+    @Override
+    public List<JsonNode> findAll(String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FIELD_COLUMNS, Set.of());
+        return selection.project(borrowRecordMapper.findAllFields(selection.getColumns()), jsonMapper);
+    }
+
+    /**
+     * 借阅历史 [from, to)：只有查询范围早于归档截止日期时才合并归档表
+     */
+    public List<BorrowRecord> findHistory(Long readerId, Date from, Date to) {
+        boolean includeArchive = from == null || from.before(borrowArchiveService.cutoff());
+        return borrowRecordMapper.findHistory(readerId, from, to, includeArchive);
+    }
+
     @Transactional
     public BorrowRecord borrowBook(Long bookId, Long readerId, Integer itemId) {
         // 检查图书是否存在且有库存
@@ -51,12 +112,32 @@ public class BorrowRecordService implements BorrowRecordTrait {
         if (reader == null) {
             throw new IllegalArgumentException("读者不存在");
         }
+        if (reader.getActive() != null && reader.getActive() == 0) {
+            throw new IllegalArgumentException("读者已停用，不能借书");
+        }
+
+        // 检查BookItem是否存在且可用：加锁读取库里的当前状态，缓存里的可能已被其他节点借出
+        BookItem bookItem = itemId == null ? null : bookItemService.lockById(itemId);
+        if (bookItem == null || bookItem.getBookId() == null || bookItem.getBookId().longValue() != bookId) {
+            throw new IllegalArgumentException("图书副本不存在或不可借阅");
+        }
+        if (!"available".equals(bookItem.getStatus())) {
+            // 已预留的副本只能由预约者借走
+            if (!"reserved".equals(bookItem.getStatus()) || !reservationService.claim(itemId, readerId)) {
+                throw new IllegalArgumentException("图书副本不存在或不可借阅");
+            }
+        }
 
-        // 检查BookItem是否存在且可用
-        BookItem bookItem = bookItemService.findByBookId(bookId).stream()
-            .filter(item -> item.getId().equals(itemId) && "available".equals(item.getStatus()))
-            .findFirst()
-            .orElseThrow(() -> new IllegalArgumentException("图书副本不存在或不可借阅"));
+        // 更新读者借书数量（原子加一，读者已停用时不成功）
+        if (readerMapper.adjustBorrowedCount(readerId, 1) != 1) {
+            throw new IllegalArgumentException("读者已停用，不能借书");
+        }
+        changeLog.record(ResourceVersions.Resource.READER, readerId);
+
+        // 更新图书副本状态为已借出，原状态已变说明被并发借走
+        if (!bookItemService.changeStatus(itemId, bookItem.getStatus(), "borrowed")) {
+            throw new IllegalArgumentException("图书副本不存在或不可借阅");
+        }
 
         // 创建借阅记录
         BorrowRecord record = new BorrowRecord();
@@ -75,24 +156,21 @@ public class BorrowRecordService implements BorrowRecordTrait {
 
         // 插入借阅记录
         borrowRecordMapper.addBorrowRecord(record);
+        changeLog.record(ResourceVersions.Resource.BORROW_RECORD, record.getId());
+        statsService.loans(record.getDueDate(), 1);
 
-        // 更新图书副本状态为已借出
-        bookItemService.updateStatus(itemId, "borrowed");
-
-        // 更新图书借阅次数
-        book.setBorrowTimes(book.getBorrowTimes() + 1);
-        bookMapper.updateBook(book);
-
-        // 更新读者借书数量
-        reader.setBorrowedCount(reader.getBorrowedCount() + 1);
-        readerMapper.updateReader(reader);
+        // 更新图书借阅次数（延迟批量写入，避免热门图书行锁争用）
+        borrowCounterService.increment(bookId, record.getId());
+        recommendationService.recordBorrow(readerId, bookId);
+        resourceVersions.bump(ResourceVersions.Resource.BOOK);
 
         return record;
     }
 
     @Transactional
     public BorrowRecord returnBook(Long recordId) {
-        BorrowRecord record = borrowRecordMapper.findById(recordId);
+        // 加锁读取库里的当前行，缓存里的可能已在其他节点归还或续借
+        BorrowRecord record = borrowRecordMapper.lockById(recordId);
         if (record == null) {
             throw new IllegalArgumentException("借阅记录不存在");
         }
@@ -101,32 +179,31 @@ public class BorrowRecordService implements BorrowRecordTrait {
         }
 
         // 更新借阅记录
-        record.setReturnDate(new Date());
-        record.setStatus("已还");
-        borrowRecordMapper.updateBorrowRecord(record);
-
-        // 更新图书副本状态为可用
-        bookItemService.updateStatus(record.getItemId(), "available");
+        if (borrowRecordMapper.markReturned(recordId, new Date()) != 1) {
+            throw new IllegalArgumentException("该记录已归还");
+        }
+        changeLog.record(ResourceVersions.Resource.BORROW_RECORD, recordId);
+        statsService.loans(record.getDueDate(), -1);
 
-        // 更新图书库存
-        Book book = bookMapper.findById(record.getBookId());
-        if (book != null) {
-            bookMapper.updateBook(book);
+        // 有人预约时直接把副本预留给队首读者，否则恢复可借。
+        // 副本不是借出状态（已被管理员改为不可借等）时保持原样
+        if (!reservationService.allocate(record.getBookId(), record.getItemId())) {
+            bookItemService.changeStatus(record.getItemId(), "borrowed", "available");
         }
 
-        // 更新读者借书数量
-        Reader reader = readerMapper.findById(record.getReaderId());
-        if (reader != null && reader.getBorrowedCount() > 0) {
-            reader.setBorrowedCount(reader.getBorrowedCount() - 1);
-            readerMapper.updateReader(reader);
+        // 更新读者借书数量（原子减一，不会减到负数）
+        if (readerMapper.adjustBorrowedCount(record.getReaderId(), -1) == 1) {
+            changeLog.record(ResourceVersions.Resource.READER, record.getReaderId());
         }
 
-        return record;
+        // 返回带图书标题、条码的完整记录；本事务已清空该命名空间的缓存，这里查的是库
+        return borrowRecordMapper.findById(recordId);
     }
 
     @Transactional
     public BorrowRecord renewBook(Long recordId) {
-        BorrowRecord record = borrowRecordMapper.findById(recordId);
+        // 加锁读取库里的当前行，从最新的应还日期延期，不会覆盖其他节点的续借
+        BorrowRecord record = borrowRecordMapper.lockById(recordId);
         if (record == null) {
             throw new IllegalArgumentException("借阅记录不存在");
         }
@@ -135,12 +212,18 @@ public class BorrowRecordService implements BorrowRecordTrait {
         }
 
         // 延长应还日期（30天）
+        Date previousDue = record.getDueDate();
         Calendar cal = Calendar.getInstance();
-        cal.setTime(record.getDueDate());
+        cal.setTime(previousDue);
         cal.add(Calendar.DAY_OF_MONTH, 30);
-        record.setDueDate(cal.getTime());
+        Date dueDate = cal.getTime();
 
-        borrowRecordMapper.updateBorrowRecord(record);
-        return record;
+        if (borrowRecordMapper.renew(recordId, dueDate) != 1) {
+            throw new IllegalArgumentException("该记录无法续借");
+        }
+        changeLog.record(ResourceVersions.Resource.BORROW_RECORD, recordId);
+        statsService.loans(previousDue, -1);
+        statsService.loans(dueDate, 1);
+        return borrowRecordMapper.findById(recordId);
     }
 }
@@ -1,5 +1,7 @@
 package com.cangli.service;
 
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
 import com.cangli.mapper.BookMapper;
 import com.cangli.mapper.CategoryMapper;
 import com.cangli.pojo.Category;
@@ -10,6 +12,7 @@ import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
 import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -44,6 +47,11 @@ public class CategoryService implements CategoryServiceTrait {
     @Autowired
     private BookMapper bookMapper;
 
+    @Autowired
+    private ChangeLog changeLog;
+    @Autowired
+    private SyncService syncService;
+
     @Override
     public List<Category> findAll() {
         return categoryMapper.findAll();
@@ -60,6 +68,7 @@ public class CategoryService implements CategoryServiceTrait {
     }
 
     @Override
+    @Transactional
     public void addCategory(Category category) {
         // 记录传入的code
         String originalCode = category.getCode();
@@ -101,21 +110,27 @@ public class CategoryService implements CategoryServiceTrait {
 
         System.out.println("准备插入分类: name=" + category.getName() + ", code=" + category.getCode());
         categoryMapper.addCategory(category);
+        changeLog.record(ResourceVersions.Resource.CATEGORY, category.getId());
         System.out.println("分类添加成功: ID=" + category.getId());
     }
 
     @Override
+    @Transactional
     public void updateCategory(Category category) {
         categoryMapper.updateCategory(category);
+        changeLog.record(ResourceVersions.Resource.CATEGORY, category.getId());
     }
 
     @Override
+    @Transactional
     public void deleteCategory(Integer id) {
         // 检查是否有图书属于该分类
         int bookCount = bookMapper.countByCategoryId(id);
         if (bookCount > 0) {
             throw new RuntimeException("无法删除分类：该分类下还有 " + bookCount + " 本图书。请先将这些图书移至其他分类或删除后再试。");
         }
+        syncService.tombstone(ResourceVersions.Resource.CATEGORY, List.of(id));
         categoryMapper.deleteCategory(id);
+        changeLog.record(ResourceVersions.Resource.CATEGORY, id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.cangli.service;
+
+import com.cangli.analytics.CirculationFileWriter;
+import com.cangli.analytics.CirculationSnapshot;
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.CirculationMapper;
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BorrowRecord;
+import com.cangli.pojo.Reader;
+import com.cangli.utils.IntIntHashMap;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 借阅统计：每晚把全部借阅记录（含归档表）导出为本地列式快照文件，
+ * 按分类、班级、星期、月份等的统计都在映射到内存的快照上并行扫描完成，不查 MariaDB。
+ * 数据截止到上次导出。
+ * <p>
+ * 快照是每个节点本地的一份：各节点各自按 export-cron 导出，手动导出也只刷新收到请求的节点，
+ * 不同节点的 snapshotAt 和结果可能不同。统计结果都带上 node（变更日志里的节点ID）和 snapshotAt
+ */
+@Service
+public class CirculationAnalyticsService {
+
+    private static final String FILE_NAME = "circulation.col";
+    private static final String NO_CATEGORY = "未分类";
+    private static final String NO_DEPT = "未填写";
+    private static final String NO_READER_TYPE = "未知";
+
+    @Autowired
+    private CirculationMapper circulationMapper;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Value("${bookmanager.analytics.dir:${java.io.tmpdir}/bookmanager-analytics}")
+    private String dir;
+
+    private Path root;
+    private volatile CirculationSnapshot snapshot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir);
+        Files.createDirectories(root);
+        Path file = root.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            try {
+                snapshot = CirculationSnapshot.open(file);
+            } catch (IOException | RuntimeException e) {
+                // 文件损坏或版本不符，等下次导出覆盖
+                System.out.println("CirculationAnalyticsService: 读取借阅快照失败: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean hasSnapshot() {
+        return snapshot != null;
+    }
+
+    public String getNodeId() {
+        return changeLog.getNodeId();
+    }
+
+    // 本节点快照的生成时间，没有快照时为 null
+    public Date getSnapshotAt() {
+        CirculationSnapshot current = snapshot;
+        return current == null ? null : new Date(current.getCreatedAt());
+    }
+
+    /**
+     * 全量导出并替换本节点的快照，返回导出的行数。同一时间只允许一次导出
+     */
+    public synchronized int export() {
+        long start = System.currentTimeMillis();
+        // 维度表都不大，先读进内存，借阅记录流式读取时按 ID 查
+        Map<Long, String> categoryNames = new HashMap<>();
+        circulationMapper.scanCategories(context ->
+                categoryNames.put(context.getResultObject().getId(), context.getResultObject().getName()));
+
+        // 图书ID -> 分类编号 + 1，0 表示没有
+        List<String> categories = new ArrayList<>();
+        Map<String, Integer> categoryCodes = new HashMap<>();
+        IntIntHashMap bookCategory = new IntIntHashMap();
+        circulationMapper.scanBookCategories(context -> {
+            Book book = context.getResultObject();
+            String name = categoryNames.get(book.getCategoryId() == null ? null : book.getCategoryId().longValue());
+            if (name != null) {
+                int code = categoryCodes.computeIfAbsent(name, key -> {
+                    categories.add(key);
+                    return categories.size() - 1;
+                });
+                bookCategory.put(book.getId().intValue(), code + 1);
+            }
+        });
+
+        // 读者ID -> 班级编号 + 1、读者类型编号 + 1
+        List<String> depts = new ArrayList<>();
+        Map<String, Integer> deptCodes = new HashMap<>();
+        IntIntHashMap readerDept = new IntIntHashMap();
+        IntIntHashMap readerType = new IntIntHashMap();
+        List<String> readerTypes = new ArrayList<>();
+        circulationMapper.scanReaders(context -> {
+            Reader reader = context.getResultObject();
+            int id = reader.getId().intValue();
+            if (reader.getClassDept() != null && !reader.getClassDept().isBlank()) {
+                readerDept.put(id, 1 + deptCodes.computeIfAbsent(reader.getClassDept(), key -> {
+                    depts.add(key);
+                    return depts.size() - 1;
+                }));
+            }
+            if (reader.getReaderType() != null) {
+                int code = readerTypes.indexOf(reader.getReaderType());
+                if (code < 0) {
+                    readerTypes.add(reader.getReaderType());
+                    code = readerTypes.size() - 1;
+                }
+                readerType.put(id, code + 1);
+            }
+        });
+
+        Path file = root.resolve(FILE_NAME);
+        int rows;
+        try (CirculationFileWriter writer = new CirculationFileWriter(root)) {
+            circulationMapper.scanBorrows(context -> {
+                BorrowRecord record = context.getResultObject();
+                int bookId = record.getBookId().intValue();
+                int readerId = record.getReaderId().intValue();
+                int category = bookCategory.get(bookId);
+                int dept = readerDept.get(readerId);
+                int type = readerType.get(readerId);
+                try {
+                    writer.append(epochDay(record.getBorrowDate()), epochDay(record.getDueDate()),
+                            record.getReturnDate() == null ? -1 : epochDay(record.getReturnDate()),
+                            category == 0 ? NO_CATEGORY : categories.get(category - 1),
+                            dept == 0 ? NO_DEPT : depts.get(dept - 1),
+                            type == 0 ? NO_READER_TYPE : readerTypes.get(type - 1));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            rows = writer.getRows();
+            writer.finish(file);
+            snapshot = CirculationSnapshot.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("CirculationAnalyticsService: 导出借阅快照 " + rows + " 条, "
+                + snapshot.getFileBytes() + " 字节, 耗时 " + (System.currentTimeMillis() - start) + "ms");
+        return rows;
+    }
+
+    /**
+     * 借出日期在 [from, to) 内的借阅按维度分组统计，from、to 为 null 时不限
+     */
+    public Map<String, Object> aggregate(CirculationSnapshot.GroupBy groupBy, LocalDate from, LocalDate to,
+                                         String category, String dept, String readerType) {
+        CirculationSnapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("借阅快照尚未生成");
+        }
+        long start = System.nanoTime();
+        List<Map<String, Object>> groups = current.aggregate(groupBy,
+                from == null ? null : (int) from.toEpochDay(),
+                to == null ? null : (int) to.toEpochDay(),
+                category, dept, readerType);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("groupBy", groupBy.name().toLowerCase());
+        result.put("node", changeLog.getNodeId());
+        result.put("snapshotAt", new Date(current.getCreatedAt()));
+        result.put("rows", current.getRows());
+        result.put("groups", groups);
+        result.put("elapsedMicros", (System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    private static int epochDay(Date date) {
+        if (date instanceof java.sql.Date sqlDate) {
+            return (int) sqlDate.toLocalDate().toEpochDay();
+        }
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+}
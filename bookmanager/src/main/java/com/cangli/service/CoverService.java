@@ -0,0 +1,341 @@
+package com.cangli.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 封面缩略图缓存：每个封面地址只从源站下载一次，生成固定尺寸的 JPEG 缩略图保存在本地目录，
+ * 文件名为封面地址的 SHA-256，目录总大小超过上限时按最近访问时间淘汰。
+ * 接口无需登录，下载只访问白名单域名的公网地址，重定向逐跳校验，下载失败的地址一段时间内不再重试
+ */
+@Service
+public class CoverService {
+
+    private static final int MAX_REDIRECTS = 3;
+    private static final int MAX_FAILURES = 10000;
+
+    @Value("${bookmanager.covers.dir:${java.io.tmpdir}/bookmanager-covers}")
+    private String dir;
+
+    @Value("${bookmanager.covers.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${bookmanager.covers.width:240}")
+    private int width;
+
+    @Value("${bookmanager.covers.height:360}")
+    private int height;
+
+    // 允许下载的域名，"*.example.com" 匹配子域名；为空时不下载
+    @Value("${bookmanager.covers.allowed-hosts:}")
+    private List<String> allowedHosts;
+
+    // 是否允许解析到回环、内网等地址（仅用于内网图床或测试）
+    @Value("${bookmanager.covers.allow-private-addresses:false}")
+    private boolean allowPrivateAddresses;
+
+    @Value("${bookmanager.covers.max-source-bytes:5242880}")
+    private int maxSourceBytes;
+
+    @Value("${bookmanager.covers.failure-ttl-seconds:600}")
+    private long failureTtlSeconds;
+
+    private Path root;
+    private Set<String> hosts;
+    // 重定向由 download 逐跳校验后自行跟随
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    // 文件名 -> 最近访问时间，用于淘汰
+    private final ConcurrentHashMap<String, Long> lastAccess = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    // 正在生成的缩略图，同一封面的并发请求只下载一次
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+    // 缓存键 -> 下载或解码失败后不再重试的截止时间
+    private final ConcurrentHashMap<String, Long> failures = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        hosts = new HashSet<>();
+        for (String host : allowedHosts) {
+            if (!host.isBlank()) {
+                hosts.add(host.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        root = Paths.get(dir);
+        Files.createDirectories(root);
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(p -> p.toString().endsWith(".jpg")).forEach(p -> {
+                try {
+                    totalBytes.addAndGet(Files.size(p));
+                    lastAccess.put(p.getFileName().toString(), Files.getLastModifiedTime(p).toMillis());
+                } catch (IOException ignored) {
+                    // 文件已被删除
+                }
+            });
+        }
+    }
+
+    /**
+     * 缩略图缓存键，同时用作 ETag
+     */
+    public String key(String coverUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((coverUrl + "@" + width + "x" + height).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 返回缩略图文件，不存在时下载并生成；源图不允许下载、无法下载或解码时返回 null
+     */
+    public Path thumbnail(String coverUrl) {
+        String key = key(coverUrl);
+        String fileName = key + ".jpg";
+        Path file = root.resolve(fileName);
+        if (Files.exists(file)) {
+            lastAccess.put(fileName, System.currentTimeMillis());
+            return file;
+        }
+        Long retryAt = failures.get(key);
+        if (retryAt != null) {
+            if (retryAt > System.currentTimeMillis()) {
+                return null;
+            }
+            failures.remove(key, retryAt);
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            Path created = create(coverUrl, file);
+            if (created == null) {
+                rememberFailure(key);
+            }
+            future.complete(created);
+            return created;
+        } catch (RuntimeException e) {
+            future.complete(null);
+            throw e;
+        } finally {
+            inflight.remove(key);
+        }
+    }
+
+    private Path create(String coverUrl, Path file) {
+        byte[] source = download(coverUrl);
+        if (source == null) {
+            return null;
+        }
+        byte[] jpeg;
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+            if (image == null) {
+                return null;
+            }
+            jpeg = scale(image);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            // 先写临时文件再原子改名，读请求不会看到写了一半的文件
+            Path tmp = Files.createTempFile(root, "cover", ".tmp");
+            Files.write(tmp, jpeg);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存封面缩略图失败", e);
+        }
+        lastAccess.put(file.getFileName().toString(), System.currentTimeMillis());
+        if (totalBytes.addAndGet(jpeg.length) > maxBytes) {
+            evict();
+        }
+        return file;
+    }
+
+    private void rememberFailure(String key) {
+        // 失败记录只是为了少打源站，过多时整体丢弃
+        if (failures.size() >= MAX_FAILURES) {
+            failures.clear();
+        }
+        failures.put(key, System.currentTimeMillis() + failureTtlSeconds * 1000);
+    }
+
+    private byte[] download(String coverUrl) {
+        URI uri;
+        try {
+            uri = URI.create(coverUrl);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        try {
+            for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+                if (!permitted(uri)) {
+                    return null;
+                }
+                HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build();
+                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream body = response.body()) {
+                    int status = response.statusCode();
+                    if (status == 301 || status == 302 || status == 303 || status == 307 || status == 308) {
+                        Optional<String> location = response.headers().firstValue("Location");
+                        if (location.isEmpty()) {
+                            return null;
+                        }
+                        uri = uri.resolve(location.get());
+                        continue;
+                    }
+                    if (status != 200
+                            || response.headers().firstValueAsLong("Content-Length").orElse(0) > maxSourceBytes) {
+                        return null;
+                    }
+                    // 边读边计数，超过上限立即断开，不把整个响应读进内存
+                    byte[] bytes = body.readNBytes(maxSourceBytes + 1);
+                    return bytes.length > maxSourceBytes ? null : bytes;
+                }
+            }
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 只允许 http(s)、白名单域名，且域名解析出的地址都不是回环、内网、链路本地等地址
+     */
+    private boolean permitted(URI uri) {
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (host == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return false;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (!hostAllowed(host)) {
+            return false;
+        }
+        if (allowPrivateAddresses) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!isPublic(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private boolean hostAllowed(String host) {
+        if (hosts.contains(host)) {
+            return true;
+        }
+        for (String allowed : hosts) {
+            if (allowed.startsWith("*.") && host.endsWith(allowed.substring(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            // 0.0.0.0/8 和运营商级 NAT 的 100.64.0.0/10
+            return bytes[0] != 0 && !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+        }
+        // IPv6 唯一本地地址 fc00::/7
+        return (bytes[0] & 0xfe) != 0xfc;
+    }
+
+    // 等比缩放到 width x height 以内，不足部分留白
+    private byte[] scale(BufferedImage image) throws IOException {
+        double ratio = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+        int w = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int h = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, (width - w) / 2, (height - h) / 2, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 按最近访问时间从旧到新删除，直到低于上限的 90%
+     */
+    private synchronized void evict() {
+        if (totalBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(lastAccess.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        long target = maxBytes / 10 * 9;
+        for (Map.Entry<String, Long> entry : entries) {
+            if (totalBytes.get() <= target) {
+                break;
+            }
+            Path file = root.resolve(entry.getKey());
+            try {
+                long size = Files.size(file);
+                Files.delete(file);
+                totalBytes.addAndGet(-size);
+            } catch (IOException ignored) {
+                // 文件已不存在
+            }
+            lastAccess.remove(entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.cangli.service;
+
+import com.cangli.mapper.IdempotencyMapper;
+import com.cangli.pojo.Admin;
+import com.cangli.pojo.IdempotencyRecord;
+import com.cangli.pojo.Reader;
+import com.cangli.pojo.Result;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 幂等键：客户端超时重试时带上相同的 Idempotency-Key，直接返回第一次的结果。
+ * 本节点内的并发重复请求在内存中等待正在执行的那一次；
+ * 跨节点时由数据库主键保证只有一个事务能占用 key，占用、业务写入和保存结果在同一事务内提交
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    @Autowired
+    private IdempotencyMapper idempotencyMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Value("${bookmanager.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    // 等待同一 key 正在执行的请求的最长时间
+    @Value("${bookmanager.idempotency.wait-millis:10000}")
+    private long waitMillis;
+
+    // 内存中最多保留的 key 数，超出后只保留正在执行的，已完成的从数据库读取
+    @Value("${bookmanager.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 带幂等键执行写操作。key 为空时直接执行；
+     * 只保存成功（code 200）的结果，失败或抛出异常时释放 key，允许重试
+     */
+    public Result execute(String key, HttpServletRequest request, Object body, Supplier<Result> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " 长度不能超过 " + MAX_KEY_LENGTH);
+        }
+        String idemKey = sha256(scope(request) + '\n' + key);
+        String fingerprint = sha256(jsonMapper.writeValueAsString(body));
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            Entry mine = new Entry(fingerprint, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes));
+            Entry existing = entries.putIfAbsent(idemKey, mine);
+            if (existing == null) {
+                return runOwned(idemKey, mine, request.getMethod() + " " + request.getRequestURI(), action);
+            }
+            if (existing.isExpired()) {
+                entries.remove(idemKey, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                return mismatch();
+            }
+            Result result = await(existing, deadline);
+            if (result != null) {
+                return result;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return Result.error(40901, "相同的请求正在处理中，请稍后重试");
+            }
+            // 上一次执行失败，key 已释放，重新竞争
+        }
+    }
+
+    private Result runOwned(String idemKey, Entry entry, String route, Supplier<Result> action) {
+        // 事务名带上接口，连接池路由据此把借书请求分到借还书连接池
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setName("idempotent:" + route);
+        Result result = null;
+        try {
+            result = transactionTemplate.execute(status -> {
+                idempotencyMapper.deleteExpiredKey(idemKey);
+                if (idempotencyMapper.claim(idemKey, entry.fingerprint, new Date(entry.expiresAt)) == 0) {
+                    // 其他节点已经执行过（占用时会等它的事务结束）
+                    IdempotencyRecord stored = idempotencyMapper.findByKey(idemKey);
+                    if (!entry.fingerprint.equals(stored.getFingerprint())) {
+                        return mismatch();
+                    }
+                    return replay(stored.getResponse());
+                }
+                Result executed = action.get();
+                if (executed.getCode() != null && executed.getCode() == 200) {
+                    idempotencyMapper.complete(idemKey, jsonMapper.writeValueAsString(executed.getData()));
+                } else {
+                    // 业务返回的错误不保存，回滚释放 key
+                    status.setRollbackOnly();
+                }
+                return executed;
+            });
+            return result;
+        } finally {
+            boolean stored = result != null && result.getCode() != null && result.getCode() == 200;
+            if (stored && entries.size() <= maxEntries) {
+                entry.result.complete(result);
+            } else {
+                entries.remove(idemKey, entry);
+                entry.result.complete(stored ? result : null);
+            }
+        }
+    }
+
+    private Result await(Entry entry, long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return entry.result.getNow(null);
+        }
+        try {
+            return entry.result.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private Result replay(String response) {
+        return Result.ok(response == null ? null : jsonMapper.readTree(response));
+    }
+
+    private static Result mismatch() {
+        return Result.error(42201, HEADER + " 已被用于不同的请求");
+    }
+
+    /**
+     * 清理过期的内存条目和数据库记录，返回删除的数据库记录数
+     */
+    public int purgeExpired(int batchSize) {
+        entries.values().removeIf(entry -> entry.isExpired() && entry.result.isDone());
+        return idempotencyMapper.deleteExpired(batchSize);
+    }
+
+    // 不同用户、不同接口的 key 互不冲突
+    private static String scope(HttpServletRequest request) {
+        Object user = request.getAttribute("currentUser");
+        Object userId = null;
+        if (user instanceof Admin admin) {
+            userId = admin.getId();
+        } else if (user instanceof Reader reader) {
+            userId = reader.getId();
+        }
+        return request.getAttribute("currentRole") + ":" + userId + ":" + request.getMethod() + ":" + request.getRequestURI();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final long expiresAt;
+        // 执行成功时为结果，失败时为 null
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+        private Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
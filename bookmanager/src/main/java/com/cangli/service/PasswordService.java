@@ -0,0 +1,136 @@
+package com.cangli.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 密码哈希：PBKDF2-HMAC-SHA256 + 随机盐，存储格式 pbkdf2$迭代次数$盐$哈希。
+ * 迭代次数可配置，调高后旧哈希在下次登录成功时自动升级；升级前的明文密码同样在登录时改存哈希
+ */
+@Service
+public class PasswordService {
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${bookmanager.password.iterations:100000}")
+    private int iterations;
+
+    // 花名册导入的默认初始密码（等于用户名或统一配置）本身可猜，用较低的成本，首次登录后按 iterations 重新哈希
+    @Value("${bookmanager.password.initial-iterations:1000}")
+    private int initialIterations;
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String raw) {
+        return hash(raw, iterations);
+    }
+
+    public String hashInitial(String raw) {
+        return hash(raw, initialIterations);
+    }
+
+    public boolean matches(String raw, String stored) {
+        // 空密码一律不匹配，即使库里出现了空串也不能用空密码登录
+        if (raw == null || stored == null || stored.isEmpty()) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // 升级前的明文密码
+            return MessageDigest.isEqual(raw.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int storedIterations = Integer.parseInt(parts[1]);
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        return MessageDigest.isEqual(expected, pbkdf2(raw, salt, storedIterations));
+    }
+
+    /**
+     * 明文或迭代次数低于当前配置的哈希需要在登录成功后重新计算
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+    }
+
+    /**
+     * 凭据戳：写入 token，修改密码后旧 token 随之失效。只是哈希的摘要，不泄露哈希本身
+     */
+    public String stamp(String stored) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(stored.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes, 0, 8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 测量给定迭代次数下单次哈希的耗时，用于调整 iterations
+     */
+    public Map<String, Object> benchmark(int benchIterations, int rounds) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        // 先跑几次让 JIT 编译完
+        for (int i = 0; i < 3; i++) {
+            pbkdf2("warmup-password", salt, benchIterations);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            pbkdf2("benchmark-password", salt, benchIterations);
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0 / rounds;
+        int cores = Runtime.getRuntime().availableProcessors();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", benchIterations);
+        result.put("configuredIterations", iterations);
+        result.put("millisPerHash", millis);
+        result.put("cores", cores);
+        // 登录几乎全部时间花在哈希上，CPU 打满时的理论上限
+        result.put("maxLoginsPerSecond", millis > 0 ? (int) (cores * 1000 / millis) : null);
+        return result;
+    }
+
+    private String hash(String raw, int cost) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + cost + '$' + encoder.encodeToString(salt) + '$' + encoder.encodeToString(pbkdf2(raw, salt, cost));
+    }
+
+    private static byte[] pbkdf2(String raw, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(raw.toCharArray(), salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -1,53 +1,148 @@
 package com.cangli.service;
 
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
 import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.PageResult;
 import com.cangli.pojo.Reader;
-import com.cangli.pojo.User;
+import com.cangli.pojo.ReaderSummary;
 import com.cangli.service.impl.ReaderServiceTrait;
+import com.cangli.utils.FieldSelection;
+import com.cangli.utils.PinyinUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 public class ReaderService implements ReaderServiceTrait {
+
+    // ?fields= 可选字段 -> 列，密码不在其中
+    private static final Map<String, String> FIELD_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "gender", "gender",
+            "classDept", "class_dept",
+            "readerType", "reader_type",
+            "contact", "contact",
+            "borrowLimit", "borrow_limit",
+            "borrowedCount", "borrowed_count",
+            "username", "username");
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ReaderMapper readerMapper;
 
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private StatsService statsService;
+
     @Override
     public List<Reader> findAll() {
         return readerMapper.findAll();
     }
 
+    @Override
+    public List<JsonNode> findAll(String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, FIELD_COLUMNS, Set.of());
+        return selection.project(readerMapper.findAllFields(selection.getColumns()), jsonMapper);
+    }
+
+    /**
+     * 按姓名、用户名、班级或姓名拼音首字母的前缀检索读者，keyword 为空时按 ID 倒序分页列出全部
+     */
+    @Override
+    public PageResult<ReaderSummary> search(String keyword, int page, int size) {
+        if (page < 1) {
+            throw new IllegalArgumentException("页码从 1 开始");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页条数须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        String prefix = null;
+        if (keyword != null && !keyword.isBlank()) {
+            // 转义 LIKE 通配符，只做前缀匹配，才能用上索引
+            prefix = keyword.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        }
+        long total = readerMapper.countSearch(prefix);
+        List<ReaderSummary> records = (long) (page - 1) * size < total
+                ? readerMapper.search(prefix, (page - 1) * size, size)
+                : List.of();
+        return new PageResult<>(total, page, size, records);
+    }
+
+    /**
+     * 补齐历史数据的姓名拼音首字母，返回本批处理的条数
+     */
+    @Transactional
+    public int backfillNameInitials(int batchSize) {
+        List<Reader> readers = readerMapper.findMissingInitials(batchSize);
+        for (Reader reader : readers) {
+            readerMapper.updateNameInitials(reader.getId(), PinyinUtil.nameInitials(reader.getName()));
+        }
+        if (!readers.isEmpty()) {
+            changeLog.record(ResourceVersions.Resource.READER, null);
+        }
+        return readers.size();
+    }
+
     @Transactional
     public void addReader(Reader reader) {
         validateReaderData(reader);
+        reader.setNameInitials(PinyinUtil.nameInitials(reader.getName()));
+        reader.setPassword(passwordService.hash(reader.getPassword()));
         if (reader.getBorrowedCount() == null) {
             reader.setBorrowedCount(0);
         }
         readerMapper.addReader(reader);
+        changeLog.record(ResourceVersions.Resource.READER, reader.getId());
+        statsService.readers(reader.getReaderType(), 1);
     }
 
     @Transactional
     public void updateReader(Reader reader) {
         validateReaderData(reader);
+        reader.setNameInitials(PinyinUtil.nameInitials(reader.getName()));
+        // 前端回传的是查询到的哈希值时保持不变，否则视为新密码
+        Reader existing = readerMapper.findById(reader.getId());
+        if (existing == null || !reader.getPassword().equals(existing.getPassword())) {
+            reader.setPassword(passwordService.hash(reader.getPassword()));
+        }
         readerMapper.updateReader(reader);
+        changeLog.record(ResourceVersions.Resource.READER, reader.getId());
+        if (existing != null && isActive(existing) && !Objects.equals(existing.getReaderType(), reader.getReaderType())) {
+            statsService.readers(existing.getReaderType(), -1);
+            statsService.readers(reader.getReaderType(), 1);
+        }
     }
 
     @Transactional
     public void deleteReader(Long id) {
+        Reader existing = readerMapper.findById(id);
         readerMapper.deleteReader(id);
+        changeLog.record(ResourceVersions.Resource.READER, id);
+        if (existing != null && isActive(existing)) {
+            statsService.readers(existing.getReaderType(), -1);
+        }
     }
 
-    @Override
-    public User findByUserNameAndPassword(String username, String password) {
-        return readerMapper.findByUserNameAndPassword(username, password);
-    }
-
-    public Reader findReaderByUserNameAndPassword(String username, String password) {
-
-        return readerMapper.findReaderByUserNameAndPassword(username, password);
+    private static boolean isActive(Reader reader) {
+        return reader.getActive() == null || reader.getActive() == 1;
     }
 
     private void validateReaderData(Reader reader) {
@@ -0,0 +1,363 @@
+package com.cangli.service;
+
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.BorrowRecordMapper;
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BorrowRecord;
+import com.cangli.utils.IntIntHashMap;
+import com.cangli.utils.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * "借过这本书的读者还借过"：基于借阅记录的图书共现矩阵。
+ * 共现次数 = 同时借过两本书的读者数。矩阵按图书ID下标存放 int -> int 哈希表，
+ * 每本书只发布前K个相关图书，查询时无锁读取
+ */
+@Service
+public class RecommendationService {
+
+    private static final int[] EMPTY = new int[0];
+    // fork/join 拆分阈值（借阅对数量）
+    private static final int SPLIT_THRESHOLD = 20_000;
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Value("${bookmanager.recommend.top-k:20}")
+    private int topK;
+
+    private final Object lock = new Object();
+    // 读者ID -> 借过的图书ID集合（值恒为1）
+    private IntIntHashMap[] histories = new IntIntHashMap[0];
+    // 图书ID -> (图书ID -> 共现次数)
+    private IntIntHashMap[] cooccurrence = new IntIntHashMap[0];
+    // 图书ID -> 前K个相关图书，按共现次数降序
+    private volatile AtomicReferenceArray<int[]> neighbors = new AtomicReferenceArray<>(0);
+
+    // 全量重建期间到达的借阅，重建完成后重放（重放已包含的借阅不会重复计数）
+    private boolean building;
+    private final List<int[]> pendingDuringBuild = new ArrayList<>();
+
+    /**
+     * 相关图书ID，按共现次数降序
+     */
+    public int[] alsoBorrowed(long bookId) {
+        AtomicReferenceArray<int[]> current = neighbors;
+        if (bookId <= 0 || bookId >= current.length()) {
+            return EMPTY;
+        }
+        int[] result = current.get((int) bookId);
+        return result == null ? EMPTY : result;
+    }
+
+    /**
+     * 相关图书详情，最多 limit 本。一次查出全部前K个，跳过已删除的图书后仍能凑满
+     */
+    public List<Book> alsoBorrowedBooks(Long bookId, int limit) {
+        int[] ids = alsoBorrowed(bookId);
+        if (limit <= 0 || ids.length == 0) {
+            return List.of();
+        }
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            idList.add((long) id);
+        }
+        Map<Long, Book> found = new HashMap<>();
+        for (Book book : bookMapper.findByIds(idList)) {
+            found.put(book.getId(), book);
+        }
+        // 按共现次数的顺序输出
+        List<Book> books = new ArrayList<>(Math.min(limit, found.size()));
+        for (int i = 0; i < ids.length && books.size() < limit; i++) {
+            Book book = found.get((long) ids[i]);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * 借书事务提交后增量更新共现矩阵
+     */
+    public void recordBorrow(Long readerId, Long bookId) {
+        int reader = readerId.intValue();
+        int book = bookId.intValue();
+        TransactionUtil.afterCommit(() -> {
+            synchronized (lock) {
+                if (building) {
+                    pendingDuringBuild.add(new int[]{reader, book});
+                } else {
+                    apply(reader, book);
+                }
+            }
+        });
+    }
+
+    // 需持有 lock
+    private void apply(int reader, int book) {
+        histories = ensureCapacity(histories, reader);
+        if (histories[reader] == null) {
+            histories[reader] = new IntIntHashMap();
+        }
+        IntIntHashMap history = histories[reader];
+        if (history.containsKey(book)) {
+            return;
+        }
+        int[] others = history.keys();
+        history.put(book, 1);
+
+        cooccurrence = ensureCapacity(cooccurrence, Math.max(book, max(others)));
+        IntIntHashMap row = row(cooccurrence, book);
+        for (int other : others) {
+            row.addTo(other, 1);
+            row(cooccurrence, other).addTo(book, 1);
+        }
+
+        AtomicReferenceArray<int[]> current = neighbors;
+        if (cooccurrence.length > current.length()) {
+            AtomicReferenceArray<int[]> grown = new AtomicReferenceArray<>(cooccurrence.length);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            neighbors = current = grown;
+        }
+        // 本书的多个共现次数都变了，重新计算；其他书只有本书的次数加1，调整其位置即可
+        current.set(book, topK(row, topK));
+        for (int other : others) {
+            current.set(other, promote(current.get(other), cooccurrence[other], book));
+        }
+    }
+
+    /**
+     * 从借阅记录全量重建，使用 fork/join 按读者分区并行统计
+     */
+    public void rebuild() {
+        synchronized (lock) {
+            if (building) {
+                return;
+            }
+            building = true;
+        }
+        boolean swapped = false;
+        try {
+            PairCollector pairs = new PairCollector();
+            borrowRecordMapper.scanReaderBookPairs(context -> pairs.add(context.getResultObject()));
+
+            int maxBook = 0;
+            int maxReader = 0;
+            for (int i = 0; i < pairs.size; i++) {
+                maxReader = Math.max(maxReader, pairs.readers[i]);
+                maxBook = Math.max(maxBook, pairs.books[i]);
+            }
+            IntIntHashMap[] builtCooccurrence = ForkJoinPool.commonPool()
+                    .invoke(new BuildTask(pairs.readers, pairs.books, 0, pairs.size, maxBook + 1));
+            IntIntHashMap[] builtHistories = new IntIntHashMap[maxReader + 1];
+            for (int i = 0; i < pairs.size; i++) {
+                row(builtHistories, pairs.readers[i]).put(pairs.books[i], 1);
+            }
+            AtomicReferenceArray<int[]> builtNeighbors = new AtomicReferenceArray<>(builtCooccurrence.length);
+            IntStream.range(0, builtCooccurrence.length).parallel().forEach(b -> {
+                if (builtCooccurrence[b] != null) {
+                    builtNeighbors.set(b, topK(builtCooccurrence[b], topK));
+                }
+            });
+
+            synchronized (lock) {
+                histories = builtHistories;
+                cooccurrence = builtCooccurrence;
+                neighbors = builtNeighbors;
+                swapped = true;
+            }
+            System.out.println("RecommendationService: 重建完成, 借阅对 " + pairs.size + " 条, 图书 " + maxBook);
+        } finally {
+            synchronized (lock) {
+                building = false;
+                for (int[] pending : pendingDuringBuild) {
+                    apply(pending[0], pending[1]);
+                }
+                pendingDuringBuild.clear();
+            }
+            if (!swapped) {
+                System.out.println("RecommendationService: 重建失败，继续使用原有数据");
+            }
+        }
+    }
+
+    private static IntIntHashMap row(IntIntHashMap[] rows, int id) {
+        if (rows[id] == null) {
+            rows[id] = new IntIntHashMap();
+        }
+        return rows[id];
+    }
+
+    private static IntIntHashMap[] ensureCapacity(IntIntHashMap[] rows, int id) {
+        if (id < rows.length) {
+            return rows;
+        }
+        return Arrays.copyOf(rows, Math.max(id + 1, rows.length * 3 / 2));
+    }
+
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * 按共现次数降序（相同时按ID升序）取前 k 个
+     */
+    static int[] topK(IntIntHashMap row, int k) {
+        long[] packed = new long[row.size()];
+        int[] n = {0};
+        // 高32位为次数，低32位为反转的ID，降序排序即得到想要的顺序
+        row.forEach((id, count) -> packed[n[0]++] = ((long) count << 32) | (Integer.MAX_VALUE - id));
+        Arrays.sort(packed);
+        int size = Math.min(k, packed.length);
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = Integer.MAX_VALUE - (int) packed[packed.length - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * candidate 的共现次数刚加1，其他图书的次数未变：把它插入或上移到正确位置
+     */
+    private int[] promote(int[] current, IntIntHashMap row, int candidate) {
+        if (current == null) {
+            current = EMPTY;
+        }
+        int score = row.get(candidate);
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == candidate) {
+                index = i;
+                break;
+            }
+        }
+        int[] next;
+        if (index >= 0) {
+            next = current.clone();
+        } else if (current.length < topK) {
+            next = Arrays.copyOf(current, current.length + 1);
+            index = current.length;
+        } else if (ranksBefore(score, candidate, row.get(current[current.length - 1]), current[current.length - 1])) {
+            next = current.clone();
+            index = current.length - 1;
+        } else {
+            return current;
+        }
+        while (index > 0 && ranksBefore(score, candidate, row.get(next[index - 1]), next[index - 1])) {
+            next[index] = next[index - 1];
+            index--;
+        }
+        next[index] = candidate;
+        return next;
+    }
+
+    private static boolean ranksBefore(int score, int id, int otherScore, int otherId) {
+        return score > otherScore || score == otherScore && id < otherId;
+    }
+
+    /**
+     * 按读者ID有序的 (读者, 图书) 去重对
+     */
+    private static class PairCollector {
+        int[] readers = new int[1024];
+        int[] books = new int[1024];
+        int size;
+
+        void add(BorrowRecord record) {
+            if (size == readers.length) {
+                readers = Arrays.copyOf(readers, size * 2);
+                books = Arrays.copyOf(books, size * 2);
+            }
+            readers[size] = record.getReaderId().intValue();
+            books[size] = record.getBookId().intValue();
+            size++;
+        }
+    }
+
+    private static class BuildTask extends RecursiveTask<IntIntHashMap[]> {
+        private final int[] readers;
+        private final int[] books;
+        private final int from;
+        private final int to;
+        private final int bookCapacity;
+
+        BuildTask(int[] readers, int[] books, int from, int to, int bookCapacity) {
+            this.readers = readers;
+            this.books = books;
+            this.from = from;
+            this.to = to;
+            this.bookCapacity = bookCapacity;
+        }
+
+        @Override
+        protected IntIntHashMap[] compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                // 在读者边界处切分，同一读者的借阅不跨分区
+                int mid = (from + to) >>> 1;
+                while (mid < to && readers[mid] == readers[mid - 1]) {
+                    mid++;
+                }
+                if (mid < to) {
+                    BuildTask left = new BuildTask(readers, books, from, mid, bookCapacity);
+                    BuildTask right = new BuildTask(readers, books, mid, to, bookCapacity);
+                    left.fork();
+                    IntIntHashMap[] rightResult = right.compute();
+                    return merge(left.join(), rightResult);
+                }
+            }
+            IntIntHashMap[] rows = new IntIntHashMap[bookCapacity];
+            int start = from;
+            while (start < to) {
+                int end = start + 1;
+                while (end < to && readers[end] == readers[start]) {
+                    end++;
+                }
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        row(rows, books[i]).addTo(books[j], 1);
+                        row(rows, books[j]).addTo(books[i], 1);
+                    }
+                }
+                start = end;
+            }
+            return rows;
+        }
+
+        private static IntIntHashMap[] merge(IntIntHashMap[] into, IntIntHashMap[] from) {
+            for (int b = 0; b < from.length; b++) {
+                if (from[b] == null) {
+                    continue;
+                }
+                if (into[b] == null) {
+                    into[b] = from[b];
+                } else {
+                    IntIntHashMap target = into[b];
+                    from[b].forEach(target::addTo);
+                }
+            }
+            return into;
+        }
+    }
+}
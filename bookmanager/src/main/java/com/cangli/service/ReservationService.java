@@ -0,0 +1,173 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.mapper.ReservationMapper;
+import com.cangli.pojo.Reservation;
+import com.cangli.service.impl.ReservationServiceTrait;
+import com.cangli.utils.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Service
+public class ReservationService implements ReservationServiceTrait {
+    @Autowired
+    private ReservationMapper reservationMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private BookItemService bookItemService;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    // 预约到书后的保留时长
+    @Value("${bookmanager.reservation.hold-hours:48}")
+    private int holdHours;
+
+    /**
+     * bookId -> 等待中的预约ID。ID 递增，按升序遍历即先来先得。
+     * 首次访问某本书时从数据库加载，之后在事务提交后增删；其他节点新增或取消预约时
+     * 经变更日志（RESERVATION，实体ID为图书ID）丢弃对应的队列，下次访问重新加载
+     */
+    private final ConcurrentHashMap<Long, ConcurrentSkipListSet<Long>> waitingQueues = new ConcurrentHashMap<>();
+
+    private ConcurrentSkipListSet<Long> queue(Long bookId) {
+        return waitingQueues.computeIfAbsent(bookId,
+                id -> new ConcurrentSkipListSet<>(reservationMapper.findWaitingIdsByBookId(id)));
+    }
+
+    /**
+     * 丢弃某本书的内存队列，bookId 为 null 时丢弃全部（由 ChangeLogTailer 调用）
+     */
+    public void invalidateQueue(Long bookId) {
+        if (bookId == null) {
+            waitingQueues.clear();
+        } else {
+            waitingQueues.remove(bookId);
+        }
+    }
+
+    @Override
+    public List<Reservation> findByReaderId(Long readerId) {
+        return reservationMapper.findByReaderId(readerId);
+    }
+
+    @Override
+    @Transactional
+    public Reservation reserve(Long bookId, Long readerId) {
+        if (bookMapper.findById(bookId) == null) {
+            throw new IllegalArgumentException("图书不存在");
+        }
+        if (readerMapper.findById(readerId) == null) {
+            throw new IllegalArgumentException("读者不存在");
+        }
+        if (!bookItemService.findByBookIdAndStatus(bookId, "available").isEmpty()) {
+            throw new IllegalArgumentException("该书有可借副本，请直接借阅");
+        }
+        if (reservationMapper.countActiveByBookIdAndReaderId(bookId, readerId) > 0) {
+            throw new IllegalArgumentException("已预约该书，请勿重复预约");
+        }
+
+        Reservation reservation = new Reservation();
+        reservation.setBookId(bookId);
+        reservation.setReaderId(readerId);
+        reservation.setCreatedAt(new Date());
+        reservationMapper.addReservation(reservation);
+        changeLog.record(ResourceVersions.Resource.RESERVATION, bookId);
+
+        Long id = reservation.getId();
+        TransactionUtil.afterCommit(() -> queue(bookId).add(id));
+        return reservation;
+    }
+
+    @Override
+    @Transactional
+    public void cancel(Long id) {
+        Reservation reservation = reservationMapper.findById(id);
+        if (reservation == null) {
+            throw new IllegalArgumentException("预约不存在");
+        }
+        if (reservationMapper.updateStatus(id, "等待", "已取消") == 1) {
+            changeLog.record(ResourceVersions.Resource.RESERVATION, reservation.getBookId());
+            TransactionUtil.afterCommit(() -> queue(reservation.getBookId()).remove(id));
+            return;
+        }
+        if (reservationMapper.updateStatus(id, "待取", "已取消") == 1) {
+            // 已分配的副本转给下一位预约者
+            release(reservation.getBookId(), reservation.getItemId());
+            return;
+        }
+        throw new IllegalArgumentException("该预约无法取消");
+    }
+
+    /**
+     * 归还时调用：把副本分配给该书等待队列的队首，返回是否分配成功。
+     * 分配是对预约行的条件更新（仅 status='等待' 时成功），并发归还同一本书时
+     * 后到的事务会在该行上等待前一个提交，随后条件不成立，继续尝试下一位。
+     * 其他节点分配掉的预约同样因条件不成立被跳过并移出本地队列，因此分配不写变更日志
+     */
+    @Override
+    @Transactional
+    public boolean allocate(Long bookId, Integer itemId) {
+        ConcurrentSkipListSet<Long> queue = queue(bookId);
+        if (queue.isEmpty()) {
+            return false;
+        }
+        Date holdUntil = new Date(System.currentTimeMillis() + holdHours * 3600_000L);
+        for (Long reservationId : queue) {
+            if (reservationMapper.assignItem(reservationId, itemId, holdUntil) == 1) {
+                bookItemService.updateStatus(itemId, "reserved");
+                TransactionUtil.afterCommit(() -> queue.remove(reservationId));
+                return true;
+            }
+            // 已被其他归还分配、取消或过期
+            queue.remove(reservationId);
+        }
+        return false;
+    }
+
+    /**
+     * 借书时调用：副本为 reserved 时，只有持有该副本的预约者可以借走
+     */
+    @Override
+    @Transactional
+    public boolean claim(Integer itemId, Long readerId) {
+        Reservation reservation = reservationMapper.findHeldByItemId(itemId);
+        if (reservation == null || !reservation.getReaderId().equals(readerId)) {
+            return false;
+        }
+        return reservationMapper.updateStatus(reservation.getId(), "待取", "已取") == 1;
+    }
+
+    /**
+     * 超过取书期限：预约过期，副本转给下一位或恢复可借
+     */
+    @Override
+    @Transactional
+    public void expireHold(Reservation reservation) {
+        if (reservationMapper.updateStatus(reservation.getId(), "待取", "已过期") == 1) {
+            release(reservation.getBookId(), reservation.getItemId());
+        }
+    }
+
+    private void release(Long bookId, Integer itemId) {
+        if (!allocate(bookId, itemId)) {
+            bookItemService.updateStatus(itemId, "available");
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.Reader;
+import com.cangli.utils.PinyinUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 学期花名册导入：边读 CSV 边处理，每批先并行校验，再用一条 INSERT ... ON DUPLICATE KEY UPDATE
+ * 按 username 写入，一批一个事务。校验失败的行跳过并报告行号，不影响其他行
+ */
+@Service
+public class RosterImportService {
+
+    // 表头别名 -> 字段，支持英文和中文表头
+    private static final Map<String, String> HEADERS = new HashMap<>();
+
+    static {
+        alias("username", "username", "用户名", "学号", "工号");
+        alias("name", "name", "姓名");
+        alias("gender", "gender", "性别");
+        alias("classDept", "classdept", "class_dept", "班级", "院系");
+        alias("readerType", "readertype", "reader_type", "读者类型", "类型");
+        alias("contact", "contact", "联系方式");
+        alias("borrowLimit", "borrowlimit", "borrow_limit", "借书限额");
+        alias("password", "password", "密码");
+    }
+
+    private static final Set<String> GENDERS = Set.of("男", "女", "未知");
+    private static final Set<String> READER_TYPES = Set.of("学生", "教师");
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bookmanager.roster.batch-size:1000}")
+    private int batchSize;
+
+    // 结果中最多列出的错误行数
+    @Value("${bookmanager.roster.max-errors:200}")
+    private int maxErrors;
+
+    // 新读者未填密码时的初始密码，不配置时使用用户名
+    @Value("${bookmanager.roster.default-password:}")
+    private String defaultPassword;
+
+    @Value("${bookmanager.roster.student-borrow-limit:3}")
+    private int studentBorrowLimit;
+
+    @Value("${bookmanager.roster.teacher-borrow-limit:10}")
+    private int teacherBorrowLimit;
+
+    /**
+     * 导入 CSV 花名册，首行为表头，至少包含用户名和姓名两列
+     */
+    public Map<String, Object> importCsv(InputStream in, Charset charset) throws IOException {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IllegalArgumentException("花名册为空");
+        }
+        // Excel 导出的 UTF-8 文件带 BOM
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        int[] columns = parseHeader(parseLine(header));
+
+        List<Row> chunk = new ArrayList<>(batchSize);
+        String line;
+        int lineNo = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(new Row(lineNo, parseLine(line)));
+            if (chunk.size() >= batchSize) {
+                importChunk(chunk, columns, result);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, columns, result);
+        }
+        return result.toMap();
+    }
+
+    /**
+     * 停用读者（如毕业生），可按用户名列表或班级，两者都给时取交集。返回停用的人数
+     */
+    public int deactivate(List<String> usernames, String classDept) {
+        boolean byUsername = usernames != null && !usernames.isEmpty();
+        boolean byClass = classDept != null && !classDept.isBlank();
+        if (!byUsername && !byClass) {
+            throw new IllegalArgumentException("请指定要停用的用户名或班级");
+        }
+        String dept = byClass ? classDept.trim() : null;
+        if (!byUsername) {
+            return deactivateBatch(null, dept);
+        }
+        int total = 0;
+        for (int from = 0; from < usernames.size(); from += batchSize) {
+            total += deactivateBatch(usernames.subList(from, Math.min(from + batchSize, usernames.size())), dept);
+        }
+        return total;
+    }
+
+    private int deactivateBatch(List<String> usernames, String classDept) {
+        return inTransaction(() -> {
+            int count = readerMapper.deactivate(usernames, classDept);
+            if (count > 0) {
+                changeLog.record(ResourceVersions.Resource.READER, null);
+                statsService.invalidate(StatsService.Section.READERS);
+            }
+            return count;
+        });
+    }
+
+    private void importChunk(List<Row> chunk, int[] columns, ImportResult result) {
+        // 校验和拼音首字母计算互不依赖，并行处理
+        List<Object> validated = chunk.parallelStream()
+                .map(row -> {
+                    try {
+                        return toReader(row.cells, columns);
+                    } catch (IllegalArgumentException e) {
+                        return new RowError(row.lineNo, cell(row.cells, columns[0]), e.getMessage());
+                    }
+                })
+                .toList();
+
+        // 同一批内用户名重复时以后出现的为准
+        Map<String, Reader> readers = new LinkedHashMap<>();
+        for (Object item : validated) {
+            if (item instanceof Reader reader) {
+                readers.put(reader.getUsername(), reader);
+            } else {
+                result.addError((RowError) item, maxErrors);
+            }
+        }
+        if (readers.isEmpty()) {
+            return;
+        }
+
+        List<Reader> batch = new ArrayList<>(readers.values());
+        // 已有读者不改密码；性别、读者类型、借书限额等选填列未填时保留原值，默认值只用于新读者。
+        // 事务外先查重，预先哈希新读者的密码：哈希耗 CPU，不能占着连接和行锁
+        Set<String> existing = new HashSet<>(readerMapper.findExistingUsernames(new ArrayList<>(readers.keySet())));
+        Map<String, String> hashed = batch.parallelStream()
+                .filter(reader -> !existing.contains(reader.getUsername()))
+                .collect(Collectors.toConcurrentMap(Reader::getUsername, this::hashPassword));
+        int inserted = inTransaction(() -> {
+            List<Reader> created = lockExisting(batch, hashed);
+            readerMapper.upsertBatch(batch);
+            changeLog.record(ResourceVersions.Resource.READER, null);
+            created.forEach(reader -> statsService.readers(reader.getReaderType(), 1));
+            // 已有读者可能改了类型或重新启用，不知道原值，重新统计
+            if (created.size() < batch.size()) {
+                statsService.invalidate(StatsService.Section.READERS);
+            }
+            return created.size();
+        });
+        result.inserted += inserted;
+        result.updated += batch.size() - inserted;
+    }
+
+    // 事务内加锁重新查重，返回这次真正新增的读者，并给它们补默认值和密码。已有读者不写密码，
+    // 未填读者类型时沿用当前值（reader_type 不能为 NULL，交不给 upsert 的 COALESCE）。
+    // 事务外以为已有、期间被删除的读者在这里补哈希，不能以空密码插入
+    private List<Reader> lockExisting(List<Reader> batch, Map<String, String> hashed) {
+        List<String> usernames = batch.stream().map(Reader::getUsername).toList();
+        Map<String, String> current = new HashMap<>();
+        for (Reader reader : readerMapper.lockReaderTypes(usernames)) {
+            current.put(reader.getUsername(), reader.getReaderType());
+        }
+        List<Reader> created = new ArrayList<>();
+        for (Reader reader : batch) {
+            if (current.containsKey(reader.getUsername())) {
+                if (reader.getReaderType() == null) {
+                    reader.setReaderType(current.get(reader.getUsername()));
+                }
+                reader.setPassword(null);
+                continue;
+            }
+            String password = hashed.get(reader.getUsername());
+            reader.setPassword(password != null ? password : hashPassword(reader));
+            fillDefaults(reader);
+            created.add(reader);
+        }
+        return created;
+    }
+
+    private String hashPassword(Reader reader) {
+        if (reader.getPassword() == null) {
+            return passwordService.hashInitial(defaultPassword.isEmpty() ? reader.getUsername() : defaultPassword);
+        }
+        return passwordService.hash(reader.getPassword());
+    }
+
+    private void fillDefaults(Reader reader) {
+        if (reader.getGender() == null) {
+            reader.setGender("未知");
+        }
+        if (reader.getReaderType() == null) {
+            reader.setReaderType("学生");
+        }
+        if (reader.getBorrowLimit() == null) {
+            reader.setBorrowLimit("教师".equals(reader.getReaderType()) ? teacherBorrowLimit : studentBorrowLimit);
+        }
+    }
+
+    private int inTransaction(IntSupplier action) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setName("roster-import");
+        Integer count = transactionTemplate.execute(status -> action.getAsInt());
+        return count == null ? 0 : count;
+    }
+
+    private static Reader toReader(List<String> cells, int[] columns) {
+        String username = cell(cells, columns[0]);
+        String name = cell(cells, columns[1]);
+        if (username == null) {
+            throw new IllegalArgumentException("用户名不能为空");
+        }
+        if (username.length() > 20) {
+            throw new IllegalArgumentException("用户名不能超过 20 个字符");
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("姓名不能为空");
+        }
+        if (name.length() > 50) {
+            throw new IllegalArgumentException("姓名不能超过 50 个字符");
+        }
+        // 性别、读者类型未填时为 null：已有读者保留原值，新读者在写入前补默认值
+        String gender = cell(cells, columns[2]);
+        if (gender != null && !GENDERS.contains(gender)) {
+            throw new IllegalArgumentException("性别只能是 男、女 或 未知");
+        }
+        String readerType = cell(cells, columns[4]);
+        if (readerType != null && !READER_TYPES.contains(readerType)) {
+            throw new IllegalArgumentException("读者类型只能是 学生 或 教师");
+        }
+        String classDept = cell(cells, columns[3]);
+        if (classDept != null && classDept.length() > 100) {
+            throw new IllegalArgumentException("班级不能超过 100 个字符");
+        }
+        String contact = cell(cells, columns[5]);
+        if (contact != null && contact.length() > 100) {
+            throw new IllegalArgumentException("联系方式不能超过 100 个字符");
+        }
+        Integer borrowLimit = null;
+        String limit = cell(cells, columns[6]);
+        if (limit != null) {
+            try {
+                borrowLimit = Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("借书限额必须是整数");
+            }
+            if (borrowLimit < 0) {
+                throw new IllegalArgumentException("借书限额不能为负数");
+            }
+        }
+        String password = cell(cells, columns[7]);
+        if (password != null && password.length() > 64) {
+            throw new IllegalArgumentException("密码不能超过 64 个字符");
+        }
+
+        Reader reader = new Reader();
+        reader.setUsername(username);
+        reader.setName(name);
+        reader.setNameInitials(PinyinUtil.nameInitials(name));
+        reader.setGender(gender);
+        reader.setReaderType(readerType);
+        reader.setClassDept(classDept);
+        reader.setContact(contact);
+        reader.setBorrowLimit(borrowLimit);
+        reader.setPassword(password);
+        return reader;
+    }
+
+    // 各字段所在的列号，顺序与 toReader 中的下标一致，缺少的列为 -1
+    private static int[] parseHeader(List<String> header) {
+        String[] fields = {"username", "name", "gender", "classDept", "readerType", "contact", "borrowLimit", "password"};
+        int[] columns = new int[fields.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < header.size(); i++) {
+            String field = HEADERS.get(header.get(i).trim().toLowerCase());
+            if (field == null) {
+                continue;
+            }
+            for (int f = 0; f < fields.length; f++) {
+                if (fields[f].equals(field)) {
+                    columns[f] = i;
+                }
+            }
+        }
+        if (columns[0] < 0 || columns[1] < 0) {
+            throw new IllegalArgumentException("花名册表头必须包含用户名和姓名两列");
+        }
+        return columns;
+    }
+
+    private static String cell(List<String> cells, int column) {
+        if (column < 0 || column >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // 解析一行 CSV：逗号分隔，双引号包裹的字段内可以有逗号，"" 表示一个双引号
+    private static List<String> parseLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    private static void alias(String field, String... names) {
+        for (String name : names) {
+            HEADERS.put(name, field);
+        }
+    }
+
+    private record Row(int lineNo, List<String> cells) {
+    }
+
+    private record RowError(int line, String username, String message) {
+    }
+
+    private static final class ImportResult {
+        private int inserted;
+        private int updated;
+        private int failed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private void addError(RowError error, int maxErrors) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(error);
+            }
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("inserted", inserted);
+            map.put("updated", updated);
+            map.put("failed", failed);
+            map.put("errors", errors);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.cangli.service;
+
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.StatsMapper;
+import com.cangli.pojo.Category;
+import com.cangli.utils.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 管理员看板计数：服务层在写入时按事务提交增减内存计数，/stats/summary 直接读内存，不查库。
+ * 无法得知原值的写入（花名册导入、停用读者、其他节点的变更）把对应分区标记为脏，
+ * 由 StatsReconciler 在几秒内用 SQL 重新统计；另外定时全量校准，修正可能的漂移
+ */
+@Service
+public class StatsService {
+
+    public enum Section {
+        COPIES,
+        LOANS,
+        READERS,
+        BOOKS
+    }
+
+    // 看板上展示的副本状态，deleted 只参与计数，不展示
+    private static final List<String> COPY_STATUSES = List.of("available", "borrowed", "reserved", "unavailable", "unknown");
+
+    @Autowired
+    private StatsMapper statsMapper;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    private final Map<Section, Tally> tallies = new EnumMap<>(Section.class);
+
+    // 逾期按当天日期判断，测试中替换
+    private Clock clock = Clock.systemDefaultZone();
+
+    public StatsService() {
+        for (Section section : Section.values()) {
+            tallies.put(section, new Tally());
+        }
+    }
+
+    public void copies(String status, long delta) {
+        add(Section.COPIES, status == null ? "unknown" : status, delta);
+    }
+
+    // 副本状态变化，from 为 null（行不存在）时不计
+    public void copyMoved(String from, String to) {
+        if (from != null && !from.equals(to)) {
+            copies(from, -1);
+            copies(to, 1);
+        }
+    }
+
+    public void loans(Date dueDate, long delta) {
+        add(Section.LOANS, toLocalDate(dueDate), delta);
+    }
+
+    public void readers(String readerType, long delta) {
+        add(Section.READERS, readerType, delta);
+    }
+
+    public void books(Integer categoryId, long delta) {
+        add(Section.BOOKS, categoryId == null ? null : categoryId.longValue(), delta);
+    }
+
+    /**
+     * 标记分区需要重新统计，同样在事务提交后生效
+     */
+    public void invalidate(Section section) {
+        TransactionUtil.afterCommit(() -> tallies.get(section).dirty = true);
+    }
+
+    /**
+     * 其他节点的变更：本节点不知道增量，标记受影响的分区
+     */
+    public void invalidate(ResourceVersions.Resource resource) {
+        switch (resource) {
+            case BOOK -> invalidate(Section.BOOKS);
+            // 借书、还书都会改副本状态
+            case BOOK_ITEM -> {
+                invalidate(Section.COPIES);
+                invalidate(Section.LOANS);
+            }
+            case READER -> invalidate(Section.READERS);
+            // 续借只改应还日期，不经过副本
+            case BORROW_RECORD -> invalidate(Section.LOANS);
+            default -> {
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Section section : Section.values()) {
+            invalidate(section);
+        }
+    }
+
+    /**
+     * 重新统计所有脏分区，返回计数与 SQL 结果不一致的分区
+     */
+    public List<Section> reconcileDirty() {
+        List<Section> drifted = new ArrayList<>();
+        for (Section section : Section.values()) {
+            if (tallies.get(section).dirty && reconcile(section)) {
+                drifted.add(section);
+            }
+        }
+        return drifted;
+    }
+
+    public Map<String, Object> summary() {
+        Map<Object, Long> copies = tallies.get(Section.COPIES).snapshot();
+        Map<Object, Long> loans = tallies.get(Section.LOANS).snapshot();
+        Map<Object, Long> readers = tallies.get(Section.READERS).snapshot();
+        Map<Object, Long> books = tallies.get(Section.BOOKS).snapshot();
+
+        Map<String, Object> copyCounts = new LinkedHashMap<>();
+        long copyTotal = 0;
+        for (String status : COPY_STATUSES) {
+            long count = copies.getOrDefault(status, 0L);
+            if (count != 0 || !"unknown".equals(status)) {
+                copyCounts.put(status, count);
+            }
+            copyTotal += count;
+        }
+        copyCounts.put("total", copyTotal);
+
+        LocalDate today = LocalDate.now(clock);
+        long active = 0;
+        long overdue = 0;
+        for (Map.Entry<Object, Long> entry : loans.entrySet()) {
+            active += entry.getValue();
+            if (entry.getKey() instanceof LocalDate due && due.isBefore(today)) {
+                overdue += entry.getValue();
+            }
+        }
+        Map<String, Object> loanCounts = new LinkedHashMap<>();
+        loanCounts.put("active", active);
+        loanCounts.put("overdue", overdue);
+
+        Map<String, Object> readerCounts = new LinkedHashMap<>();
+        long readerTotal = 0;
+        for (String type : List.of("学生", "教师")) {
+            long count = readers.getOrDefault(type, 0L);
+            readerCounts.put(type, count);
+            readerTotal += count;
+        }
+        readerCounts.put("total", readerTotal);
+
+        // 分类名称走分类的二级缓存
+        List<Map<String, Object>> categories = new ArrayList<>();
+        long titles = 0;
+        for (Category category : categoryService.findAll()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", category.getId());
+            row.put("name", category.getName());
+            row.put("books", books.getOrDefault(category.getId(), 0L));
+            categories.add(row);
+        }
+        for (long count : books.values()) {
+            titles += count;
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("titles", titles);
+        summary.put("copies", copyCounts);
+        summary.put("loans", loanCounts);
+        summary.put("readers", readerCounts);
+        summary.put("categories", categories);
+        // 最早一次校准的时间，为 null 说明启动后还没有校准完
+        Long reconciledAt = null;
+        for (Tally tally : tallies.values()) {
+            if (tally.reconciledAt == 0) {
+                reconciledAt = null;
+                break;
+            }
+            reconciledAt = reconciledAt == null ? tally.reconciledAt : Math.min(reconciledAt, tally.reconciledAt);
+        }
+        summary.put("reconciledAt", reconciledAt == null ? null : new Date(reconciledAt));
+        return summary;
+    }
+
+    private boolean reconcile(Section section) {
+        return switch (section) {
+            case COPIES -> reconcile(section, statsMapper::countCopiesByStatus, key -> key);
+            case LOANS -> reconcile(section, statsMapper::countLoansByDueDate, StatsService::toLocalDate);
+            case READERS -> reconcile(section, statsMapper::countReadersByType, key -> key);
+            case BOOKS -> reconcile(section, statsMapper::countBooksByCategory,
+                    key -> key == null ? null : ((Number) key).longValue());
+        };
+    }
+
+    private boolean reconcile(Section section, Supplier<List<Map<String, Object>>> query, Function<Object, Object> keyMapper) {
+        Tally tally = tallies.get(section);
+        Map<Object, Long> before = tally.begin();
+        List<Map<String, Object>> rows;
+        try {
+            rows = query.get();
+        } catch (RuntimeException e) {
+            tally.abort();
+            throw e;
+        }
+        Map<Object, Long> counted = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            counted.merge(keyMapper.apply(row.get("statKey")), ((Number) row.get("total")).longValue(), Long::sum);
+        }
+        tally.finish(counted);
+        before.values().removeIf(count -> count == 0);
+        return !before.equals(counted);
+    }
+
+    private void add(Section section, Object key, long delta) {
+        if (delta != 0) {
+            TransactionUtil.afterCommit(() -> tallies.get(section).add(key, delta));
+        }
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        return ((Date) value).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * 一个分区的计数。校准期间提交的增量同时记入 journal，SQL 结果出来后再补上，
+     * 避免被校准覆盖。提交恰好跨过校准开始时刻的增量可能重复计入，下次校准修正
+     */
+    private static final class Tally {
+        private Map<Object, Long> counts = new HashMap<>();
+        private Map<Object, Long> journal;
+        private volatile boolean dirty = true;
+        private volatile long reconciledAt;
+
+        synchronized void add(Object key, long delta) {
+            counts.merge(key, delta, Long::sum);
+            if (journal != null) {
+                journal.merge(key, delta, Long::sum);
+            }
+        }
+
+        synchronized Map<Object, Long> snapshot() {
+            return new HashMap<>(counts);
+        }
+
+        synchronized Map<Object, Long> begin() {
+            // 先清标记，校准期间再次失效的会在下一轮处理
+            dirty = false;
+            journal = new HashMap<>();
+            return new HashMap<>(counts);
+        }
+
+        synchronized void abort() {
+            journal = null;
+            dirty = true;
+        }
+
+        synchronized void finish(Map<Object, Long> counted) {
+            Map<Object, Long> merged = new HashMap<>(counted);
+            journal.forEach((key, delta) -> merged.merge(key, delta, Long::sum));
+            counts = merged;
+            journal = null;
+            reconciledAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.cangli.service;
+
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.SyncMapper;
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BookItem;
+import com.cangli.pojo.Category;
+import com.cangli.pojo.SyncTombstone;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * 增量同步：book、book_items、categories 的每次写入都把 row_version 设为当时的数据库时间（微秒），
+ * 客户端带上次拿到的游标请求，只返回之后变化的行。软删除的行本身就是墓碑，
+ * 物理删除（删除分类、删除副本、墓碑压缩）另记到 sync_tombstone。
+ * <p>
+ * 行版本在写入时取值，但事务提交顺序不定，因此返回的游标只推进到宽限期之前，
+ * 宽限期内变化的行下次会再发一遍，客户端按 id 覆盖即可。
+ * <p>
+ * 下载可能很慢（离线终端的网络），因此不在事务里边查边写：按 (row_version, id) 键集分页，
+ * 每页一条自动提交的短查询，写出这一页时不占用连接，也不持有 InnoDB 的读视图。
+ * 上界固定为开始时的数据库时间，下载期间再变化的行版本更大，由下一次同步返回
+ */
+@Service
+public class SyncService {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+
+    private static final Map<String, String> TYPES = Map.of(
+            ResourceVersions.Resource.CATEGORY.name(), "category",
+            ResourceVersions.Resource.BOOK.name(), "book",
+            ResourceVersions.Resource.BOOK_ITEM.name(), "bookItem");
+
+    @Autowired
+    private SyncMapper syncMapper;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Value("${bookmanager.sync.grace-seconds:30}")
+    private int graceSeconds;
+
+    // 墓碑保留天数，游标早于此的客户端需要全量同步
+    @Value("${bookmanager.sync.tombstone-retention-days:30}")
+    private int retentionDays;
+
+    // 每页行数
+    @Value("${bookmanager.sync.page-size:500}")
+    private int pageSize;
+
+    private JsonMapper lineMapper;
+
+    // 同步数据按行计费，不输出值为 null 的属性（如 Book 的 category、bookItems）
+    @PostConstruct
+    void init() {
+        lineMapper = jsonMapper.rebuild()
+                .changeDefaultPropertyInclusion(incl -> incl.withValueInclusion(JsonInclude.Include.NON_NULL))
+                .build();
+        pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * 以 NDJSON 流式输出 since 之后的变更：
+     * 第一行 begin（reset 为 true 时客户端应先清空本地数据），中间每行一个 upsert 或 delete，
+     * 最后一行 end 的 version 即下次请求用的 since。没有收到 end 行说明传输中断，客户端应丢弃本次结果
+     */
+    public void stream(Long since, OutputStream out) {
+        long watermark = syncMapper.watermark(graceSeconds);
+        long until = syncMapper.watermark(0);
+        long horizon = watermark - TimeUnit.DAYS.toMicros(retentionDays);
+        boolean reset = since == null || since < horizon;
+        long from = reset ? -1 : since;
+
+        try (SequenceWriter writer = lineMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            writer.write(new Line("begin", null, null, reset ? null : since, null, reset));
+            copyPages(writer, from, (afterVersion, afterId) -> syncMapper.findCategories(afterVersion, afterId, until, pageSize),
+                    Category::getRowVersion, Category::getId,
+                    category -> writer.write(Line.upsert("category", category)));
+            copyPages(writer, from, (afterVersion, afterId) -> syncMapper.findBooks(afterVersion, afterId, until, reset, pageSize),
+                    Book::getRowVersion, Book::getId, book -> {
+                        if (book.getIsDeleted() != null && book.getIsDeleted() == 1) {
+                            writer.write(Line.delete("book", book.getId(), book.getRowVersion()));
+                        } else {
+                            writer.write(Line.upsert("book", book));
+                        }
+                    });
+            copyPages(writer, from, (afterVersion, afterId) -> syncMapper.findBookItems(afterVersion, afterId, until, reset, pageSize),
+                    BookItem::getRowVersion, BookItem::getId, item -> {
+                        if ("deleted".equals(item.getStatus())) {
+                            writer.write(Line.delete("bookItem", item.getId(), item.getRowVersion()));
+                        } else {
+                            writer.write(Line.upsert("bookItem", item));
+                        }
+                    });
+            if (!reset) {
+                copyTombstones(writer, from, until, tombstone -> {
+                    String type = TYPES.get(tombstone.getResource());
+                    if (type != null) {
+                        writer.write(Line.delete(type, tombstone.getEntityId(), tombstone.getRowVersion()));
+                    }
+                });
+            }
+            writer.write(new Line("end", null, null, Math.max(from, watermark), null, null));
+            // 分隔符只写在两行之间，补上最后一个换行
+            writer.flush();
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 逐页查询并写出，查询返回后连接即归还；每页写完刷出，客户端尽早收到数据
+    private <T> void copyPages(SequenceWriter writer, long from, PageQuery<T> query, ToLongFunction<T> versionOf, ToLongFunction<T> idOf,
+                               Consumer<T> write) {
+        long afterVersion = from;
+        long afterId = -1;
+        while (true) {
+            List<T> rows = query.find(afterVersion, afterId);
+            rows.forEach(write);
+            writer.flush();
+            if (rows.size() < pageSize) {
+                return;
+            }
+            T last = rows.get(rows.size() - 1);
+            afterVersion = versionOf.applyAsLong(last);
+            afterId = idOf.applyAsLong(last);
+        }
+    }
+
+    private void copyTombstones(SequenceWriter writer, long from, long until, Consumer<SyncTombstone> write) {
+        long afterVersion = from;
+        String afterResource = "";
+        long afterId = -1;
+        while (true) {
+            List<SyncTombstone> rows = syncMapper.findTombstones(afterVersion, afterResource, afterId, until, pageSize);
+            rows.forEach(write);
+            writer.flush();
+            if (rows.size() < pageSize) {
+                return;
+            }
+            SyncTombstone last = rows.get(rows.size() - 1);
+            afterVersion = last.getRowVersion();
+            afterResource = last.getResource();
+            afterId = last.getEntityId();
+        }
+    }
+
+    /**
+     * 物理删除前调用，须和删除在同一事务内
+     */
+    public void tombstone(ResourceVersions.Resource resource, List<? extends Number> ids) {
+        if (!ids.isEmpty()) {
+            syncMapper.insertTombstones(resource.name(), ids);
+        }
+    }
+
+    /**
+     * 删除超过保留期的墓碑。多保留一天，保证通过了 stream 中保留期检查的游标之后的墓碑都还在
+     */
+    public int pruneTombstones() {
+        long cutoff = syncMapper.watermark(0) - TimeUnit.DAYS.toMicros(retentionDays + 1L);
+        return syncMapper.deleteTombstonesBefore(cutoff);
+    }
+
+    @FunctionalInterface
+    private interface PageQuery<T> {
+        List<T> find(long afterVersion, long afterId);
+    }
+
+    private record Line(String op, String type, Object id, Long version, Object data, Boolean reset) {
+        static Line upsert(String type, Object data) {
+            return new Line("upsert", type, null, null, data, null);
+        }
+
+        static Line delete(String type, Object id, Long version) {
+            return new Line("delete", type, id, version, null, null);
+        }
+    }
+}
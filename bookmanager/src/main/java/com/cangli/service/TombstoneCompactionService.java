@@ -0,0 +1,79 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.mapper.BookMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * 墓碑压缩：软删除的图书和状态为 deleted 的副本，在热表中已没有借阅记录后，
+ * 分批移入归档表，避免热表和索引被已删除的行拖大
+ */
+@Service
+public class TombstoneCompactionService {
+    @Autowired
+    private BookMapper bookMapper;
+    @Autowired
+    private BookItemMapper bookItemMapper;
+    @Autowired
+    private ChangeLog changeLog;
+    @Autowired
+    private SyncService syncService;
+    @Autowired
+    private StatsService statsService;
+
+    @Value("${bookmanager.compaction.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 压缩一批已删除的副本，返回移走的条数
+     */
+    @Transactional
+    public int compactItemBatch() {
+        List<Integer> ids = bookItemMapper.findCompactableIds(batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = bookItemMapper.copyToArchive(ids);
+        int deleted = bookItemMapper.deleteArchived(ids);
+        if (copied != deleted) {
+            // 期间有副本被恢复或借出，回滚等待下次
+            throw new IllegalStateException("副本压缩条数不一致: 复制 " + copied + " 条, 删除 " + deleted + " 条");
+        }
+        // 热表中的软删除行没有了，离线客户端改从 sync_tombstone 得知删除
+        syncService.tombstone(ResourceVersions.Resource.BOOK_ITEM, ids);
+        // 图书列表里附带了全部副本，移走后列表内容会变化
+        changeLog.record(ResourceVersions.Resource.BOOK_ITEM, null);
+        statsService.copies("deleted", -deleted);
+        return deleted;
+    }
+
+    /**
+     * 压缩一批已软删除的图书，返回移走的条数。
+     * 图书的副本需要先被压缩掉，所以应在副本之后执行
+     */
+    @Transactional
+    public int compactBookBatch() {
+        List<Long> ids = bookMapper.findCompactableIds(batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = bookMapper.copyToArchive(ids);
+        int deleted = bookMapper.deleteArchived(ids);
+        if (copied != deleted) {
+            throw new IllegalStateException("图书压缩条数不一致: 复制 " + copied + " 条, 删除 " + deleted + " 条");
+        }
+        syncService.tombstone(ResourceVersions.Resource.BOOK, ids);
+        return deleted;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
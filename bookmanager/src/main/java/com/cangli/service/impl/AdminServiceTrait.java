@@ -6,5 +6,4 @@ import java.util.List;
 public interface AdminServiceTrait {
     Admin findById(Integer id);
     List<Admin> findAll();
-    Admin findByUsernameAndPassword(String username, String password);
 }
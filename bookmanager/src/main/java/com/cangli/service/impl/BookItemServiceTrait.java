@@ -1,6 +1,7 @@
 package com.cangli.service.impl;
 
 import com.cangli.pojo.BookItem;
+import tools.jackson.databind.JsonNode;
 
 import java.util.List;
 
@@ -14,6 +15,10 @@ public interface BookItemServiceTrait {
 
     void updateStatus(Integer id, String status);
 
+    BookItem lockById(Integer id);
+
+    boolean changeStatus(Integer id, String from, String status);
+
     void batchUpdateStatus(List<Integer> ids, String status);
 
     void batchInsert(List<BookItem> bookItems);
@@ -24,6 +29,7 @@ public interface BookItemServiceTrait {
 
     // CRUD operations for individual BookItems
     List<BookItem> findAll();
+    List<JsonNode> findAll(String fields);
 
     void updateBookItem(BookItem bookItem);
 
@@ -1,11 +1,13 @@
 package com.cangli.service.impl;
 
 import com.cangli.pojo.Book;
+import tools.jackson.databind.JsonNode;
 
 import java.util.List;
 
 public interface BookServiceTrait {
     List<Book> findAll();
+    List<JsonNode> findAll(String fields);
     void addBook(Book book);
     void updateBook(Book book);
     void deleteBook(Long id);
@@ -1,11 +1,15 @@
 package com.cangli.service.impl;
 
 import com.cangli.pojo.BorrowRecord;
+import tools.jackson.databind.JsonNode;
 
+import java.util.Date;
 import java.util.List;
 
 public interface BorrowRecordTrait {
     List<BorrowRecord> findAll();
+    List<JsonNode> findAll(String fields);
+    List<BorrowRecord> findHistory(Long readerId, Date from, Date to);
     BorrowRecord borrowBook(Long bookId, Long readerId, Integer itemId);
     BorrowRecord returnBook(Long recordId);
     BorrowRecord renewBook(Long recordId);
@@ -1,15 +1,17 @@
 package com.cangli.service.impl;
 
+import com.cangli.pojo.PageResult;
 import com.cangli.pojo.Reader;
-import com.cangli.pojo.User;
+import com.cangli.pojo.ReaderSummary;
+import tools.jackson.databind.JsonNode;
 
 import java.util.List;
 
 public interface ReaderServiceTrait {
     List<Reader> findAll();
+    List<JsonNode> findAll(String fields);
+    PageResult<ReaderSummary> search(String keyword, int page, int size);
     void addReader(Reader reader);
     void updateReader(Reader reader);
     void deleteReader(Long id);
-
-    User findByUserNameAndPassword(String username, String password);
 }
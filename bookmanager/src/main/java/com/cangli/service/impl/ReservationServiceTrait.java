@@ -0,0 +1,14 @@
+package com.cangli.service.impl;
+
+import com.cangli.pojo.Reservation;
+
+import java.util.List;
+
+public interface ReservationServiceTrait {
+    List<Reservation> findByReaderId(Long readerId);
+    Reservation reserve(Long bookId, Long readerId);
+    void cancel(Long id);
+    boolean allocate(Long bookId, Integer itemId);
+    boolean claim(Integer itemId, Long readerId);
+    void expireHold(Reservation reservation);
+}
@@ -0,0 +1,85 @@
+package com.cangli.utils;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 稀疏字段集：解析 ?fields=id,title,author，只查询和序列化这些字段。
+ * 字段名必须在白名单中，映射到的 SQL 列表达式由调用方提供，
+ * 因此可以放心地用 ${} 拼进 mapper XML 的列清单
+ */
+public class FieldSelection {
+
+    private static final int MAX_FIELDS = 32;
+
+    private final Set<String> fields;
+    private final List<String> columns;
+
+    private FieldSelection(Set<String> fields, List<String> columns) {
+        this.fields = fields;
+        this.columns = columns;
+    }
+
+    /**
+     * @param param   逗号分隔的字段名
+     * @param columns 字段名 -> SQL 列表达式（须包含 id）
+     * @param derived 不对应列、由服务层计算的字段
+     */
+    public static FieldSelection parse(String param, Map<String, String> columns, Set<String> derived) {
+        Set<String> fields = new LinkedHashSet<>();
+        // 始终返回主键，客户端需要它来关联数据
+        fields.add("id");
+        for (String field : param.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!columns.containsKey(name) && !derived.contains(name)) {
+                throw new IllegalArgumentException("不支持的字段: " + name);
+            }
+            fields.add(name);
+        }
+        if (fields.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("字段数量过多");
+        }
+        List<String> selected = new ArrayList<>(fields.size());
+        for (String name : fields) {
+            String column = columns.get(name);
+            if (column != null) {
+                selected.add(column);
+            }
+        }
+        return new FieldSelection(fields, selected);
+    }
+
+    public boolean has(String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * 传给 mapper 的列表达式清单
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 只保留选中的字段，未选中的属性（包括值为 null 的）都不输出
+     */
+    public List<JsonNode> project(List<?> rows, JsonMapper jsonMapper) {
+        List<JsonNode> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            ObjectNode node = jsonMapper.valueToTree(row);
+            node.retain(fields);
+            result.add(node);
+        }
+        return result;
+    }
+}
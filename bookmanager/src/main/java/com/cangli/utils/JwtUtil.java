@@ -5,13 +5,22 @@ import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.*;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
+import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.Date;
 
 
 public class JwtUtil {
     private static final String SECRET = "secret";
-    public static String getToken(String username, String password, String role){
+
+    // 浏览器的 EventSource 不能设置请求头，事件流接口改用查询参数传 token
+    public static final String STREAM_PATH = "/bookitems/stream";
+    public static final String STREAM_TOKEN_PARAM = "access_token";
+
+    /**
+     * 签发 token。cred 为凭据戳（密码哈希的摘要），修改密码后旧 token 校验不过
+     */
+    public static String getToken(String username, String role, String cred){
 
         Algorithm algorithm = Algorithm.HMAC256(SECRET); // 使用HMAC256加密算法
         String token = JWT.create()
@@ -20,13 +29,29 @@ public class JwtUtil {
                 .withExpiresAt(new Date(System.currentTimeMillis()+7200*1000)) // token过期时间 2H
                 .withAudience("app") // 校验jwt的一方
                 .withClaim("username",username) // 自定义存储的数据
-                .withClaim("password", password)
                 .withClaim("role",role)
+                .withClaim("cred", cred)
                 .sign(algorithm); // token加签加密
 
         return token;
     }
 
+    /**
+     * 取请求携带的 token（不含 Bearer 前缀），没有时返回 null。
+     * 优先用 Authorization 头；只有 GET /bookitems/stream 接受 ?access_token=
+     */
+    public static String requestToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null) {
+            return header.startsWith("Bearer ") ? header.substring(7) : null;
+        }
+        if (STREAM_PATH.equals(request.getRequestURI()) && "GET".equals(request.getMethod())) {
+            String token = request.getParameter(STREAM_TOKEN_PARAM);
+            return token == null || token.isBlank() ? null : token;
+        }
+        return null;
+    }
+
     // 解析JWT
     public static DecodedJWT parseToken(String token) {
         Algorithm algorithm = Algorithm.HMAC256(SECRET);
@@ -0,0 +1,48 @@
+package com.cangli.utils;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+
+import java.util.Map;
+
+/**
+ * 姓名拼音首字母，用于按 "zs" 检索 "张三"
+ */
+public class PinyinUtil {
+
+    // 作姓氏时读音与常用读音不同的多音字，pinyin4j 的第一个读音不是姓氏读音
+    private static final Map<Character, Character> SURNAME_INITIALS = Map.of(
+            '曾', 'z', '单', 's', '解', 'x', '仇', 'q', '查', 'z',
+            '翟', 'z', '朴', 'p', '区', 'o', '乐', 'y', '缪', 'm');
+
+    private PinyinUtil() {
+    }
+
+    /**
+     * 汉字取第一个读音的首字母（首字按姓氏读音），英文字母和数字原样保留（转小写），其他字符忽略
+     */
+    public static String nameInitials(String name) {
+        if (name == null) {
+            return null;
+        }
+        String text = name.trim();
+        StringBuilder sb = new StringBuilder(text.length());
+        if (!text.isEmpty() && SURNAME_INITIALS.containsKey(text.charAt(0))) {
+            sb.append(SURNAME_INITIALS.get(text.charAt(0)));
+            text = text.substring(1);
+        }
+        for (char c : text.toCharArray()) {
+            if (c < 128) {
+                if (Character.isLetterOrDigit(c)) {
+                    sb.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            // 不指定输出格式时返回带声调数字的拼音，如 zhang1，首字母不受影响
+            String[] pinyin = PinyinHelper.toHanyuPinyinStringArray(c);
+            if (pinyin != null && pinyin.length > 0 && !pinyin[0].isEmpty()) {
+                sb.append(pinyin[0].charAt(0));
+            }
+        }
+        return sb.toString();
+    }
+}
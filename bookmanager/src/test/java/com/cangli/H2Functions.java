@@ -0,0 +1,19 @@
+package com.cangli;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * H2 缺少的 MariaDB 函数，由 schema-h2.sql 注册
+ */
+public final class H2Functions {
+
+    private H2Functions() {
+    }
+
+    // 与 MariaDB 一致：带小数秒的参数返回 DECIMAL，乘 1000000 不会溢出
+    public static BigDecimal unixTimestamp(Timestamp time) {
+        return BigDecimal.valueOf(Math.floorDiv(time.getTime(), 1000L))
+                .add(BigDecimal.valueOf(time.getNanos() / 1000, 6));
+    }
+}
@@ -0,0 +1,194 @@
+package com.cangli.analytics;
+
+import com.cangli.analytics.CirculationSnapshot.GroupBy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 写入后重新打开文件，检查各种分组和过滤的统计结果
+ */
+class CirculationSnapshotTest {
+
+    private static final int BLOCK_ROWS = CirculationFileWriter.BLOCK_ROWS;
+    private static final int FAR_FUTURE = day("2999-01-01");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyFileAggregatesToNothing() throws IOException {
+        CirculationSnapshot snapshot = write(writer -> {
+        });
+
+        assertThat(snapshot.getRows()).isZero();
+        for (GroupBy groupBy : GroupBy.values()) {
+            assertThat(snapshot.aggregate(groupBy, null, null, null, null, null)).isEmpty();
+            assertThat(snapshot.aggregate(groupBy, day("2024-01-01"), day("2025-01-01"), null, null, null)).isEmpty();
+        }
+    }
+
+    @Test
+    void everyGroupByRoundTrips() throws IOException {
+        CirculationSnapshot snapshot = write(CirculationSnapshotTest::sample);
+
+        assertThat(snapshot.getRows()).isEqualTo(4);
+        assertThat(groups(snapshot, GroupBy.CATEGORY, null, null)).containsOnly(
+                Map.entry("文学", row(2, 1, 25.0)),
+                Map.entry("科技", row(2, 1, null)));
+        assertThat(groups(snapshot, GroupBy.DEPT, null, null)).containsExactly(
+                Map.entry("一班", row(3, 1, 10.0)),
+                Map.entry("二班", row(1, 1, 40.0)));
+        assertThat(groups(snapshot, GroupBy.READER_TYPE, null, null)).containsExactly(
+                Map.entry("学生", row(3, 1, 10.0)),
+                Map.entry("教师", row(1, 1, 40.0)));
+        assertThat(groups(snapshot, GroupBy.WEEKDAY, null, null)).containsExactly(
+                Map.entry("周一", row(2, 1, 10.0)),
+                Map.entry("周二", row(2, 1, 40.0)));
+        assertThat(groups(snapshot, GroupBy.MONTH, null, null)).containsExactly(
+                Map.entry("2024-01", row(2, 1, 25.0)),
+                Map.entry("2024-02", row(2, 1, null)));
+    }
+
+    @Test
+    void dateAndDimensionFilters() throws IOException {
+        CirculationSnapshot snapshot = write(CirculationSnapshotTest::sample);
+
+        // [from, to)：包含 1 月 2 日，不含 2 月 6 日
+        Integer from = day("2024-01-02");
+        Integer to = day("2024-02-06");
+        assertThat(groups(snapshot, GroupBy.CATEGORY, from, to)).containsOnly(
+                Map.entry("文学", row(1, 1, 40.0)),
+                Map.entry("科技", row(1, 1, null)));
+        assertThat(groups(snapshot, GroupBy.MONTH, from, to)).containsExactly(
+                Map.entry("2024-01", row(1, 1, 40.0)),
+                Map.entry("2024-02", row(1, 1, null)));
+        assertThat(groups(snapshot, GroupBy.MONTH, day("2024-02-01"), null)).containsExactly(
+                Map.entry("2024-02", row(2, 1, null)));
+        assertThat(snapshot.aggregate(GroupBy.CATEGORY, to, from, null, null, null)).isEmpty();
+        assertThat(snapshot.aggregate(GroupBy.CATEGORY, from, from, null, null, null)).isEmpty();
+        assertThat(snapshot.aggregate(GroupBy.CATEGORY, day("2025-01-01"), null, null, null, null)).isEmpty();
+
+        assertThat(rows(snapshot.aggregate(GroupBy.DEPT, null, null, "科技", null, null))).containsExactly(
+                Map.entry("一班", row(2, 1, null)));
+        assertThat(rows(snapshot.aggregate(GroupBy.CATEGORY, null, null, null, "一班", "学生"))).containsOnly(
+                Map.entry("文学", row(1, 0, 10.0)),
+                Map.entry("科技", row(2, 1, null)));
+        assertThat(snapshot.aggregate(GroupBy.CATEGORY, null, null, "不存在", null, null)).isEmpty();
+    }
+
+    @Test
+    void blocksAreSkippedOnlyOutsideTheDateRange() throws IOException {
+        // 两个整块加一行：第一块都在 1 月 1 日，第二块 1 月 2 日，最后一行 1 月 3 日
+        int total = BLOCK_ROWS * 2 + 1;
+        int first = day("2024-01-01");
+        CirculationSnapshot snapshot = write(writer -> {
+            for (int i = 0; i < total; i++) {
+                writer.append(first + i / BLOCK_ROWS, FAR_FUTURE, -1, i % 2 == 0 ? "A" : "B", "一班", "学生");
+            }
+        });
+
+        assertThat(snapshot.getRows()).isEqualTo(total);
+        assertThat(groups(snapshot, GroupBy.CATEGORY, null, null)).containsOnly(
+                Map.entry("A", row(BLOCK_ROWS + 1, 0, null)),
+                Map.entry("B", row(BLOCK_ROWS, 0, null)));
+        assertThat(borrows(snapshot, first, first + 1)).isEqualTo(BLOCK_ROWS);
+        assertThat(borrows(snapshot, first + 1, first + 2)).isEqualTo(BLOCK_ROWS);
+        assertThat(borrows(snapshot, first + 1, null)).isEqualTo(BLOCK_ROWS + 1);
+        assertThat(borrows(snapshot, first + 2, null)).isEqualTo(1);
+        assertThat(borrows(snapshot, null, null)).isEqualTo(total);
+    }
+
+    @Test
+    void fullDictionaryRoundTripsAndOneMoreValueFails() throws IOException {
+        // 读者类型按一个字节编码，最多 256 个取值
+        CirculationSnapshot snapshot = write(writer -> {
+            for (int i = 0; i < 256; i++) {
+                writer.append(day("2024-01-01"), FAR_FUTURE, -1, "文学", "一班", "类型" + i);
+            }
+        });
+        List<Map<String, Object>> types = snapshot.aggregate(GroupBy.READER_TYPE, null, null, null, null, null);
+        assertThat(types).hasSize(256);
+        assertThat(rows(snapshot.aggregate(GroupBy.READER_TYPE, null, null, null, null, "类型255")))
+                .containsExactly(Map.entry("类型255", row(1, 0, null)));
+
+        try (CirculationFileWriter writer = new CirculationFileWriter(dir)) {
+            for (int i = 0; i < 256; i++) {
+                writer.append(day("2024-01-01"), FAR_FUTURE, -1, "文学", "一班", "类型" + i);
+            }
+            assertThatThrownBy(() -> writer.append(day("2024-01-01"), FAR_FUTURE, -1, "文学", "一班", "类型256"))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+        try (CirculationFileWriter writer = new CirculationFileWriter(dir)) {
+            for (int i = 0; i <= 0xFFFF; i++) {
+                writer.append(day("2024-01-01"), FAR_FUTURE, -1, "文学", "班级" + i, "学生");
+            }
+            assertThatThrownBy(() -> writer.append(day("2024-01-01"), FAR_FUTURE, -1, "文学", "班级65536", "学生"))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+        // 临时列文件都已删除，只剩最终文件
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactly("circulation.col");
+        }
+    }
+
+    // 1 月 1 日是周一：按期归还 10 天、逾期归还 40 天、超过应还日未还、未到应还日
+    private static void sample(CirculationFileWriter writer) throws IOException {
+        writer.append(day("2024-01-01"), day("2024-01-31"), day("2024-01-11"), "文学", "一班", "学生");
+        writer.append(day("2024-01-02"), day("2024-02-01"), day("2024-02-11"), "文学", "二班", "教师");
+        writer.append(day("2024-02-05"), day("2024-03-06"), -1, "科技", "一班", "学生");
+        writer.append(day("2024-02-06"), FAR_FUTURE, -1, "科技", "一班", "学生");
+    }
+
+    private CirculationSnapshot write(Rows rows) throws IOException {
+        Path file = dir.resolve("circulation.col");
+        try (CirculationFileWriter writer = new CirculationFileWriter(dir)) {
+            rows.append(writer);
+            writer.finish(file);
+        }
+        return CirculationSnapshot.open(file);
+    }
+
+    private static Map<String, List<Object>> groups(CirculationSnapshot snapshot, GroupBy groupBy, Integer from, Integer to) {
+        return rows(snapshot.aggregate(groupBy, from, to, null, null, null));
+    }
+
+    private static long borrows(CirculationSnapshot snapshot, Integer from, Integer to) {
+        return snapshot.aggregate(GroupBy.READER_TYPE, from, to, null, null, null).stream()
+                .mapToLong(row -> (Long) row.get("borrows"))
+                .sum();
+    }
+
+    // key -> [借阅次数, 逾期次数, 平均借阅天数]，保持结果顺序
+    private static Map<String, List<Object>> rows(List<Map<String, Object>> result) {
+        Map<String, List<Object>> rows = new LinkedHashMap<>();
+        for (Map<String, Object> row : result) {
+            rows.put((String) row.get("key"), Arrays.asList(row.get("borrows"), row.get("overdue"), row.get("avgLoanDays")));
+        }
+        return rows;
+    }
+
+    private static List<Object> row(long borrows, long overdue, Double avgLoanDays) {
+        return Arrays.asList(borrows, overdue, avgLoanDays);
+    }
+
+    private static int day(String date) {
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
+
+    private interface Rows {
+        void append(CirculationFileWriter writer) throws IOException;
+    }
+}
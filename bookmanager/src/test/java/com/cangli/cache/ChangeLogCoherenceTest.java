@@ -0,0 +1,166 @@
+package com.cangli.cache;
+
+import com.cangli.BookManagerApplication;
+import com.cangli.job.ChangeLogTailer;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.BorrowRecordMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BorrowRecord;
+import com.cangli.pojo.Reader;
+import com.cangli.service.AuthService;
+import com.cangli.service.BookService;
+import com.cangli.service.BorrowRecordService;
+import com.cangli.service.PasswordService;
+import com.cangli.service.ReaderService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 同一 JVM 中启动两个应用上下文（两个节点）共用一个库：
+ * 节点 A 的写操作经 change_log 让节点 B 的二级缓存和资源版本失效
+ */
+class ChangeLogCoherenceTest {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = start();
+        nodeB = start();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    void bookUpdateOnOneNodeInvalidatesTheOther() {
+        BookMapper mapperA = nodeA.getBean(BookMapper.class);
+        BookMapper mapperB = nodeB.getBean(BookMapper.class);
+        ResourceVersions versionsB = nodeB.getBean(ResourceVersions.class);
+
+        Book book = new Book();
+        book.setCode("C-001");
+        book.setTitle("旧书名");
+        book.setCategoryId(1);
+        book.setEntryDate(Date.valueOf("2024-09-01"));
+        book.setBorrowTimes(0);
+        mapperA.addBook(book);
+        assertThat(mapperB.findById(book.getId()).getTitle()).isEqualTo("旧书名");
+        String etagBefore = versionsB.etag(null, ResourceVersions.Resource.BOOK);
+
+        Book update = mapperA.findById(book.getId());
+        update.setTitle("新书名");
+        nodeA.getBean(BookService.class).updateBook(update);
+
+        // B 在轮询之前仍命中自己的缓存
+        assertThat(mapperB.findById(book.getId()).getTitle()).isEqualTo("旧书名");
+
+        nodeB.getBean(ChangeLogTailer.class).poll();
+
+        assertThat(mapperB.findById(book.getId()).getTitle()).isEqualTo("新书名");
+        assertThat(versionsB.etag(null, ResourceVersions.Resource.BOOK)).isNotEqualTo(etagBefore);
+    }
+
+    @Test
+    void passwordChangeOnOneNodeRevokesTokensOnTheOther() {
+        ReaderService readerServiceA = nodeA.getBean(ReaderService.class);
+        AuthService authB = nodeB.getBean(AuthService.class);
+        PasswordService passwords = nodeB.getBean(PasswordService.class);
+
+        Reader reader = new Reader();
+        reader.setName("张三");
+        reader.setGender("男");
+        reader.setReaderType("学生");
+        reader.setBorrowLimit(5);
+        reader.setBorrowedCount(0);
+        reader.setUsername("coherence");
+        reader.setPassword("old-secret");
+        readerServiceA.addReader(reader);
+        String stamp = passwords.stamp(nodeB.getBean(ReaderMapper.class).findByUsername("coherence").getPassword());
+        assertThat(authB.resolve("coherence", "reader", stamp)).isNotNull();
+
+        Reader update = nodeA.getBean(ReaderMapper.class).findById(reader.getId());
+        update.setPassword("new-secret");
+        readerServiceA.updateReader(update);
+
+        // 旧 token 在 B 上要等轮询到变更才失效
+        assertThat(authB.resolve("coherence", "reader", stamp)).isNotNull();
+
+        nodeB.getBean(ChangeLogTailer.class).poll();
+
+        assertThat(authB.resolve("coherence", "reader", stamp)).isNull();
+    }
+
+    @Test
+    void renewalOnOneNodeInvalidatesTheOther() {
+        JdbcTemplate jdbc = nodeA.getBean(JdbcTemplate.class);
+        jdbc.update("INSERT INTO book (code, title, category_id, entry_date) VALUES ('C-002', '续借测试', 1, '2024-09-01')");
+        long bookId = jdbc.queryForObject("SELECT id FROM book WHERE code = 'C-002'", Long.class);
+        jdbc.update("INSERT INTO book_items (book_id, barcode, status, entry_date) VALUES (?, 'C-002-1', 'available', '2024-09-01')", bookId);
+        int itemId = jdbc.queryForObject("SELECT id FROM book_items WHERE barcode = 'C-002-1'", Integer.class);
+        jdbc.update("INSERT INTO reader (name, gender, reader_type, borrow_limit, borrowed_count, username, password) "
+                + "VALUES ('李四', '男', '学生', 5, 0, 'renewal', 'secret')");
+        long readerId = jdbc.queryForObject("SELECT id FROM reader WHERE username = 'renewal'", Long.class);
+
+        BorrowRecordService serviceA = nodeA.getBean(BorrowRecordService.class);
+        BorrowRecordMapper mapperB = nodeB.getBean(BorrowRecordMapper.class);
+        BorrowRecord record = serviceA.borrowBook(bookId, readerId, itemId);
+        LocalDate due = day(record.getDueDate());
+        assertThat(day(mapperB.findById(record.getId()).getDueDate())).isEqualTo(due);
+
+        serviceA.renewBook(record.getId());
+
+        // B 在轮询之前仍命中自己的缓存
+        assertThat(day(mapperB.findById(record.getId()).getDueDate())).isEqualTo(due);
+
+        nodeB.getBean(ChangeLogTailer.class).poll();
+
+        assertThat(day(mapperB.findById(record.getId()).getDueDate())).isEqualTo(due.plusDays(30));
+        // B 上再续借一次，从 A 续借后的日期顺延
+        BorrowRecord renewed = nodeB.getBean(BorrowRecordService.class).renewBook(record.getId());
+        assertThat(day(renewed.getDueDate())).isEqualTo(due.plusDays(60));
+        assertThat(jdbc.queryForObject("SELECT due_date FROM borrow_record WHERE id = ?", Date.class, record.getId()).toLocalDate())
+                .isEqualTo(due.plusDays(60));
+    }
+
+    private static LocalDate day(java.util.Date date) {
+        return date instanceof Date sqlDate ? sqlDate.toLocalDate()
+                : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static ConfigurableApplicationContext start() {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BookManagerApplication.class)
+                .profiles("h2")
+                .web(WebApplicationType.NONE)
+                // 命令行参数优先于 application.yml；启动后的第一次定时轮询只初始化游标，之后由测试手动轮询
+                .run("--bookmanager.warmup.enabled=false", "--bookmanager.change-log.poll-millis=3600000");
+        // 等第一次轮询完成，否则它可能晚于测试里的写操作执行
+        ChangeLogTailer tailer = context.getBean(ChangeLogTailer.class);
+        await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> (Long) ReflectionTestUtils.getField(tailer, "cursor") >= 0);
+        return context;
+    }
+}
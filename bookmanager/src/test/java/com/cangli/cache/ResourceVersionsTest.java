@@ -0,0 +1,136 @@
+package com.cangli.cache;
+
+import com.cangli.config.VaryAcceptAdvice;
+import com.cangli.controller.CategoryController;
+import com.cangli.pojo.Category;
+import com.cangli.service.CategoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ResourceVersionsTest {
+
+    private ResourceVersions resourceVersions;
+
+    @BeforeEach
+    void setUp() {
+        resourceVersions = new ResourceVersions();
+    }
+
+    @Test
+    void encodingFollowsAcceptNegotiation() {
+        assertThat(ResourceVersions.encoding(null)).isEqualTo("json");
+        assertThat(ResourceVersions.encoding("*/*")).isEqualTo("json");
+        assertThat(ResourceVersions.encoding("application/json")).isEqualTo("json");
+        assertThat(ResourceVersions.encoding("application/cbor")).isEqualTo("cbor");
+        assertThat(ResourceVersions.encoding("application/x-jackson-smile, */*;q=0.1")).isEqualTo("smile");
+        assertThat(ResourceVersions.encoding("application/json;q=0.5, application/cbor")).isEqualTo("cbor");
+        assertThat(ResourceVersions.encoding("application/cbor;q=0, */*")).isEqualTo("json");
+        assertThat(ResourceVersions.encoding("not a media type")).isEqualTo("json");
+    }
+
+    @Test
+    void fieldsVariantIgnoresOrderAndDuplicates() {
+        assertThat(ResourceVersions.fieldsVariant(null)).isEmpty();
+        assertThat(ResourceVersions.fieldsVariant("title,author"))
+                .isEqualTo(ResourceVersions.fieldsVariant(" author , title,title,"));
+        assertThat(ResourceVersions.fieldsVariant("title")).isNotEqualTo(ResourceVersions.fieldsVariant("title,author"));
+        assertThat(ResourceVersions.fieldsVariant("ti\"tle")).doesNotContain("\"");
+    }
+
+    @Test
+    void etagChangesWithFieldsEncodingAndVersion() {
+        String plain = tag(null, null);
+        assertThat(tag("title", null)).isNotEqualTo(plain);
+        assertThat(tag(null, "application/cbor")).isNotEqualTo(plain);
+        assertThat(tag("title", "application/cbor")).isNotEqualTo(tag("title", "application/x-jackson-smile"));
+        assertThat(tag(null, "application/json")).isEqualTo(plain);
+
+        resourceVersions.bump(ResourceVersions.Resource.BOOK);
+        assertThat(tag(null, null)).isNotEqualTo(plain);
+    }
+
+    @Test
+    void notModifiedCarriesVaryAccept() {
+        String etag = tag("title", null);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/book");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(resourceVersions.checkNotModified(new ServletWebRequest(request, response), "title",
+                ResourceVersions.Resource.BOOK)).isTrue();
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getHeaders(HttpHeaders.VARY)).containsExactly(HttpHeaders.ACCEPT);
+
+        // 同样的 If-None-Match，换一种编码就不是同一个表示
+        MockHttpServletRequest cbor = new MockHttpServletRequest("GET", "/book");
+        cbor.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        cbor.addHeader(HttpHeaders.ACCEPT, "application/cbor");
+        assertThat(resourceVersions.checkNotModified(new ServletWebRequest(cbor, new MockHttpServletResponse()),
+                "title", ResourceVersions.Resource.BOOK)).isFalse();
+    }
+
+    @Test
+    void categoryListAnswersConditionalGetPerEncoding() throws Exception {
+        CategoryService categoryService = mock(CategoryService.class);
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("文学");
+        when(categoryService.findAll()).thenReturn(List.of(category));
+        CategoryController controller = new CategoryController();
+        ReflectionTestUtils.setField(controller, "categoryService", categoryService);
+        ReflectionTestUtils.setField(controller, "resourceVersions", resourceVersions);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(new VaryAcceptAdvice()).build();
+
+        MvcResult json = mvc.perform(get("/categories"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(json.getResponse().getHeaders(HttpHeaders.VARY)).containsExactly(HttpHeaders.ACCEPT);
+        String jsonTag = json.getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult cbor = mvc.perform(get("/categories").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/cbor"))
+                .andReturn();
+        String cborTag = cbor.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(cborTag).isNotEqualTo(jsonTag);
+
+        mvc.perform(get("/categories").header(HttpHeaders.IF_NONE_MATCH, jsonTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mvc.perform(get("/categories").accept("application/cbor").header(HttpHeaders.IF_NONE_MATCH, jsonTag))
+                .andExpect(status().isOk());
+        mvc.perform(get("/categories").accept("application/cbor").header(HttpHeaders.IF_NONE_MATCH, cborTag))
+                .andExpect(status().isNotModified());
+        // 两次 304 没有查库
+        verify(categoryService, times(3)).findAll();
+    }
+
+    private String tag(String fields, String accept) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/book");
+        if (accept != null) {
+            request.addHeader(HttpHeaders.ACCEPT, accept);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        resourceVersions.checkNotModified(new ServletWebRequest(request, response), fields, ResourceVersions.Resource.BOOK);
+        return response.getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,128 @@
+package com.cangli.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.cangli.pojo.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorTranslatorTest {
+
+    private final ErrorTranslator translator = new ErrorTranslator();
+    private final Logger logger = (Logger) LoggerFactory.getLogger(ErrorTranslator.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void attachAppender() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void detachAppender() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void sanitizeMatchesLegacyRegexOnKnownMessages() {
+        List<String> messages = List.of(
+                "库存不足",
+                "Could not open JDBC Connection; nested exception is java.sql.SQLException: timeout",
+                "see org.mariadb.jdbc.Driver\nsecond line com.cangli.Foo\rthird",
+                "java.",
+                "javax.sql is fine but java.lang is not",
+                "com",
+                "x".repeat(99) + "java.lang.String",
+                "x".repeat(98) + "java.lang.String",
+                "x".repeat(150),
+                "a org.b c\u0085com.d",
+                "");
+        for (String message : messages) {
+            assertThat(ErrorTranslator.sanitize(message)).as(message).isEqualTo(legacySanitize(message));
+        }
+        assertThat(ErrorTranslator.sanitize(null)).isEqualTo(legacySanitize(null));
+    }
+
+    @Test
+    void sanitizeMatchesLegacyRegexOnRandomMessages() {
+        String[] pieces = {"java.", "org.", "com.", "jav", "or", "co", ".", "\n", "\r", " ", "错误", " ", "x", "abc"};
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = random.nextInt(40);
+            for (int p = 0; p < parts; p++) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            String message = sb.toString();
+            assertThat(ErrorTranslator.sanitize(message)).as(message).isEqualTo(legacySanitize(message));
+        }
+    }
+
+    @Test
+    void unchangedMessageIsReturnedWithoutCopy() {
+        String message = "库存不足，无法借出";
+        assertThat(ErrorTranslator.stripTechnicalDetail(message)).isSameAs(message);
+    }
+
+    @Test
+    void translateKeepsLegacyMessagesWithStableCodes() {
+        Result illegal = translator.translate(new IllegalArgumentException("读者不存在"));
+        assertThat(illegal.getCode()).isEqualTo(40002);
+        assertThat(illegal.getMsg()).isEqualTo("请求参数无效：读者不存在");
+
+        Result npe = translator.translate(new NullPointerException("x"));
+        assertThat(npe.getCode()).isEqualTo(50001);
+        assertThat(npe.getMsg()).isEqualTo("系统内部错误，请稍后重试");
+
+        Result db = translator.translate(new DataAccessResourceFailureException("Connection refused"));
+        assertThat(db.getCode()).isEqualTo(50301);
+        assertThat(db.getMsg()).isEqualTo("数据库操作失败，请稍后重试");
+
+        Result other = translator.translate(new IllegalStateException("failed at com.cangli.service.BookService"));
+        assertThat(other.getCode()).isEqualTo(50000);
+        assertThat(other.getMsg()).isEqualTo("failed at 系统错误，请联系管理员");
+
+        Result empty = translator.translate(new IllegalStateException());
+        assertThat(empty.getMsg()).isEqualTo("系统发生未知错误，请联系管理员");
+    }
+
+    @Test
+    void repeatedErrorsAreLoggedOncePerWindow() {
+        for (int i = 0; i < 1000; i++) {
+            translator.translate(new IllegalStateException("数据库不可用"));
+        }
+        translator.translate(new IllegalStateException("另一种错误"));
+        translator.translate(new IllegalArgumentException("参数错误不记录"));
+
+        List<String> logged = new ArrayList<>();
+        for (ILoggingEvent event : appender.list) {
+            logged.add(event.getThrowableProxy().getMessage());
+        }
+        assertThat(logged).containsExactly("数据库不可用", "另一种错误");
+    }
+
+    // 原 GlobalExceptionHandler.handleAll 的实现
+    private static String legacySanitize(String message) {
+        if (message != null && !message.isEmpty()) {
+            if (message.length() > 100) {
+                message = message.substring(0, 100) + "...";
+            }
+            message = message.replaceAll("java\\..*", "系统错误");
+            message = message.replaceAll("org\\..*", "系统错误");
+            message = message.replaceAll("com\\..*", "系统错误");
+        } else {
+            message = "系统发生未知错误";
+        }
+        return message;
+    }
+}
@@ -0,0 +1,67 @@
+package com.cangli.config;
+
+import com.cangli.service.AuthService;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtAuthenticationFilterTest {
+
+    private AuthService authService;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        authService = new AuthService();
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "authService", authService);
+    }
+
+    @Test
+    void warmupTokenIsAcceptedForReadsOnly() throws Exception {
+        String token = authService.issueWarmupToken();
+
+        MockHttpServletRequest read = request("GET", "/reader/search", token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(read, new MockHttpServletResponse(), chain);
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(read.getAttribute("currentRole")).isEqualTo(AuthService.WARMUP_ROLE);
+
+        assertThat(status("POST", "/book", token)).isEqualTo(401);
+        assertThat(status("DELETE", "/book/1", token)).isEqualTo(401);
+    }
+
+    @Test
+    void warmupTokenStopsWorkingOnceRevoked() throws Exception {
+        String token = authService.issueWarmupToken();
+        authService.revokeWarmupToken();
+
+        assertThat(status("GET", "/categories", token)).isEqualTo(401);
+
+        // 重新签发后旧 token 也不再有效
+        String stale = authService.issueWarmupToken();
+        authService.issueWarmupToken();
+        assertThat(status("GET", "/categories", stale)).isEqualTo(401);
+    }
+
+    private int status(String method, String uri, String token) throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request(method, uri, token), response, chain);
+        return chain.getRequest() == null ? response.getStatus() : 200;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,198 @@
+package com.cangli.event;
+
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.pojo.BookItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookItemEventBusTest {
+
+    private BookItemMapper bookItemMapper;
+    private BookItemEventBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bookItemMapper = mock(BookItemMapper.class);
+        bus = new BookItemEventBus();
+        ReflectionTestUtils.setField(bus, "bookItemMapper", bookItemMapper);
+        ReflectionTestUtils.setField(bus, "sendTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(bus, "senderThreads", 4);
+        bus.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+    }
+
+    @Test
+    void slowSubscriberDoesNotDelayOthersAndIsDisconnected() throws Exception {
+        when(bookItemMapper.findByIds(anyList())).thenReturn(List.of(item(1, 3, "available")));
+        FakeClient slow = FakeClient.connect(bus.subscribe(null));
+        FakeClient fast = FakeClient.connect(bus.subscribe(null));
+        slow.block();
+
+        bus.publish(1);
+        bus.flush();
+
+        assertThat(fast.next()).contains("id=1").contains("available");
+        assertThat(slow.sending.await(1, TimeUnit.SECONDS)).isTrue();
+
+        // 单次发送超时后移出订阅者，之后的事件照常发给其他人
+        Thread.sleep(300);
+        bus.publish(1);
+        bus.flush();
+        assertThat(bus.getSubscriberCount()).isEqualTo(1);
+        assertThat(fast.next()).contains("id=1");
+
+        slow.release();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> slow.completed);
+    }
+
+    @Test
+    void backloggedSubscriberIsDropped() throws Exception {
+        FakeClient slow = FakeClient.connect(bus.subscribe(3L));
+        slow.block();
+        bus.heartbeat();
+        assertThat(slow.sending.await(1, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i <= BookItemEventBus.MAX_QUEUED_EVENTS; i++) {
+            bus.heartbeat();
+        }
+        assertThat(bus.getSubscriberCount()).isZero();
+        assertThat(bus.getSubscribedBookCount()).isZero();
+        slow.release();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> slow.completed);
+    }
+
+    @Test
+    void emptyPerBookSetsAreRemoved() throws Exception {
+        SseEmitter first = bus.subscribe(5L);
+        SseEmitter second = bus.subscribe(5L);
+        FakeClient.connect(first);
+        FakeClient.connect(second);
+        assertThat(bus.getSubscribedBookCount()).isEqualTo(1);
+
+        first.complete();
+        assertThat(bus.getSubscribedBookCount()).isEqualTo(1);
+        second.complete();
+        assertThat(bus.getSubscribedBookCount()).isZero();
+        assertThat(bus.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    void insertedAndDeletedCopiesArePushedPerBook() throws Exception {
+        when(bookItemMapper.findByBookId(7L)).thenReturn(List.of(item(70, 7, "available"), item(71, 7, "available")));
+        FakeClient book7 = FakeClient.connect(bus.subscribe(7L));
+        FakeClient book8 = FakeClient.connect(bus.subscribe(8L));
+
+        bus.publishBook(7L);
+        bus.publishRemoved(99, 7L);
+        bus.flush();
+
+        String event = book7.next();
+        assertThat(event).contains("id=70").contains("id=71").contains("id=99").contains("status=deleted");
+        assertThat(book8.events).isEmpty();
+    }
+
+    private static BookItem item(int id, int bookId, String status) {
+        BookItem item = new BookItem();
+        item.setId(id);
+        item.setBookId(bookId);
+        item.setStatus(status);
+        return item;
+    }
+
+    /**
+     * 代替 Servlet 容器的 SSE 连接：记录写出的事件，可以让写操作卡住模拟慢客户端
+     */
+    private static final class FakeClient {
+        private final LinkedBlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+        private volatile Runnable onCompletion;
+        private volatile boolean completed;
+
+        static FakeClient connect(SseEmitter emitter) throws Exception {
+            FakeClient client = new FakeClient();
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[]{handlerType},
+                    (proxy, method, args) -> client.handle(method, args));
+            Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+            initialize.setAccessible(true);
+            initialize.invoke(emitter, handler);
+            return client;
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(2, TimeUnit.SECONDS);
+            assertThat(event).as("event").isNotNull();
+            return event;
+        }
+
+        private Object handle(Method method, Object[] args) throws InterruptedException {
+            switch (method.getName()) {
+                case "send" -> {
+                    sending.countDown();
+                    CountDownLatch current = gate;
+                    if (current != null) {
+                        current.await();
+                    }
+                    StringBuilder sb = new StringBuilder();
+                    if (args[0] instanceof Set<?> data) {
+                        for (Object part : data) {
+                            sb.append(((ResponseBodyEmitter.DataWithMediaType) part).getData());
+                        }
+                    } else {
+                        sb.append(args[0]);
+                    }
+                    events.add(sb.toString());
+                }
+                case "complete", "completeWithError" -> {
+                    completed = true;
+                    if (onCompletion != null) {
+                        onCompletion.run();
+                    }
+                }
+                case "onCompletion" -> onCompletion = (Runnable) args[0];
+                case "hashCode" -> {
+                    return System.identityHashCode(this);
+                }
+                case "equals" -> {
+                    return false;
+                }
+                case "toString" -> {
+                    return "FakeClient";
+                }
+                default -> {
+                }
+            }
+            return null;
+        }
+    }
+}
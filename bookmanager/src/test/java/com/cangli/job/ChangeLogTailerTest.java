@@ -0,0 +1,94 @@
+package com.cangli.job;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.ChangeLogMapper;
+import com.cangli.pojo.ChangeLogEntry;
+import com.cangli.service.BorrowCounterService;
+import com.cangli.service.ReservationService;
+import com.cangli.service.StatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeLogTailerTest {
+
+    private ChangeLogMapper changeLogMapper;
+    private ChangeLog changeLog;
+    private ReservationService reservationService;
+    private BorrowCounterService borrowCounterService;
+    private ChangeLogTailer tailer;
+
+    @BeforeEach
+    void setUp() {
+        changeLogMapper = mock(ChangeLogMapper.class);
+        changeLog = mock(ChangeLog.class);
+        reservationService = mock(ReservationService.class);
+        borrowCounterService = mock(BorrowCounterService.class);
+        when(changeLog.getNodeId()).thenReturn("local");
+        when(changeLogMapper.maxId()).thenReturn(0L);
+
+        tailer = new ChangeLogTailer();
+        ReflectionTestUtils.setField(tailer, "changeLogMapper", changeLogMapper);
+        ReflectionTestUtils.setField(tailer, "changeLog", changeLog);
+        ReflectionTestUtils.setField(tailer, "statsService", mock(StatsService.class));
+        ReflectionTestUtils.setField(tailer, "reservationService", reservationService);
+        ReflectionTestUtils.setField(tailer, "borrowCounterService", borrowCounterService);
+        ReflectionTestUtils.setField(tailer, "batchSize", 500);
+        tailer.poll();
+    }
+
+    @Test
+    void remoteReservationChangesInvalidateThatBooksQueue() {
+        when(changeLogMapper.findSince(anyLong(), anyInt(), anyInt())).thenReturn(List.of(
+                entry(1, "RESERVATION", 3L, "other"),
+                entry(2, "RESERVATION", 4L, "local"),
+                entry(3, "BOOK", 9L, "other")));
+        tailer.poll();
+
+        verify(reservationService).invalidateQueue(3L);
+        verify(reservationService, never()).invalidateQueue(4L);
+        verify(changeLog).applyRemote(ResourceVersions.Resource.RESERVATION);
+        verify(changeLog).applyRemote(ResourceVersions.Resource.BOOK);
+    }
+
+    @Test
+    void remoteBookChangesReconcilePendingBorrowCounts() {
+        when(changeLogMapper.findSince(anyLong(), anyInt(), anyInt())).thenReturn(List.of(
+                entry(1, "BOOK", 3L, "other"),
+                entry(2, "BOOK", 4L, "local"),
+                entry(3, "BOOK", 5L, "other")));
+        tailer.poll();
+
+        verify(borrowCounterService).reconcile(3L);
+        verify(borrowCounterService).reconcile(5L);
+        verify(borrowCounterService, never()).reconcile(4L);
+
+        when(changeLogMapper.findSince(anyLong(), anyInt(), anyInt())).thenReturn(List.of(
+                entry(4, "BOOK", null, "other"),
+                entry(5, "BOOK", 6L, "other")));
+        tailer.poll();
+
+        verify(borrowCounterService).reconcile(null);
+        verify(borrowCounterService, never()).reconcile(6L);
+    }
+
+    private static ChangeLogEntry entry(long id, String resource, Long entityId, String nodeId) {
+        ChangeLogEntry entry = new ChangeLogEntry();
+        entry.setId(id);
+        entry.setResource(resource);
+        entry.setEntityId(entityId);
+        entry.setNodeId(nodeId);
+        entry.setSettled(true);
+        return entry;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cangli.job;
+
+import com.cangli.pojo.Book;
+import com.cangli.pojo.PageResult;
+import com.cangli.pojo.ReaderSummary;
+import com.cangli.service.AuthService;
+import com.cangli.service.BookService;
+import com.cangli.service.BorrowArchiveService;
+import com.cangli.service.CategoryService;
+import com.cangli.service.ReaderService;
+import com.cangli.service.RecommendationService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地 HttpServer 代替本机的 Web 服务器，记录回放的请求
+ */
+class StartupWarmupTest {
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> tokens = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private volatile int readStatus = 200;
+
+    private AuthService authService;
+    private StartupWarmup warmup;
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        authService = mock(AuthService.class);
+        when(authService.issueWarmupToken()).thenReturn("service-token");
+        when(authService.issueWarmupPassword()).thenReturn("one-time-secret");
+        BookService bookService = mock(BookService.class);
+        when(bookService.findAll()).thenReturn(books(20));
+        ReaderSummary reader = new ReaderSummary();
+        reader.setId(7L);
+        ReaderService readerService = mock(ReaderService.class);
+        when(readerService.search(null, 1, 1)).thenReturn(new PageResult<>(1, 1, 1, List.of(reader)));
+        BorrowArchiveService borrowArchiveService = mock(BorrowArchiveService.class);
+        when(borrowArchiveService.cutoff()).thenReturn(Date.from(
+                LocalDate.of(2025, 10, 19).atTime(13, 0).atZone(ZoneId.systemDefault()).toInstant()));
+
+        warmup = new StartupWarmup();
+        ReflectionTestUtils.setField(warmup, "defaultPool", pool());
+        ReflectionTestUtils.setField(warmup, "checkoutPool", pool());
+        ReflectionTestUtils.setField(warmup, "categoryService", mock(CategoryService.class));
+        ReflectionTestUtils.setField(warmup, "bookService", bookService);
+        ReflectionTestUtils.setField(warmup, "recommendationService", mock(RecommendationService.class));
+        ReflectionTestUtils.setField(warmup, "readerService", readerService);
+        ReflectionTestUtils.setField(warmup, "borrowArchiveService", borrowArchiveService);
+        ReflectionTestUtils.setField(warmup, "authService", authService);
+        ReflectionTestUtils.setField(warmup, "jsonMapper", JsonMapper.builder().build());
+        ReflectionTestUtils.setField(warmup, "environment",
+                new MockEnvironment().withProperty("local.server.port", Integer.toString(server.getAddress().getPort())));
+        ReflectionTestUtils.setField(warmup, "enabled", true);
+        ReflectionTestUtils.setField(warmup, "timeoutMillis", 10000L);
+        ReflectionTestUtils.setField(warmup, "connections", 2);
+        ReflectionTestUtils.setField(warmup, "hotBooks", 10);
+        ReflectionTestUtils.setField(warmup, "rounds", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void replaysBoundedReadsWithTheServicePrincipal() {
+        warmup.run(new DefaultApplicationArguments());
+
+        List<String> reads = new ArrayList<>(requests);
+        assertThat(reads.remove(0)).isEqualTo("POST /login");
+        // 用一次性密码登录预热身份，走真实的密码校验
+        assertThat(bodies).singleElement().asString()
+                .contains("\"username\":\"" + AuthService.WARMUP_USERNAME + "\"", "\"password\":\"one-time-secret\"");
+        // 3 轮，每轮 3 个固定接口、1 次借阅历史加 5 本热门图书
+        assertThat(reads).hasSize(27).allMatch(request -> request.startsWith("GET "));
+        assertThat(reads).contains("GET /categories", "GET /reader/search?page=1&size=20",
+                "GET /book?fields=id,title,author,availableCount",
+                // 归档截止日期的第二天起，只查热表
+                "GET /borrow/history?readerId=7&from=2025-10-20",
+                "GET /book/20/also-borrowed?limit=10", "GET /book/16/also-borrowed?limit=10");
+        // 不拉全量列表
+        assertThat(reads).noneMatch(request -> request.equals("GET /book") || request.equals("GET /borrow")
+                || request.startsWith("GET /borrow?") || request.startsWith("GET /bookitems") || request.equals("GET /reader"));
+        assertThat(tokens).hasSize(27).containsOnly("Bearer service-token");
+        verify(authService).revokeWarmupToken();
+
+        assertThat(warmup.getReport().keySet()).containsExactly("pool", "catalog", "requests");
+        assertThat(warmup.getTotalMillis()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void stopsReplayingOnceRateLimited() {
+        readStatus = 429;
+
+        warmup.run(new DefaultApplicationArguments());
+
+        assertThat(requests).containsExactly("POST /login", "GET /categories");
+        verify(authService).revokeWarmupToken();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                + (query == null ? "" : "?" + query));
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization != null) {
+            tokens.add(authorization);
+        }
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (body.length > 0) {
+                bodies.add(new String(body, StandardCharsets.UTF_8));
+            }
+            exchange.sendResponseHeaders("GET".equals(exchange.getRequestMethod()) ? readStatus : 200, -1);
+        }
+    }
+
+    // 借阅次数与 ID 相同，ID 越大越热门
+    private static List<Book> books(int count) {
+        return LongStream.rangeClosed(1, count).mapToObj(id -> {
+            Book book = new Book();
+            book.setId(id);
+            book.setBorrowTimes((int) id);
+            return book;
+        }).toList();
+    }
+
+    private static HikariDataSource pool() throws SQLException {
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getMaximumPoolSize()).thenReturn(5);
+        when(pool.getConnection()).thenReturn(mock(Connection.class));
+        return pool;
+    }
+}
@@ -0,0 +1,110 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.Book;
+import com.cangli.pojo.BorrowRecord;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BookMapperTest {
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void addBorrowTimesAppliesEveryDeltaInTheBatch() {
+        Long first = addBook("T-001", 12);
+        Long second = addBook("T-002", null);
+        Long untouched = addBook("T-003", 4);
+        long versionBefore = rowVersion(first);
+
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        deltas.put(first, 3L);
+        deltas.put(second, 1L);
+        bookMapper.addBorrowTimes(deltas);
+
+        assertThat(borrowTimes(first)).isEqualTo(15);
+        assertThat(borrowTimes(second)).isEqualTo(1);
+        assertThat(borrowTimes(untouched)).isEqualTo(4);
+        assertThat(rowVersion(first)).isGreaterThan(versionBefore);
+    }
+
+    @Test
+    void uncountedRecordsAreFlushedIntoBorrowTimes() {
+        Long book = addBook("T-010", 0);
+        Long other = addBook("T-011", 0);
+        addBorrowRecord(book);
+        addBorrowRecord(book);
+        addBorrowRecord(other);
+
+        // 与 BorrowCounterService.flush 相同的步骤
+        List<BorrowRecord> uncounted = borrowRecordMapper.findUncounted(500);
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (BorrowRecord record : uncounted) {
+            deltas.merge(record.getBookId(), 1L, Long::sum);
+            ids.add(record.getId());
+        }
+        assertThat(borrowRecordMapper.markCounted(ids)).isEqualTo(3);
+        bookMapper.addBorrowTimes(deltas);
+
+        assertThat(borrowTimes(book)).isEqualTo(2);
+        assertThat(borrowTimes(other)).isEqualTo(1);
+        assertThat(borrowRecordMapper.findUncounted(500)).isEmpty();
+    }
+
+    @Test
+    void findByIdsSkipsDeletedBooks() {
+        Long live = addBook("T-020", 0);
+        Long deleted = addBook("T-021", 0);
+        bookMapper.softDeleteBook(deleted);
+
+        List<Book> books = bookMapper.findByIds(List.of(live, deleted, -1L));
+
+        assertThat(books).extracting(Book::getId).containsExactly(live);
+    }
+
+    private Long addBook(String code, Integer borrowTimes) {
+        Book book = new Book();
+        book.setCode(code);
+        book.setTitle("测试图书 " + code);
+        book.setCategoryId(1);
+        book.setEntryDate(Date.valueOf("2024-09-01"));
+        book.setBorrowTimes(borrowTimes);
+        bookMapper.addBook(book);
+        return book.getId();
+    }
+
+    private void addBorrowRecord(Long bookId) {
+        jdbcTemplate.update("INSERT INTO borrow_record (book_id, reader_id, borrow_date, due_date, item_id) "
+                + "VALUES (?, 1, '2024-10-01', '2024-10-31', 1)", bookId);
+    }
+
+    private Integer borrowTimes(Long bookId) {
+        return jdbcTemplate.queryForObject("SELECT borrow_times FROM book WHERE id = ?", Integer.class, bookId);
+    }
+
+    private long rowVersion(Long bookId) {
+        return jdbcTemplate.queryForObject("SELECT row_version FROM book WHERE id = ?", Long.class, bookId);
+    }
+}
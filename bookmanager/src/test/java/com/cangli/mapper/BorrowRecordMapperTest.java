@@ -0,0 +1,53 @@
+package com.cangli.mapper;
+
+import com.cangli.pojo.BorrowRecord;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BorrowRecordMapperTest {
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void readerHistoryKeepsArchivedRecords() {
+        long readerId = 501;
+        Long old = addRecord(readerId, "2023-03-01", "2023-03-20", "已还");
+        Long recent = addRecord(readerId, "2026-09-01", null, "借出");
+        addRecord(502, "2023-03-02", "2023-03-10", "已还");
+
+        // 与 BorrowArchiveService 相同的归档步骤
+        List<Long> archivable = borrowRecordMapper.findArchivableIds(Date.valueOf("2025-01-01"), 500);
+        assertThat(archivable).contains(old).doesNotContain(recent);
+        assertThat(borrowRecordMapper.copyToArchive(archivable)).isEqualTo(archivable.size());
+        assertThat(borrowRecordMapper.deleteArchived(archivable)).isEqualTo(archivable.size());
+
+        List<BorrowRecord> history = borrowRecordMapper.findByReaderId(readerId);
+
+        assertThat(history).extracting(BorrowRecord::getId).containsExactly(recent, old);
+        assertThat(history.get(1).getStatus()).isEqualTo("已还");
+    }
+
+    private Long addRecord(long readerId, String borrowDate, String returnDate, String status) {
+        jdbcTemplate.update("INSERT INTO borrow_record (book_id, reader_id, borrow_date, due_date, return_date, status, item_id, counted) "
+                        + "VALUES (1, ?, ?, ?, ?, ?, 1, 1)",
+                readerId, Date.valueOf(borrowDate), Date.valueOf(borrowDate).toLocalDate().plusDays(30),
+                returnDate == null ? null : Date.valueOf(returnDate), status);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM borrow_record", Long.class);
+    }
+}
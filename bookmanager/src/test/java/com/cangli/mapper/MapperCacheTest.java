@@ -0,0 +1,45 @@
+package com.cangli.mapper;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MapperCacheTest {
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Test
+    void everyStatementOfACachedNamespaceUsesItsCache() {
+        org.apache.ibatis.session.Configuration configuration = sqlSessionFactory.getConfiguration();
+        Set<String> cachedNamespaces = Set.copyOf(configuration.getCacheNames());
+        assertThat(cachedNamespaces).contains(ReaderMapper.class.getName(), BookMapper.class.getName());
+
+        // 注解语句拿不到 XML 中声明的 <cache>：查询不命中，写入也不清空缓存
+        List<String> uncached = new ArrayList<>();
+        for (String name : configuration.getMappedStatementNames()) {
+            int dot = name.lastIndexOf('.');
+            if (dot < 0 || !cachedNamespaces.contains(name.substring(0, dot))) {
+                continue;
+            }
+            MappedStatement ms = configuration.getMappedStatement(name);
+            if (ms.getCache() == null) {
+                uncached.add(name);
+            }
+        }
+        assertThat(uncached).isEmpty();
+    }
+}
@@ -0,0 +1,90 @@
+package com.cangli.monitor;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlStatsInterceptorTest {
+
+    private final Configuration configuration = new Configuration();
+    private final SqlStatsInterceptor interceptor = new SqlStatsInterceptor(Long.MAX_VALUE / 1_000_000, 1000);
+
+    @Test
+    void successfulStatementsRecordCallsAndRows() throws Throwable {
+        Invocation findAll = invocation("BookMapper.findAll", List.of(1, 2, 3));
+        interceptor.intercept(findAll);
+        interceptor.intercept(findAll);
+
+        StatementStatsSnapshot snapshot = interceptor.top(10, "total").get(0);
+        assertThat(snapshot.getStatementId()).isEqualTo("BookMapper.findAll");
+        assertThat(snapshot.getCalls()).isEqualTo(2);
+        assertThat(snapshot.getRows()).isEqualTo(6);
+        assertThat(snapshot.getErrors()).isZero();
+    }
+
+    @Test
+    void failingStatementsAreRecordedAndRethrown() throws Throwable {
+        SQLTimeoutException timeout = new SQLTimeoutException("max_statement_time exceeded");
+        Invocation failing = invocation("StatsMapper.countLoansByDueDate", timeout);
+        interceptor.intercept(invocation("BookMapper.findById", List.of(1)));
+
+        assertThatThrownBy(() -> interceptor.intercept(failing)).hasRootCause(timeout);
+        assertThatThrownBy(() -> interceptor.intercept(failing)).hasRootCause(timeout);
+
+        List<StatementStatsSnapshot> byErrors = interceptor.top(10, "errors");
+        assertThat(byErrors.get(0).getStatementId()).isEqualTo("StatsMapper.countLoansByDueDate");
+        assertThat(byErrors.get(0).getCalls()).isEqualTo(2);
+        assertThat(byErrors.get(0).getErrors()).isEqualTo(2);
+        assertThat(byErrors.get(0).getRows()).isZero();
+        assertThat(byErrors.get(1).getErrors()).isZero();
+    }
+
+    @Test
+    void topClampsTheRequestedCount() throws Throwable {
+        interceptor.intercept(invocation("a", List.of()));
+        interceptor.intercept(invocation("b", List.of()));
+
+        assertThat(interceptor.top(-1, "total")).isEmpty();
+        assertThat(interceptor.top(0, "calls")).isEmpty();
+        assertThat(interceptor.top(1, null)).hasSize(1);
+        assertThat(interceptor.top(Integer.MAX_VALUE, "max")).hasSize(2);
+    }
+
+    @Test
+    void benchmarkReportsPerStatementOverhead() {
+        Map<String, Object> report = new SqlStatsBenchmark().run(1000);
+        assertThat(report).containsKeys("directNanosPerOp", "interceptedNanosPerOp", "overheadNanosPerOp");
+        assertThat((Double) report.get("interceptedNanosPerOp")).isPositive();
+    }
+
+    // result 为异常时模拟执行失败
+    private Invocation invocation(String statementId, Object result) throws NoSuchMethodException {
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(),
+                new Class<?>[]{Executor.class}, (proxy, method, args) -> {
+                    if (result instanceof Throwable throwable) {
+                        throw throwable;
+                    }
+                    return result;
+                });
+        Method query = Executor.class.getMethod("query",
+                MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class);
+        MappedStatement ms = new MappedStatement.Builder(configuration, statementId,
+                new StaticSqlSource(configuration, "SELECT 1"), SqlCommandType.SELECT).build();
+        return new Invocation(executor, query, new Object[]{ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER});
+    }
+}
@@ -0,0 +1,176 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.AdminMapper;
+import com.cangli.mapper.CredentialMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.Reader;
+import com.cangli.utils.JwtUtil;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 二级缓存只在会话提交后写入，测试方法不能包在一个事务里
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthServiceTest {
+
+    private static final String READER_CACHE = "com.cangli.mapper.ReaderMapper";
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private CredentialMapper credentialMapper;
+
+    @Autowired
+    private AdminMapper adminMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AuthService authService;
+    private ReaderService readerService;
+
+    @BeforeEach
+    void setUp() {
+        PasswordService passwordService = new PasswordService();
+        ReflectionTestUtils.setField(passwordService, "iterations", 1000);
+        ReflectionTestUtils.setField(passwordService, "initialIterations", 100);
+
+        authService = new AuthService();
+        ReflectionTestUtils.setField(authService, "credentialMapper", credentialMapper);
+        ReflectionTestUtils.setField(authService, "adminMapper", adminMapper);
+        ReflectionTestUtils.setField(authService, "readerMapper", readerMapper);
+        ReflectionTestUtils.setField(authService, "passwordService", passwordService);
+        ReflectionTestUtils.setField(authService, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(authService, "transactionManager", transactionManager);
+
+        readerService = new ReaderService();
+        ReflectionTestUtils.setField(readerService, "readerMapper", readerMapper);
+        ReflectionTestUtils.setField(readerService, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(readerService, "passwordService", passwordService);
+        ReflectionTestUtils.setField(readerService, "statsService", mock(StatsService.class));
+        // 直接用 JDBC 插入的读者不会清缓存，先清掉别的测试留下的 findAll
+        sqlSessionFactory.getConfiguration().getCache(READER_CACHE).clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM reader WHERE username LIKE 'pw-%'");
+        sqlSessionFactory.getConfiguration().getCache(READER_CACHE).clear();
+    }
+
+    @Test
+    void loginRehashEvictsCachedPasswords() {
+        long id = addReader("pw-1", "plain-secret");
+        // 旧密码进入二级缓存
+        assertThat(readerMapper.findById(id).getPassword()).isEqualTo("plain-secret");
+        assertThat(findInAll(id).getPassword()).isEqualTo("plain-secret");
+        assertThat(readerMapper.findByUsername("pw-1").getPassword()).isEqualTo("plain-secret");
+        assertThat(sqlSessionFactory.getConfiguration().getCache(READER_CACHE).getSize()).isGreaterThanOrEqualTo(3);
+
+        AuthService.Login login = authService.authenticate("pw-1", "plain-secret");
+
+        String hash = storedPassword(id);
+        assertThat(login).isNotNull();
+        assertThat(hash).startsWith("pbkdf2$");
+        assertThat(readerMapper.findById(id).getPassword()).isEqualTo(hash);
+        assertThat(findInAll(id).getPassword()).isEqualTo(hash);
+        assertThat(readerMapper.findByUsername("pw-1").getPassword()).isEqualTo(hash);
+        assertThat(authService.resolve("pw-1", "reader", login.stamp())).isNotNull();
+    }
+
+    @Test
+    void resolvingATokenDoesNotStripTheCachedPassword() {
+        long id = addReader("pw-2", "plain-secret");
+        AuthService.Login login = authService.authenticate("pw-2", "plain-secret");
+
+        Reader first = (Reader) authService.resolve("pw-2", "reader", login.stamp());
+        Reader second = (Reader) authService.resolve("pw-2", "reader", login.stamp());
+
+        assertThat(first.getPassword()).isNull();
+        assertThat(second).isNotNull();
+        assertThat(readerMapper.findByUsername("pw-2").getPassword()).isEqualTo(storedPassword(id));
+    }
+
+    @Test
+    void editingAReaderAfterRehashKeepsTheHash() {
+        long id = addReader("pw-3", "plain-secret");
+        readerMapper.findById(id);
+        authService.authenticate("pw-3", "plain-secret");
+        String hash = storedPassword(id);
+
+        // 前端回传 findById 查到的密码，与库里的哈希一致，不应再哈希一次
+        Reader edited = readerMapper.findById(id);
+        edited.setName("改名");
+        readerService.updateReader(edited);
+
+        assertThat(storedPassword(id)).isEqualTo(hash);
+        assertThat(authService.authenticate("pw-3", "plain-secret")).isNotNull();
+    }
+
+    @Test
+    void emptyStoredPasswordNeverMatches() {
+        addReader("pw-4", "");
+
+        assertThat(authService.authenticate("pw-4", "")).isNull();
+    }
+
+    @Test
+    void warmupPasswordLogsInAsTheServicePrincipalUntilRevoked() {
+        String stamp = passwordStamp(authService.issueWarmupToken());
+        String password = authService.issueWarmupPassword();
+
+        AuthService.Login login = authService.authenticate(AuthService.WARMUP_USERNAME, password);
+
+        assertThat(login.role()).isEqualTo(AuthService.WARMUP_ROLE);
+        assertThat(login.stamp()).isEqualTo(stamp);
+        assertThat(authService.resolve(AuthService.WARMUP_USERNAME, AuthService.WARMUP_ROLE, login.stamp())).isNotNull();
+        assertThat(authService.authenticate(AuthService.WARMUP_USERNAME, "wrong")).isNull();
+
+        authService.revokeWarmupToken();
+
+        assertThat(authService.authenticate(AuthService.WARMUP_USERNAME, password)).isNull();
+        assertThat(authService.resolve(AuthService.WARMUP_USERNAME, AuthService.WARMUP_ROLE, login.stamp())).isNull();
+    }
+
+    private static String passwordStamp(String token) {
+        return JwtUtil.parseToken(token).getClaim("cred").asString();
+    }
+
+    private long addReader(String username, String password) {
+        jdbcTemplate.update("INSERT INTO reader (name, gender, reader_type, borrow_limit, borrowed_count, username, password) "
+                + "VALUES ('测试读者', '男', '学生', 3, 0, ?, ?)", username, password);
+        return jdbcTemplate.queryForObject("SELECT id FROM reader WHERE username = ?", Long.class, username);
+    }
+
+    private Reader findInAll(long id) {
+        return readerMapper.findAll().stream().filter(reader -> reader.getId() == id).findFirst().orElseThrow();
+    }
+
+    private String storedPassword(long id) {
+        return jdbcTemplate.queryForObject("SELECT password FROM reader WHERE id = ?", String.class, id);
+    }
+}
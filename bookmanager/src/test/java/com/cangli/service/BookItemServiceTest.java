@@ -0,0 +1,71 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.event.BookItemEventBus;
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.pojo.BookItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookItemServiceTest {
+
+    private BookItemMapper bookItemMapper;
+    private BookItemEventBus eventBus;
+    private BookItemService service;
+
+    @BeforeEach
+    void setUp() {
+        bookItemMapper = mock(BookItemMapper.class);
+        eventBus = mock(BookItemEventBus.class);
+        service = new BookItemService();
+        ReflectionTestUtils.setField(service, "bookItemMapper", bookItemMapper);
+        ReflectionTestUtils.setField(service, "bookItemEventBus", eventBus);
+        ReflectionTestUtils.setField(service, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(service, "syncService", mock(SyncService.class));
+        ReflectionTestUtils.setField(service, "statsService", mock(StatsService.class));
+    }
+
+    @Test
+    void batchInsertPublishesEachBook() {
+        service.batchInsert(List.of(item(null, 3), item(null, 3), item(null, 4)));
+        verify(eventBus).publishBook(3L);
+        verify(eventBus).publishBook(4L);
+    }
+
+    @Test
+    void deletePublishesRemovedCopy() {
+        when(bookItemMapper.lockStatus(9)).thenReturn("available");
+        when(bookItemMapper.findById(9)).thenReturn(item(9, 3));
+        service.deleteBookItem(9);
+        verify(eventBus).publishRemoved(9, 3L);
+    }
+
+    @Test
+    void deletingMissingCopyPublishesNothing() {
+        service.deleteBookItem(10);
+        verify(eventBus, never()).publishRemoved(10, 3L);
+    }
+
+    @Test
+    void softDeleteByBookPublishesBook() {
+        when(bookItemMapper.lockStatusesByBookId(3L)).thenReturn(List.of("available"));
+        service.softDeleteByBookId(3L);
+        verify(eventBus).publishBook(3L);
+    }
+
+    private static BookItem item(Integer id, int bookId) {
+        BookItem item = new BookItem();
+        item.setId(id);
+        item.setBookId(bookId);
+        item.setStatus("available");
+        return item;
+    }
+}
@@ -0,0 +1,102 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.BorrowRecordMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 两个节点的归档各在自己的事务里，测试方法不能包在一个事务里
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BorrowArchiveServiceTest {
+
+    private static final long READER = 601;
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BorrowArchiveService service;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        service = new BorrowArchiveService();
+        ReflectionTestUtils.setField(service, "borrowRecordMapper", borrowRecordMapper);
+        ReflectionTestUtils.setField(service, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(service, "afterDays", 365);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM borrow_record WHERE reader_id = ?", READER);
+        jdbcTemplate.update("DELETE FROM borrow_record_archive WHERE reader_id = ?", READER);
+    }
+
+    @Test
+    void concurrentArchiversSkipEachOthersRows() {
+        long first = addRecord();
+        long second = addRecord();
+        long third = addRecord();
+
+        // 另一个节点的归档锁住了第一条，还没提交
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT id FROM borrow_record WHERE id = ? FOR UPDATE", Long.class, first);
+            CompletableFuture.runAsync(this::archive).orTimeout(10, TimeUnit.SECONDS).join();
+            status.setRollbackOnly();
+        });
+
+        assertThat(archived()).containsExactly(second, third);
+        assertThat(hot()).containsExactly(first);
+
+        archive();
+
+        assertThat(archived()).containsExactly(first, second, third);
+        assertThat(hot()).isEmpty();
+    }
+
+    private void archive() {
+        transaction.executeWithoutResult(status -> service.archiveBatch());
+    }
+
+    private long addRecord() {
+        jdbcTemplate.update("INSERT INTO borrow_record (book_id, reader_id, borrow_date, due_date, return_date, status, item_id, counted) "
+                + "VALUES (1, ?, '2023-03-01', '2023-03-31', '2023-03-20', '已还', 1, 1)", READER);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM borrow_record", Long.class);
+    }
+
+    private List<Long> archived() {
+        return jdbcTemplate.queryForList("SELECT id FROM borrow_record_archive WHERE reader_id = ? ORDER BY id", Long.class, READER);
+    }
+
+    private List<Long> hot() {
+        return jdbcTemplate.queryForList("SELECT id FROM borrow_record WHERE reader_id = ? ORDER BY id", Long.class, READER);
+    }
+}
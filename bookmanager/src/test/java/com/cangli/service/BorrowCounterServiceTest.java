@@ -0,0 +1,161 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.BorrowRecordMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 两个服务实例共用一个库，模拟两个节点
+ */
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 刷新在各自的事务里，测试方法不能包在一个事务里
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BorrowCounterServiceTest {
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ChangeLog changeLogA;
+    private BorrowCounterService nodeA;
+    private BorrowCounterService nodeB;
+    private TransactionTemplate transaction;
+    private long book;
+
+    @BeforeEach
+    void setUp() {
+        changeLogA = mock(ChangeLog.class);
+        nodeA = service(changeLogA);
+        nodeB = service(mock(ChangeLog.class));
+        transaction = new TransactionTemplate(transactionManager);
+        // 别的测试留下的未计入记录也会被刷入，先清掉
+        jdbcTemplate.update("UPDATE borrow_record SET counted = 1 WHERE counted = 0");
+        jdbcTemplate.update("INSERT INTO book (code, title, category_id, entry_date, borrow_times) VALUES ('BC-1', '计数测试', 1, '2024-09-01', 0)");
+        book = jdbcTemplate.queryForObject("SELECT id FROM book WHERE code = 'BC-1'", Long.class);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM borrow_record WHERE book_id = ?", book);
+        jdbcTemplate.update("DELETE FROM book WHERE code LIKE 'BC-%'");
+    }
+
+    @Test
+    void flushByAnotherNodeIsReconciledInsteadOfOverReported() {
+        nodeA.increment(book, addRecord());
+        nodeA.increment(book, addRecord());
+
+        assertThat(nodeB.flush()).isEqualTo(2);
+
+        assertThat(borrowTimes()).isEqualTo(2);
+        // B 没有这两条记录，不会变负、也不会挡住自己之后的借阅
+        assertThat(nodeB.pending(book)).isZero();
+        nodeB.increment(book, addRecord());
+        assertThat(nodeB.pending(book)).isEqualTo(1);
+        // A 收到 B 的变更日志后按库核对
+        assertThat(nodeA.pending(book)).isEqualTo(2);
+        nodeA.reconcile(book);
+        assertThat(nodeA.pending(book)).isZero();
+    }
+
+    @Test
+    void ownFlushRemovesOnlyItsOwnRecords() {
+        nodeA.increment(book, addRecord());
+        long other = addRecord();
+        nodeB.increment(book, other);
+
+        assertThat(nodeA.flush()).isEqualTo(2);
+
+        assertThat(nodeA.pending(book)).isZero();
+        nodeA.increment(book, addRecord());
+        assertThat(nodeA.pending(book)).isEqualTo(1);
+        verify(changeLogA).record(ResourceVersions.Resource.BOOK, book);
+        nodeB.reconcile(null);
+        assertThat(nodeB.pending(book)).isZero();
+    }
+
+    @Test
+    void concurrentFlushesSkipLockedRows() {
+        long first = addRecord();
+        addRecord();
+        addRecord();
+
+        // 另一个节点的刷新锁住了第一条，还没提交
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT id FROM borrow_record WHERE id = ? FOR UPDATE", Long.class, first);
+            int flushed = CompletableFuture.supplyAsync(nodeB::flush).orTimeout(10, TimeUnit.SECONDS).join();
+            assertThat(flushed).isEqualTo(2);
+            status.setRollbackOnly();
+        });
+
+        assertThat(borrowTimes()).isEqualTo(2);
+        assertThat(nodeA.flush()).isEqualTo(1);
+        assertThat(borrowTimes()).isEqualTo(3);
+    }
+
+    @Test
+    void rolledBackBorrowIsNotCounted() {
+        transaction.executeWithoutResult(status -> {
+            nodeA.increment(book, addRecord());
+            status.setRollbackOnly();
+        });
+        assertThat(nodeA.pending(book)).isZero();
+
+        long committed = transaction.execute(status -> {
+            long id = addRecord();
+            nodeA.increment(book, id);
+            return id;
+        });
+        assertThat(nodeA.pending(book)).isEqualTo(1);
+        assertThat(committed).isPositive();
+    }
+
+    private BorrowCounterService service(ChangeLog changeLog) {
+        BorrowCounterService service = new BorrowCounterService();
+        ReflectionTestUtils.setField(service, "borrowRecordMapper", borrowRecordMapper);
+        ReflectionTestUtils.setField(service, "bookMapper", bookMapper);
+        ReflectionTestUtils.setField(service, "changeLog", changeLog);
+        return service;
+    }
+
+    private long addRecord() {
+        jdbcTemplate.update("INSERT INTO borrow_record (book_id, reader_id, borrow_date, due_date, item_id) "
+                + "VALUES (?, 1, '2024-10-01', '2024-10-31', 1)", book);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM borrow_record", Long.class);
+    }
+
+    private int borrowTimes() {
+        return jdbcTemplate.queryForObject("SELECT borrow_times FROM book WHERE id = ?", Integer.class, book);
+    }
+}
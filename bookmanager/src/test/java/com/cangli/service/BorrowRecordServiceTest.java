@@ -0,0 +1,196 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.event.BookItemEventBus;
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.BorrowRecordMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.pojo.BorrowRecord;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 借还不能依据二级缓存里的旧行做判断：用 JDBC 直接改库模拟其他节点的写入，缓存里仍是旧值
+ */
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 二级缓存只在会话提交后写入，测试方法不能包在一个事务里，借还各自开事务
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BorrowRecordServiceTest {
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private BookItemMapper bookItemMapper;
+
+    @Autowired
+    private BorrowRecordMapper borrowRecordMapper;
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private BorrowRecordService service;
+    private TransactionTemplate transaction;
+    private long bookId;
+    private int itemId;
+    private long readerId;
+
+    @BeforeEach
+    void setUp() {
+        BookItemService bookItemService = new BookItemService();
+        ReflectionTestUtils.setField(bookItemService, "bookItemMapper", bookItemMapper);
+        ReflectionTestUtils.setField(bookItemService, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(bookItemService, "syncService", mock(SyncService.class));
+        ReflectionTestUtils.setField(bookItemService, "bookItemEventBus", mock(BookItemEventBus.class));
+        ReflectionTestUtils.setField(bookItemService, "statsService", mock(StatsService.class));
+
+        service = new BorrowRecordService();
+        ReflectionTestUtils.setField(service, "borrowRecordMapper", borrowRecordMapper);
+        ReflectionTestUtils.setField(service, "bookMapper", bookMapper);
+        ReflectionTestUtils.setField(service, "readerMapper", readerMapper);
+        ReflectionTestUtils.setField(service, "bookItemService", bookItemService);
+        ReflectionTestUtils.setField(service, "resourceVersions", mock(ResourceVersions.class));
+        ReflectionTestUtils.setField(service, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(service, "reservationService", mock(ReservationService.class));
+        ReflectionTestUtils.setField(service, "borrowCounterService", mock(BorrowCounterService.class));
+        ReflectionTestUtils.setField(service, "recommendationService", mock(RecommendationService.class));
+        ReflectionTestUtils.setField(service, "borrowArchiveService", mock(BorrowArchiveService.class));
+        ReflectionTestUtils.setField(service, "statsService", mock(StatsService.class));
+        transaction = new TransactionTemplate(transactionManager);
+
+        jdbcTemplate.update("INSERT INTO book (code, title, category_id, entry_date) VALUES ('BR-1', '借还测试', 1, '2024-09-01')");
+        bookId = jdbcTemplate.queryForObject("SELECT id FROM book WHERE code = 'BR-1'", Long.class);
+        jdbcTemplate.update("INSERT INTO book_items (book_id, barcode, status, entry_date) VALUES (?, 'BR-1-1', 'available', '2024-09-01')", bookId);
+        itemId = jdbcTemplate.queryForObject("SELECT id FROM book_items WHERE barcode = 'BR-1-1'", Integer.class);
+        readerId = addReader("br-1");
+        clearCaches();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM borrow_record WHERE item_id = ?", itemId);
+        jdbcTemplate.update("DELETE FROM book_items WHERE barcode LIKE 'BR-%'");
+        jdbcTemplate.update("DELETE FROM book WHERE code LIKE 'BR-%'");
+        jdbcTemplate.update("DELETE FROM reader WHERE username LIKE 'br-%'");
+        clearCaches();
+    }
+
+    @Test
+    void copyLentElsewhereIsNotLentAgain() {
+        // 缓存里副本仍是 available
+        assertThat(bookItemMapper.findByBookId(bookId)).singleElement()
+                .satisfies(item -> assertThat(item.getStatus()).isEqualTo("available"));
+        assertThat(bookItemMapper.findById(itemId).getStatus()).isEqualTo("available");
+        jdbcTemplate.update("UPDATE book_items SET status = 'borrowed' WHERE id = ?", itemId);
+
+        assertThatThrownBy(() -> borrow(readerId)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrow_record WHERE item_id = ?", Integer.class, itemId)).isZero();
+        assertThat(borrowedCount(readerId)).isZero();
+    }
+
+    @Test
+    void secondReturnDoesNotFreeACopyLentToSomeoneElse() {
+        BorrowRecord first = borrow(readerId);
+        // 缓存里记录仍是借出
+        assertThat(borrowRecordMapper.findById(first.getId()).getStatus()).isEqualTo("借出");
+        // 其他节点已归还，副本又借给了另一位读者
+        long other = addReader("br-2");
+        jdbcTemplate.update("UPDATE borrow_record SET status = '已还', return_date = CURRENT_DATE WHERE id = ?", first.getId());
+        jdbcTemplate.update("UPDATE reader SET borrowed_count = 0 WHERE id = ?", readerId);
+        jdbcTemplate.update("UPDATE reader SET borrowed_count = 1 WHERE id = ?", other);
+
+        assertThatThrownBy(() -> giveBack(first.getId()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("该记录已归还");
+
+        assertThat(status(itemId)).isEqualTo("borrowed");
+        assertThat(borrowedCount(readerId)).isZero();
+        assertThat(borrowedCount(other)).isEqualTo(1);
+    }
+
+    @Test
+    void borrowedCountIsAdjustedInPlaceWithoutRewritingTheRow() {
+        assertThat(readerMapper.findById(readerId).getBorrowedCount()).isZero();
+        // 其他节点上的借书和登录升级的密码，缓存里看不到
+        jdbcTemplate.update("UPDATE reader SET borrowed_count = 2, password = 'rehashed' WHERE id = ?", readerId);
+
+        BorrowRecord record = borrow(readerId);
+        assertThat(borrowedCount(readerId)).isEqualTo(3);
+
+        BorrowRecord returned = giveBack(record.getId());
+        assertThat(returned.getStatus()).isEqualTo("已还");
+        assertThat(returned.getBookTitle()).isEqualTo("借还测试");
+        assertThat(borrowedCount(readerId)).isEqualTo(2);
+        assertThat(status(itemId)).isEqualTo("available");
+        assertThat(jdbcTemplate.queryForObject("SELECT password FROM reader WHERE id = ?", String.class, readerId))
+                .isEqualTo("rehashed");
+    }
+
+    @Test
+    void deactivatedReaderCannotBorrowEvenIfCachedAsActive() {
+        assertThat(readerMapper.findById(readerId).getActive()).isEqualTo(1);
+        jdbcTemplate.update("UPDATE reader SET active = 0 WHERE id = ?", readerId);
+
+        assertThatThrownBy(() -> borrow(readerId)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(status(itemId)).isEqualTo("available");
+        assertThat(borrowedCount(readerId)).isZero();
+    }
+
+    private BorrowRecord borrow(long reader) {
+        return transaction.execute(status -> service.borrowBook(bookId, reader, itemId));
+    }
+
+    private BorrowRecord giveBack(long recordId) {
+        return transaction.execute(status -> service.returnBook(recordId));
+    }
+
+    private long addReader(String username) {
+        jdbcTemplate.update("INSERT INTO reader (name, gender, reader_type, borrow_limit, borrowed_count, username, password) "
+                + "VALUES ('借还读者', '男', '学生', 3, 0, ?, 'old')", username);
+        return jdbcTemplate.queryForObject("SELECT id FROM reader WHERE username = ?", Long.class, username);
+    }
+
+    private int borrowedCount(long reader) {
+        return jdbcTemplate.queryForObject("SELECT borrowed_count FROM reader WHERE id = ?", Integer.class, reader);
+    }
+
+    private String status(int item) {
+        return jdbcTemplate.queryForObject("SELECT status FROM book_items WHERE id = ?", String.class, item);
+    }
+
+    private void clearCaches() {
+        sqlSessionFactory.getConfiguration().getCaches().forEach(Cache::clear);
+    }
+}
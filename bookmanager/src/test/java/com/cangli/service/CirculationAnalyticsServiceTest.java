@@ -0,0 +1,91 @@
+package com.cangli.service;
+
+import com.cangli.analytics.CirculationSnapshot;
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.CirculationMapper;
+import com.cangli.pojo.BorrowRecord;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CirculationAnalyticsServiceTest {
+
+    @TempDir
+    Path nodeADir;
+
+    @TempDir
+    Path nodeBDir;
+
+    @Test
+    void exportRefreshesOnlyTheLocalSnapshotAndResultsNameTheNode() throws IOException {
+        CirculationAnalyticsService nodeA = service("node-a", nodeADir, borrow("2024-03-01", "2024-03-31", "2024-03-08"));
+        CirculationAnalyticsService nodeB = service("node-b", nodeBDir, borrow("2024-03-01", "2024-03-31", null));
+
+        assertThat(nodeA.export()).isEqualTo(1);
+
+        assertThat(nodeB.hasSnapshot()).isFalse();
+        assertThat(nodeB.getSnapshotAt()).isNull();
+        Map<String, Object> result = nodeA.aggregate(CirculationSnapshot.GroupBy.CATEGORY, null, null, null, null, null);
+        assertThat(result).containsEntry("node", "node-a")
+                .containsEntry("snapshotAt", nodeA.getSnapshotAt())
+                .containsEntry("rows", 1);
+        // 维度表里查不到的借阅归到默认分组
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> groups = (List<Map<String, Object>>) result.get("groups");
+        assertThat(groups).singleElement().satisfies(group -> assertThat(group)
+                .containsEntry("key", "未分类")
+                .containsEntry("borrows", 1L)
+                .containsEntry("avgLoanDays", 7.0));
+
+        // 重启后直接打开本地文件
+        CirculationAnalyticsService restarted = service("node-a", nodeADir, borrow("2024-03-01", "2024-03-31", null));
+        assertThat(restarted.hasSnapshot()).isTrue();
+        assertThat(restarted.getSnapshotAt()).isEqualTo(nodeA.getSnapshotAt());
+    }
+
+    private static CirculationAnalyticsService service(String nodeId, Path dir, BorrowRecord record) throws IOException {
+        CirculationMapper mapper = mock(CirculationMapper.class);
+        doAnswer(invocation -> {
+            ResultHandler<BorrowRecord> handler = invocation.getArgument(0);
+            @SuppressWarnings("unchecked")
+            ResultContext<BorrowRecord> context = mock(ResultContext.class);
+            when(context.getResultObject()).thenReturn(record);
+            handler.handleResult(context);
+            return null;
+        }).when(mapper).scanBorrows(any());
+        ChangeLog changeLog = mock(ChangeLog.class);
+        when(changeLog.getNodeId()).thenReturn(nodeId);
+
+        CirculationAnalyticsService service = new CirculationAnalyticsService();
+        ReflectionTestUtils.setField(service, "circulationMapper", mapper);
+        ReflectionTestUtils.setField(service, "changeLog", changeLog);
+        ReflectionTestUtils.setField(service, "dir", dir.toString());
+        service.init();
+        return service;
+    }
+
+    private static BorrowRecord borrow(String borrowDate, String dueDate, String returnDate) {
+        BorrowRecord record = new BorrowRecord();
+        record.setBookId(1L);
+        record.setReaderId(1L);
+        record.setBorrowDate(Date.valueOf(LocalDate.parse(borrowDate)));
+        record.setDueDate(Date.valueOf(LocalDate.parse(dueDate)));
+        record.setReturnDate(returnDate == null ? null : Date.valueOf(LocalDate.parse(returnDate)));
+        return record;
+    }
+}
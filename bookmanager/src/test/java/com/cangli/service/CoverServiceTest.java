@@ -0,0 +1,212 @@
+package com.cangli.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 用本地 HttpServer 代替封面源站
+ */
+class CoverServiceTest {
+
+    private static final int MAX_SOURCE_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private HttpServer origin;
+    private String base;
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final AtomicLong hugeBytesWritten = new AtomicLong();
+    private final CountDownLatch hugeDone = new CountDownLatch(1);
+
+    @BeforeEach
+    void startOrigin() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/", this::handle);
+        origin.start();
+        base = "http://127.0.0.1:" + origin.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopOrigin() {
+        origin.stop(0);
+    }
+
+    @Test
+    void coverIsFetchedOnceAndScaled() throws IOException {
+        CoverService coverService = coverService(List.of("127.0.0.1"), true);
+
+        Path first = coverService.thumbnail(base + "/cover.png");
+        Path second = coverService.thumbnail(base + "/cover.png");
+
+        assertThat(first).isNotNull().isEqualTo(second);
+        BufferedImage thumbnail = ImageIO.read(first.toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(240);
+        assertThat(thumbnail.getHeight()).isEqualTo(360);
+        assertThat(hits("/cover.png")).isEqualTo(1);
+    }
+
+    @Test
+    void hostsOutsideTheAllowListAreNotFetched() {
+        CoverService coverService = coverService(List.of("covers.example.com"), true);
+
+        assertThat(coverService.thumbnail(base + "/cover.png")).isNull();
+        assertThat(coverService.thumbnail("file:///etc/passwd")).isNull();
+        assertThat(hits("/cover.png")).isZero();
+    }
+
+    @Test
+    void loopbackAndPrivateAddressesAreRefused() throws IOException {
+        CoverService coverService = coverService(List.of("127.0.0.1"), false);
+
+        assertThat(coverService.thumbnail(base + "/cover.png")).isNull();
+        assertThat(hits("/cover.png")).isZero();
+
+        assertThat(CoverService.isPublic(InetAddress.getByName("10.1.2.3"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("192.168.0.1"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("169.254.169.254"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("100.64.0.1"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("::1"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("fd00::1"))).isFalse();
+        assertThat(CoverService.isPublic(InetAddress.getByName("93.184.216.34"))).isTrue();
+    }
+
+    @Test
+    void redirectsAreCheckedHopByHop() {
+        CoverService coverService = coverService(List.of("127.0.0.1"), true);
+
+        // 同一白名单主机内的跳转照常跟随
+        assertThat(coverService.thumbnail(base + "/moved")).isNotNull();
+        assertThat(hits("/cover.png")).isEqualTo(1);
+
+        // 跳到白名单以外的主机（localhost 同样指向本机）时放弃
+        assertThat(coverService.thumbnail(base + "/escape")).isNull();
+        assertThat(hits("/secret")).isZero();
+    }
+
+    @Test
+    void oversizedSourcesAreAbortedAtTheCap() throws InterruptedException {
+        CoverService coverService = coverService(List.of("127.0.0.1"), true);
+
+        assertThat(coverService.thumbnail(base + "/declared-huge")).isNull();
+        assertThat(coverService.thumbnail(base + "/huge")).isNull();
+
+        // 源站还没写完连接就被关闭了
+        assertThat(hugeDone.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(hugeBytesWritten.get()).isLessThan(64L * 1024 * 1024);
+    }
+
+    @Test
+    void failedFetchesAreNegativelyCached() {
+        CoverService coverService = coverService(List.of("127.0.0.1"), true);
+
+        assertThat(coverService.thumbnail(base + "/missing")).isNull();
+        assertThat(coverService.thumbnail(base + "/missing")).isNull();
+        assertThat(coverService.thumbnail(base + "/not-an-image")).isNull();
+        assertThat(coverService.thumbnail(base + "/not-an-image")).isNull();
+
+        assertThat(hits("/missing")).isEqualTo(1);
+        assertThat(hits("/not-an-image")).isEqualTo(1);
+    }
+
+    private CoverService coverService(List<String> allowedHosts, boolean allowPrivateAddresses) {
+        CoverService coverService = new CoverService();
+        ReflectionTestUtils.setField(coverService, "dir", dir.toString());
+        ReflectionTestUtils.setField(coverService, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(coverService, "width", 240);
+        ReflectionTestUtils.setField(coverService, "height", 360);
+        ReflectionTestUtils.setField(coverService, "allowedHosts", allowedHosts);
+        ReflectionTestUtils.setField(coverService, "allowPrivateAddresses", allowPrivateAddresses);
+        ReflectionTestUtils.setField(coverService, "maxSourceBytes", MAX_SOURCE_BYTES);
+        ReflectionTestUtils.setField(coverService, "failureTtlSeconds", 600L);
+        try {
+            coverService.init();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return coverService;
+    }
+
+    private int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        try (exchange) {
+            switch (path) {
+                case "/cover.png" -> send(exchange, 200, png());
+                case "/not-an-image" -> send(exchange, 200, "<html></html>".getBytes());
+                case "/moved" -> redirect(exchange, "/cover.png");
+                case "/escape" -> redirect(exchange, "http://localhost:" + origin.getAddress().getPort() + "/secret");
+                case "/declared-huge" -> {
+                    exchange.sendResponseHeaders(200, MAX_SOURCE_BYTES + 1);
+                    exchange.getResponseBody().write(new byte[MAX_SOURCE_BYTES + 1]);
+                }
+                case "/huge" -> streamHuge(exchange);
+                default -> send(exchange, 404, new byte[0]);
+            }
+        } catch (IOException ignored) {
+            // 客户端提前断开
+        }
+    }
+
+    // 不声明长度，分块写出 64MB
+    private void streamHuge(HttpExchange exchange) throws IOException {
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            byte[] chunk = new byte[64 * 1024];
+            for (int i = 0; i < 1024; i++) {
+                out.write(chunk);
+                hugeBytesWritten.addAndGet(chunk.length);
+            }
+        } finally {
+            hugeDone.countDown();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    private static byte[] png() throws IOException {
+        BufferedImage image = new BufferedImage(120, 90, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
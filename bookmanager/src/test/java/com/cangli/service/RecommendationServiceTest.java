@@ -0,0 +1,76 @@
+package com.cangli.service;
+
+import com.cangli.mapper.BookMapper;
+import com.cangli.pojo.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTest {
+
+    private BookMapper bookMapper;
+    private RecommendationService recommendationService;
+
+    @BeforeEach
+    void setUp() {
+        bookMapper = mock(BookMapper.class);
+        recommendationService = new RecommendationService();
+        ReflectionTestUtils.setField(recommendationService, "bookMapper", bookMapper);
+        ReflectionTestUtils.setField(recommendationService, "topK", 20);
+
+        // 借过 1 的读者：三人还借过 2，两人借过 3，一人借过 4
+        borrow(1, 1, 2, 3, 4);
+        borrow(2, 1, 2, 3);
+        borrow(3, 1, 2);
+    }
+
+    @Test
+    void booksAreLoadedInOneQueryInCooccurrenceOrder() {
+        // 库里返回顺序与推荐顺序无关，3 已被删除不返回
+        when(bookMapper.findByIds(List.of(2L, 3L, 4L))).thenReturn(List.of(book(4), book(2)));
+
+        List<Book> books = recommendationService.alsoBorrowedBooks(1L, 10);
+
+        assertThat(books).extracting(Book::getId).containsExactly(2L, 4L);
+        verify(bookMapper, times(1)).findByIds(anyList());
+        verify(bookMapper, never()).findById(anyLong());
+    }
+
+    @Test
+    void limitCutsAfterSkippingDeletedBooks() {
+        when(bookMapper.findByIds(List.of(2L, 3L, 4L))).thenReturn(List.of(book(3), book(4)));
+
+        assertThat(recommendationService.alsoBorrowedBooks(1L, 1)).extracting(Book::getId).containsExactly(3L);
+    }
+
+    @Test
+    void nonPositiveLimitReturnsNothing() {
+        assertThat(recommendationService.alsoBorrowedBooks(1L, -5)).isEmpty();
+        assertThat(recommendationService.alsoBorrowedBooks(1L, 0)).isEmpty();
+        assertThat(recommendationService.alsoBorrowedBooks(99L, 10)).isEmpty();
+        verify(bookMapper, never()).findByIds(anyList());
+    }
+
+    private void borrow(long readerId, long... bookIds) {
+        for (long bookId : bookIds) {
+            recommendationService.recordBorrow(readerId, bookId);
+        }
+    }
+
+    private static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        return book;
+    }
+}
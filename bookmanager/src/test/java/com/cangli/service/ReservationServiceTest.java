@@ -0,0 +1,98 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.BookMapper;
+import com.cangli.mapper.ReaderMapper;
+import com.cangli.mapper.ReservationMapper;
+import com.cangli.pojo.Book;
+import com.cangli.pojo.Reader;
+import com.cangli.pojo.Reservation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReservationServiceTest {
+
+    private ReservationMapper reservationMapper;
+    private ChangeLog changeLog;
+    private BookItemService bookItemService;
+    private ReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        reservationMapper = mock(ReservationMapper.class);
+        changeLog = mock(ChangeLog.class);
+        bookItemService = mock(BookItemService.class);
+        BookMapper bookMapper = mock(BookMapper.class);
+        ReaderMapper readerMapper = mock(ReaderMapper.class);
+        when(bookMapper.findById(anyLong())).thenReturn(new Book());
+        when(readerMapper.findById(anyLong())).thenReturn(new Reader());
+
+        service = new ReservationService();
+        ReflectionTestUtils.setField(service, "reservationMapper", reservationMapper);
+        ReflectionTestUtils.setField(service, "bookMapper", bookMapper);
+        ReflectionTestUtils.setField(service, "readerMapper", readerMapper);
+        ReflectionTestUtils.setField(service, "bookItemService", bookItemService);
+        ReflectionTestUtils.setField(service, "changeLog", changeLog);
+        ReflectionTestUtils.setField(service, "holdHours", 48);
+    }
+
+    @Test
+    void reservationFromAnotherNodeIsSeenAfterInvalidation() {
+        when(reservationMapper.findWaitingIdsByBookId(3L)).thenReturn(List.of());
+        assertThat(service.allocate(3L, 30)).isFalse();
+
+        // 另一个节点新增了预约，本地队列仍是空的
+        when(reservationMapper.findWaitingIdsByBookId(3L)).thenReturn(List.of(7L));
+        when(reservationMapper.assignItem(eq(7L), eq(30), any())).thenReturn(1);
+        assertThat(service.allocate(3L, 30)).isFalse();
+
+        service.invalidateQueue(3L);
+        assertThat(service.allocate(3L, 30)).isTrue();
+        verify(bookItemService).updateStatus(30, "reserved");
+    }
+
+    @Test
+    void invalidateAllDropsEveryQueue() {
+        when(reservationMapper.findWaitingIdsByBookId(anyLong())).thenReturn(List.of());
+        service.allocate(3L, 30);
+        service.allocate(4L, 40);
+
+        when(reservationMapper.findWaitingIdsByBookId(4L)).thenReturn(List.of(8L));
+        when(reservationMapper.assignItem(eq(8L), eq(40), any())).thenReturn(1);
+        service.invalidateQueue(null);
+        assertThat(service.allocate(4L, 40)).isTrue();
+    }
+
+    @Test
+    void reserveAndCancelAreRecordedInTheChangeLog() {
+        when(reservationMapper.findWaitingIdsByBookId(3L)).thenReturn(List.of());
+        doAnswer(invocation -> {
+            invocation.<Reservation>getArgument(0).setId(11L);
+            return null;
+        }).when(reservationMapper).addReservation(any());
+        service.reserve(3L, 1L);
+        verify(changeLog).record(ResourceVersions.Resource.RESERVATION, 3L);
+
+        Reservation reservation = new Reservation();
+        reservation.setId(11L);
+        reservation.setBookId(3L);
+        when(reservationMapper.findById(11L)).thenReturn(reservation);
+        when(reservationMapper.updateStatus(11L, "等待", "已取消")).thenReturn(1);
+        service.cancel(11L);
+        verify(changeLog, times(2)).record(ResourceVersions.Resource.RESERVATION, 3L);
+    }
+}
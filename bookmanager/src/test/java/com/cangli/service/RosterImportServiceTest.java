@@ -0,0 +1,135 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.ReaderMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class RosterImportServiceTest {
+
+    @Autowired
+    private ReaderMapper readerMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private RosterImportService service;
+
+    @BeforeEach
+    void setUp() {
+        PasswordService passwordService = mock(PasswordService.class);
+        when(passwordService.hash(anyString())).thenReturn("hashed");
+        when(passwordService.hashInitial(anyString())).thenReturn("initial");
+
+        service = new RosterImportService();
+        ReflectionTestUtils.setField(service, "readerMapper", readerMapper);
+        ReflectionTestUtils.setField(service, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(service, "passwordService", passwordService);
+        ReflectionTestUtils.setField(service, "statsService", mock(StatsService.class));
+        ReflectionTestUtils.setField(service, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "maxErrors", 10);
+        ReflectionTestUtils.setField(service, "defaultPassword", "");
+        ReflectionTestUtils.setField(service, "studentBorrowLimit", 3);
+        ReflectionTestUtils.setField(service, "teacherBorrowLimit", 10);
+    }
+
+    @Test
+    void newReadersGetDefaultsForMissingColumns() throws IOException {
+        importCsv("用户名,姓名\nr-new,李四\n");
+
+        assertThat(reader("r-new")).containsEntry("gender", "未知")
+                .containsEntry("reader_type", "学生")
+                .containsEntry("borrow_limit", 3)
+                .containsEntry("password", "initial");
+    }
+
+    @Test
+    void reimportWithoutOptionalColumnsKeepsExistingValues() throws IOException {
+        importCsv("用户名,姓名,性别,读者类型,班级\nt-001,王老师,女,教师,数学系\n");
+        assertThat(reader("t-001")).containsEntry("reader_type", "教师").containsEntry("borrow_limit", 10);
+
+        Map<String, Object> result = importCsv("用户名,姓名\nt-001,王老师\n");
+
+        assertThat(result).containsEntry("updated", 1);
+        assertThat(reader("t-001")).containsEntry("gender", "女")
+                .containsEntry("reader_type", "教师")
+                .containsEntry("class_dept", "数学系")
+                .containsEntry("borrow_limit", 10);
+    }
+
+    @Test
+    void filledColumnsStillOverwriteOnReimport() throws IOException {
+        importCsv("用户名,姓名,性别,读者类型\ns-001,赵六,男,学生\n");
+
+        importCsv("用户名,姓名,性别,读者类型\ns-001,赵六,未知,教师\n");
+
+        assertThat(reader("s-001")).containsEntry("gender", "未知").containsEntry("reader_type", "教师");
+    }
+
+    @Test
+    void readerDeletedAfterTheExistenceCheckIsInsertedWithAPassword() throws IOException {
+        importCsv("用户名,姓名,读者类型\nd-001,钱七,教师\n");
+        // 事务外查重之后、写入之前，读者被其他请求删除
+        ReaderMapper racing = mock(ReaderMapper.class, delegatesTo(readerMapper));
+        doAnswer(invocation -> {
+            List<String> existing = readerMapper.findExistingUsernames(invocation.getArgument(0));
+            jdbcTemplate.update("DELETE FROM reader WHERE username = 'd-001'");
+            return existing;
+        }).when(racing).findExistingUsernames(any());
+        ReflectionTestUtils.setField(service, "readerMapper", racing);
+
+        Map<String, Object> result = importCsv("用户名,姓名\nd-001,钱七\n");
+
+        assertThat(result).containsEntry("inserted", 1).containsEntry("updated", 0);
+        assertThat(reader("d-001")).containsEntry("password", "initial")
+                .containsEntry("gender", "未知")
+                .containsEntry("reader_type", "学生")
+                .containsEntry("borrow_limit", 3);
+    }
+
+    @Test
+    void passwordColumnIsIgnoredForExistingReaders() throws IOException {
+        importCsv("用户名,姓名\np-001,孙八\n");
+
+        importCsv("用户名,姓名,密码\np-001,孙八,changed\n");
+
+        assertThat(reader("p-001")).containsEntry("password", "initial");
+    }
+
+    private Map<String, Object> importCsv(String csv) throws IOException {
+        return service.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    private Map<String, Object> reader(String username) {
+        return jdbcTemplate.queryForMap("SELECT gender, reader_type, class_dept, borrow_limit, password "
+                + "FROM reader WHERE username = ?", username);
+    }
+}
@@ -0,0 +1,130 @@
+package com.cangli.service;
+
+import com.cangli.cache.ResourceVersions;
+import com.cangli.mapper.StatsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 没有事务时增量立即生效，相当于每次调用都是一次已提交的写入
+ */
+class StatsServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private StatsMapper statsMapper;
+    private StatsService statsService;
+
+    @BeforeEach
+    void setUp() {
+        statsMapper = mock(StatsMapper.class);
+        CategoryService categoryService = mock(CategoryService.class);
+        statsService = new StatsService();
+        ReflectionTestUtils.setField(statsService, "statsMapper", statsMapper);
+        ReflectionTestUtils.setField(statsService, "categoryService", categoryService);
+        setToday(TODAY);
+        // 启动时所有分区都是脏的，先校准一轮
+        statsService.reconcileDirty();
+        clearInvocations(statsMapper);
+    }
+
+    @Test
+    void remoteBorrowRecordChangeRecountsOnlyLoans() {
+        statsService.invalidate(ResourceVersions.Resource.BORROW_RECORD);
+
+        statsService.reconcileDirty();
+
+        verify(statsMapper).countLoansByDueDate();
+        verify(statsMapper, never()).countCopiesByStatus();
+        verify(statsMapper, never()).countReadersByType();
+        verify(statsMapper, never()).countBooksByCategory();
+    }
+
+    @Test
+    void deltasCommittedDuringReconcileAreReplayed() {
+        LocalDate due = TODAY.plusDays(20);
+        statsService.loans(Date.valueOf(due), 3);
+        statsService.invalidate(StatsService.Section.LOANS);
+        // SQL 统计出 5 条之后、校准写回之前，又提交了一次借书
+        when(statsMapper.countLoansByDueDate()).thenAnswer(invocation -> {
+            statsService.loans(Date.valueOf(due), 1);
+            return List.of(row(due, 5));
+        });
+
+        assertThat(statsService.reconcileDirty()).containsExactly(StatsService.Section.LOANS);
+
+        assertThat(loans()).containsEntry("active", 6L);
+        // 校准结束后的增量照常累加
+        statsService.loans(Date.valueOf(due), -2);
+        assertThat(loans()).containsEntry("active", 4L);
+    }
+
+    @Test
+    void failedReconcileLeavesTheSectionDirty() {
+        LocalDate due = TODAY.plusDays(20);
+        statsService.invalidate(StatsService.Section.LOANS);
+        when(statsMapper.countLoansByDueDate())
+                .thenAnswer(invocation -> {
+                    statsService.loans(Date.valueOf(due), 1);
+                    throw new IllegalStateException("连接超时");
+                })
+                .thenReturn(List.of(row(due, 7)));
+
+        assertThatThrownBy(() -> statsService.reconcileDirty()).isInstanceOf(IllegalStateException.class);
+        // 计数不被覆盖，失败期间的增量也还在
+        assertThat(loans()).containsEntry("active", 1L);
+
+        assertThat(statsService.reconcileDirty()).containsExactly(StatsService.Section.LOANS);
+
+        verify(statsMapper, times(2)).countLoansByDueDate();
+        assertThat(loans()).containsEntry("active", 7L);
+        assertThat(statsService.reconcileDirty()).isEmpty();
+    }
+
+    @Test
+    void overdueRollsForwardWithTheDate() {
+        statsService.loans(Date.valueOf(TODAY.minusDays(1)), 1);
+        statsService.loans(Date.valueOf(TODAY), 2);
+        statsService.loans(Date.valueOf(TODAY.plusDays(1)), 4);
+
+        assertThat(loans()).containsEntry("active", 7L).containsEntry("overdue", 1L);
+
+        // 不经过校准，过了应还日就算逾期
+        setToday(TODAY.plusDays(1));
+        assertThat(loans()).containsEntry("active", 7L).containsEntry("overdue", 3L);
+        setToday(TODAY.plusDays(2));
+        assertThat(loans()).containsEntry("active", 7L).containsEntry("overdue", 7L);
+        verify(statsMapper, never()).countLoansByDueDate();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> loans() {
+        return (Map<String, Object>) statsService.summary().get("loans");
+    }
+
+    private void setToday(LocalDate today) {
+        ZoneId zone = ZoneId.systemDefault();
+        ReflectionTestUtils.setField(statsService, "clock", Clock.fixed(today.atStartOfDay(zone).toInstant(), zone));
+    }
+
+    private static Map<String, Object> row(LocalDate due, long total) {
+        return Map.of("statKey", Date.valueOf(due), "total", total);
+    }
+}
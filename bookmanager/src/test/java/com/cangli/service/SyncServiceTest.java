@@ -0,0 +1,145 @@
+package com.cangli.service;
+
+import com.cangli.mapper.SyncMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 同步本身不开事务，测试方法也不能包在事务里
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SyncServiceTest {
+
+    // 远早于当前时间的行版本，只读到本测试写入的行
+    private static final long BASE = 1_000_000_000_000_000L;
+    private static final long TOMBSTONE_ID = 990_001L;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @Autowired
+    private SyncMapper syncMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private SyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        syncService = new SyncService();
+        ReflectionTestUtils.setField(syncService, "syncMapper", syncMapper);
+        ReflectionTestUtils.setField(syncService, "jsonMapper", jsonMapper);
+        ReflectionTestUtils.setField(syncService, "graceSeconds", 0);
+        ReflectionTestUtils.setField(syncService, "retentionDays", 100_000);
+        ReflectionTestUtils.setField(syncService, "pageSize", 2);
+        syncService.init();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM book WHERE code LIKE 'SYNC-%'");
+        jdbcTemplate.update("DELETE FROM sync_tombstone WHERE entity_id >= ?", TOMBSTONE_ID);
+    }
+
+    @Test
+    void pagesVisitEveryRowOnceInVersionOrder() {
+        // 同一行版本的多行跨页，按 ID 接着读
+        long first = addBook("SYNC-1", BASE + 1, 0);
+        long second = addBook("SYNC-2", BASE + 1, 0);
+        long third = addBook("SYNC-3", BASE + 1, 0);
+        long deleted = addBook("SYNC-4", BASE + 2, 1);
+        long last = addBook("SYNC-5", BASE + 3, 0);
+        addTombstone("BOOK", TOMBSTONE_ID, BASE + 1);
+        addTombstone("BOOK", TOMBSTONE_ID + 1, BASE + 1);
+        addTombstone("BOOK_ITEM", TOMBSTONE_ID, BASE + 1);
+
+        List<JsonNode> lines = stream(BASE, new ByteArrayOutputStream());
+
+        assertThat(lines.get(0).path("op").asString()).isEqualTo("begin");
+        assertThat(lines.get(lines.size() - 1).path("op").asString()).isEqualTo("end");
+        List<String> books = new ArrayList<>();
+        List<String> tombstones = new ArrayList<>();
+        for (JsonNode line : lines) {
+            if (line.path("data").path("code").asString("").startsWith("SYNC-")) {
+                books.add("upsert " + line.path("data").path("id").asLong());
+            } else if ("delete".equals(line.path("op").asString()) && line.path("id").asLong() == deleted) {
+                books.add("delete " + deleted);
+            } else if ("delete".equals(line.path("op").asString()) && line.path("id").asLong() >= TOMBSTONE_ID) {
+                tombstones.add(line.path("type").asString() + " " + line.path("id").asLong());
+            }
+        }
+        assertThat(books).containsExactly("upsert " + first, "upsert " + second, "upsert " + third,
+                "delete " + deleted, "upsert " + last);
+        assertThat(tombstones).containsExactlyInAnyOrder("book " + TOMBSTONE_ID, "book " + (TOMBSTONE_ID + 1),
+                "bookItem " + TOMBSTONE_ID);
+    }
+
+    @Test
+    void noConnectionIsHeldWhileWritingToTheClient() throws SQLException {
+        for (int i = 0; i < 5; i++) {
+            addBook("SYNC-" + i, BASE + i, 0);
+        }
+        HikariDataSource pool = dataSource.unwrap(HikariDataSource.class);
+        List<Integer> activeDuringWrites = new ArrayList<>();
+        List<Boolean> transactionDuringWrites = new ArrayList<>();
+        ByteArrayOutputStream slowClient = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                activeDuringWrites.add(pool.getHikariPoolMXBean().getActiveConnections());
+                transactionDuringWrites.add(TransactionSynchronizationManager.isActualTransactionActive());
+                super.write(b, off, len);
+            }
+        };
+
+        stream(BASE, slowClient);
+
+        assertThat(activeDuringWrites).isNotEmpty().containsOnly(0);
+        assertThat(transactionDuringWrites).containsOnly(false);
+    }
+
+    private List<JsonNode> stream(long since, ByteArrayOutputStream out) {
+        syncService.stream(since, out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(jsonMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private long addBook(String code, long rowVersion, int deleted) {
+        jdbcTemplate.update("INSERT INTO book (code, title, category_id, entry_date, is_deleted, row_version) "
+                + "VALUES (?, ?, 1, '2024-09-01', ?, ?)", code, "同步测试 " + code, deleted, rowVersion);
+        return jdbcTemplate.queryForObject("SELECT id FROM book WHERE code = ?", Long.class, code);
+    }
+
+    private void addTombstone(String resource, long entityId, long rowVersion) {
+        jdbcTemplate.update("INSERT INTO sync_tombstone (resource, entity_id, row_version) VALUES (?, ?, ?)",
+                resource, entityId, rowVersion);
+    }
+}
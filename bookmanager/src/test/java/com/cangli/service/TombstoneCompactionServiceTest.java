@@ -0,0 +1,127 @@
+package com.cangli.service;
+
+import com.cangli.cache.ChangeLog;
+import com.cangli.mapper.BookItemMapper;
+import com.cangli.mapper.BookMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@MybatisTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// 两个节点的压缩各在自己的事务里，测试方法不能包在一个事务里
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TombstoneCompactionServiceTest {
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private BookItemMapper bookItemMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TombstoneCompactionService service;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        service = new TombstoneCompactionService();
+        ReflectionTestUtils.setField(service, "bookMapper", bookMapper);
+        ReflectionTestUtils.setField(service, "bookItemMapper", bookItemMapper);
+        ReflectionTestUtils.setField(service, "changeLog", mock(ChangeLog.class));
+        ReflectionTestUtils.setField(service, "syncService", mock(SyncService.class));
+        ReflectionTestUtils.setField(service, "statsService", mock(StatsService.class));
+        ReflectionTestUtils.setField(service, "batchSize", 200);
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM book_items WHERE barcode LIKE 'TC-%'");
+        jdbcTemplate.update("DELETE FROM book_items_archive WHERE barcode LIKE 'TC-%'");
+        jdbcTemplate.update("DELETE FROM book WHERE code LIKE 'TC-%'");
+        jdbcTemplate.update("DELETE FROM book_archive WHERE code LIKE 'TC-%'");
+    }
+
+    @Test
+    void concurrentCompactionsSkipEachOthersItems() {
+        long book = addBook("TC-1", 0);
+        long first = addItem(book, "TC-1-1");
+        long second = addItem(book, "TC-1-2");
+
+        // 另一个节点的压缩锁住了第一个副本，还没提交
+        whileLocked("book_items", first, service::compactItemBatch);
+
+        assertThat(ids("book_items_archive", "barcode")).containsExactly(second);
+        assertThat(ids("book_items", "barcode")).containsExactly(first);
+
+        transaction.execute(status -> service.compactItemBatch());
+
+        assertThat(ids("book_items_archive", "barcode")).containsExactly(first, second);
+        assertThat(ids("book_items", "barcode")).isEmpty();
+    }
+
+    @Test
+    void concurrentCompactionsSkipEachOthersBooks() {
+        long first = addBook("TC-2", 1);
+        long second = addBook("TC-3", 1);
+
+        whileLocked("book", first, service::compactBookBatch);
+
+        assertThat(ids("book_archive", "code")).containsExactly(second);
+        assertThat(ids("book", "code")).containsExactly(first);
+
+        transaction.execute(status -> service.compactBookBatch());
+
+        assertThat(ids("book_archive", "code")).containsExactly(first, second);
+    }
+
+    private void whileLocked(String table, long id, IntSupplier batch) {
+        transaction.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT id FROM " + table + " WHERE id = ? FOR UPDATE", Long.class, id);
+            CompletableFuture.supplyAsync(() -> transaction.execute(inner -> batch.getAsInt()))
+                    .orTimeout(10, TimeUnit.SECONDS).join();
+            status.setRollbackOnly();
+        });
+    }
+
+    private long addBook(String code, int deleted) {
+        jdbcTemplate.update("INSERT INTO book (code, title, category_id, entry_date, is_deleted) "
+                + "VALUES (?, '压缩测试', 1, '2024-09-01', ?)", code, deleted);
+        return jdbcTemplate.queryForObject("SELECT id FROM book WHERE code = ?", Long.class, code);
+    }
+
+    private long addItem(long book, String barcode) {
+        jdbcTemplate.update("INSERT INTO book_items (book_id, barcode, status, entry_date) VALUES (?, ?, 'deleted', '2024-09-01')",
+                book, barcode);
+        return jdbcTemplate.queryForObject("SELECT id FROM book_items WHERE barcode = ?", Long.class, barcode);
+    }
+
+    private List<Long> ids(String table, String column) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE " + column + " LIKE 'TC-%' ORDER BY id", Long.class);
+    }
+}
@@ -0,0 +1,43 @@
+package com.cangli.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtUtilTest {
+
+    @Test
+    void headerTokenIsUsedEverywhere() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/book");
+        request.addHeader("Authorization", "Bearer abc");
+        assertThat(JwtUtil.requestToken(request)).isEqualTo("abc");
+
+        MockHttpServletRequest malformed = new MockHttpServletRequest("GET", "/book");
+        malformed.addHeader("Authorization", "Basic abc");
+        assertThat(JwtUtil.requestToken(malformed)).isNull();
+    }
+
+    @Test
+    void queryTokenIsOnlyAcceptedOnTheEventStream() {
+        MockHttpServletRequest stream = new MockHttpServletRequest("GET", JwtUtil.STREAM_PATH);
+        stream.setParameter(JwtUtil.STREAM_TOKEN_PARAM, "abc");
+        assertThat(JwtUtil.requestToken(stream)).isEqualTo("abc");
+
+        MockHttpServletRequest other = new MockHttpServletRequest("GET", "/book");
+        other.setParameter(JwtUtil.STREAM_TOKEN_PARAM, "abc");
+        assertThat(JwtUtil.requestToken(other)).isNull();
+
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", JwtUtil.STREAM_PATH);
+        post.setParameter(JwtUtil.STREAM_TOKEN_PARAM, "abc");
+        assertThat(JwtUtil.requestToken(post)).isNull();
+    }
+
+    @Test
+    void issuedTokenRoundTrips() {
+        String token = JwtUtil.getToken("reader1", "reader", "stamp");
+        MockHttpServletRequest stream = new MockHttpServletRequest("GET", JwtUtil.STREAM_PATH);
+        stream.setParameter(JwtUtil.STREAM_TOKEN_PARAM, token);
+        assertThat(JwtUtil.parseToken(JwtUtil.requestToken(stream)).getClaim("username").asString()).isEqualTo("reader1");
+    }
+}
@@ -0,0 +1,198 @@
+-- 测试用表结构：init.sql 去掉注释、排序规则和分区，在 H2 的 MariaDB 兼容模式下执行。
+-- 同一 JVM 中的多个测试上下文共用一个内存库，语句须可重复执行。
+-- UNSIGNED / SIGNED 和 UNIX_TIMESTAMP 补齐行版本表达式（见 sync.xml nextRowVersion）
+create domain if not exists unsigned as bigint;
+create domain if not exists signed as bigint;
+create alias if not exists unix_timestamp for 'com.cangli.H2Functions.unixTimestamp';
+
+create table if not exists admin (
+    id int auto_increment primary key,
+    username varchar(50) not null,
+    password varchar(255) not null,
+    role varchar(20) default '管理员' null,
+    constraint admin_username unique (username)
+);
+
+create table if not exists book (
+    id int auto_increment primary key,
+    code varchar(50) not null,
+    title varchar(200) not null,
+    author varchar(100) null,
+    publisher varchar(100) null,
+    isbn varchar(20) null,
+    category_id int not null,
+    publish_date date null,
+    price decimal(10, 2) default 0.00 null,
+    entry_date date not null,
+    borrow_times int default 0 null,
+    is_deleted tinyint(1) default 0 null,
+    description text null,
+    cover_url varchar(255) null,
+    row_version bigint default 0 not null,
+    constraint book_code unique (code),
+    index idx_book_deleted (is_deleted),
+    index idx_book_row_version (row_version)
+);
+
+create table if not exists book_archive (
+    id int not null primary key,
+    code varchar(50) not null,
+    title varchar(200) not null,
+    author varchar(100) null,
+    publisher varchar(100) null,
+    isbn varchar(20) null,
+    category_id int not null,
+    publish_date date null,
+    price decimal(10, 2) default 0.00 null,
+    entry_date date not null,
+    borrow_times int default 0 null,
+    description text null,
+    cover_url varchar(255) null,
+    archived_at datetime default current_timestamp() not null
+);
+
+create table if not exists book_items (
+    id int auto_increment primary key,
+    book_id int not null,
+    barcode varchar(50) not null,
+    location varchar(100) null,
+    status enum (
+        'available',
+        'borrowed',
+        'unavailable',
+        'deleted',
+        'reserved'
+    ) default 'available' null,
+    price_at_entry decimal(10, 2) null,
+    entry_date date not null,
+    notes varchar(255) null,
+    row_version bigint default 0 not null,
+    index idx_book_items_book (book_id, status),
+    index idx_book_items_status (status),
+    index idx_book_items_row_version (row_version)
+);
+
+create table if not exists book_items_archive (
+    id int not null primary key,
+    book_id int not null,
+    barcode varchar(50) not null,
+    location varchar(100) null,
+    price_at_entry decimal(10, 2) null,
+    entry_date date not null,
+    notes varchar(255) null,
+    archived_at datetime default current_timestamp() not null,
+    index idx_book_items_archive_book (book_id)
+);
+
+create table if not exists borrow_record (
+    id int auto_increment primary key,
+    book_id int not null,
+    reader_id int not null,
+    borrow_date date not null,
+    due_date date not null,
+    return_date date null,
+    overdue_fine decimal(8, 2) default 0.00 null,
+    status enum ('借出', '已还', '逾期', '丢失', '损坏') default '借出' null,
+    item_id int not null,
+    counted tinyint(1) default 0 not null,
+    index idx_borrow_uncounted (counted),
+    index idx_borrow_reader (reader_id, borrow_date),
+    index idx_borrow_book (book_id),
+    index idx_borrow_item (item_id),
+    index idx_borrow_archivable (status, return_date)
+);
+
+create table if not exists borrow_record_archive (
+    id int not null,
+    book_id int not null,
+    reader_id int not null,
+    borrow_date date not null,
+    due_date date not null,
+    return_date date null,
+    overdue_fine decimal(8, 2) default 0.00 null,
+    status enum ('借出', '已还', '逾期', '丢失', '损坏') default '已还' null,
+    item_id int not null,
+    archived_at datetime default current_timestamp() not null,
+    primary key (id, borrow_date),
+    index idx_archive_reader (reader_id, borrow_date)
+);
+
+create table if not exists idempotency_key (
+    idem_key char(64) not null primary key,
+    fingerprint char(64) not null,
+    response mediumtext null,
+    created_at datetime default current_timestamp() not null,
+    expires_at datetime not null,
+    index idx_idempotency_expires (expires_at)
+);
+
+create table if not exists reservation (
+    id int auto_increment primary key,
+    book_id int not null,
+    reader_id int not null,
+    item_id int null,
+    status enum ('等待', '待取', '已取', '已过期', '已取消') default '等待' not null,
+    created_at datetime default current_timestamp() not null,
+    hold_until datetime null,
+    index idx_reservation_queue (book_id, status, id),
+    index idx_reservation_item (item_id, status),
+    index idx_reservation_hold (status, hold_until)
+);
+
+create table if not exists change_log (
+    id bigint auto_increment primary key,
+    resource varchar(20) not null,
+    entity_id bigint null,
+    node_id varchar(64) not null,
+    created_at datetime(3) default current_timestamp(3) not null,
+    index idx_change_log_created (created_at)
+);
+
+create table if not exists sync_tombstone (
+    resource varchar(20) not null,
+    entity_id bigint not null,
+    row_version bigint not null,
+    primary key (resource, entity_id),
+    index idx_sync_tombstone_version (row_version)
+);
+
+create table if not exists borrow_rules (
+    id int auto_increment primary key,
+    reader_type enum ('学生', '教师') not null,
+    max_books int not null,
+    duration_days int not null,
+    renew_times int default 3 null,
+    constraint borrow_rules_reader_type unique (reader_type)
+);
+
+create table if not exists categories (
+    id int auto_increment primary key,
+    name varchar(50) not null,
+    code varchar(10) not null,
+    created_at timestamp default current_timestamp() null,
+    updated_at timestamp default current_timestamp() null,
+    row_version bigint default 0 not null,
+    constraint categories_code unique (code),
+    constraint categories_name unique (name),
+    index idx_categories_row_version (row_version)
+);
+
+create table if not exists reader (
+    id int auto_increment primary key,
+    name varchar(50) not null,
+    gender enum ('男', '女', '未知') default '未知' null,
+    class_dept varchar(100) null,
+    reader_type enum ('学生', '教师') not null,
+    contact varchar(100) null,
+    borrow_limit int default 3 null,
+    borrowed_count int default 0 null,
+    username varchar(20) not null,
+    password varchar(255) not null,
+    name_initials varchar(50) null,
+    active tinyint(1) default 1 not null,
+    constraint reader_username unique (username),
+    index idx_reader_name (name),
+    index idx_reader_class_dept (class_dept),
+    index idx_reader_initials (name_initials)
+);
+